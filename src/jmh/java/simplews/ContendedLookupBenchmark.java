@@ -0,0 +1,81 @@
+package simplews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups from many threads at once: readers only, and readers racing a writer
+ * that keeps changing statuses (the grading-deadline pattern). Read latency should stay flat
+ * when the writer is added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedLookupBenchmark {
+
+    private static final int PAIRS = 100000;
+    private static final int QUERIES = TaskStatusLookupBenchmark.QUERIES;
+
+    private TaskStatusService service;
+    private final String[] students = new String[QUERIES];
+    private final String[] tasks = new String[QUERIES];
+
+    @Setup
+    public void setUp() {
+        service = new TaskStatusService(TaskStatusLookupBenchmark.populatedStore(PAIRS));
+        Random random = new Random(42);
+        int perStudent = TaskStatusLookupBenchmark.TASKS_PER_STUDENT;
+        for (int i = 0; i < QUERIES; i++) {
+            students[i] = TaskStatusLookupBenchmark.studentId(random.nextInt(PAIRS / perStudent));
+            tasks[i] = TaskStatusLookupBenchmark.taskId(random.nextInt(perStudent));
+        }
+    }
+
+    /**
+     * Per-thread cursor, so threads do not contend on a shared counter.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String readersOnly(Cursor cursor) {
+        int i = cursor.next++ & (QUERIES - 1);
+        return service.getTaskStatus(students[i], tasks[i]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public String reader(Cursor cursor) {
+        int i = cursor.next++ & (QUERIES - 1);
+        return service.getTaskStatus(students[i], tasks[i]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public TaskStatus writer(Cursor cursor) {
+        int i = cursor.next++ & (QUERIES - 1);
+        return service.setTaskStatus(students[i], tasks[i], TaskStatus.fromOrdinal(cursor.next % 3));
+    }
+}
@@ -0,0 +1,75 @@
+package simplews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of the original {@code studentId + "-" + taskId} key (build, hash and HashMap lookup)
+ * with the handle-based TaskStatusIndex lookup, over the same 100,000 pairs.
+ * Run with {@code -prof gc} to compare allocation per lookup as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyConstructionBenchmark {
+
+    private static final int PAIRS = 100000;
+    private static final int QUERIES = TaskStatusLookupBenchmark.QUERIES;
+
+    private final Map<String, String> concatenatedKeys = new HashMap<>();
+    private final TaskStatusIndex index = new TaskStatusIndex();
+    private final String[] students = new String[QUERIES];
+    private final String[] tasks = new String[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int perStudent = TaskStatusLookupBenchmark.TASKS_PER_STUDENT;
+        for (int pair = 0; pair < PAIRS; pair++) {
+            String studentId = TaskStatusLookupBenchmark.studentId(pair / perStudent);
+            String taskId = TaskStatusLookupBenchmark.taskId(pair % perStudent);
+            TaskStatus status = TaskStatus.fromOrdinal(pair % 3);
+            concatenatedKeys.put(studentId + "-" + taskId, status.getLabel());
+            index.put(studentId, taskId, status);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < QUERIES; i++) {
+            students[i] = TaskStatusLookupBenchmark.studentId(random.nextInt(PAIRS / perStudent));
+            tasks[i] = TaskStatusLookupBenchmark.taskId(random.nextInt(perStudent));
+        }
+    }
+
+    @Benchmark
+    public String buildKeyOnly() {
+        int i = next++ & (QUERIES - 1);
+        return students[i] + "-" + tasks[i];
+    }
+
+    @Benchmark
+    public String concatenatedKeyLookup() {
+        int i = next++ & (QUERIES - 1);
+        return concatenatedKeys.get(students[i] + "-" + tasks[i]);
+    }
+
+    @Benchmark
+    public TaskStatus handleIndexLookup() {
+        int i = next++ & (QUERIES - 1);
+        return index.get(students[i], tasks[i]);
+    }
+}
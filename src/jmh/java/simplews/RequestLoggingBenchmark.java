@@ -0,0 +1,99 @@
+package simplews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request latency distribution (look at the p0.99 lines) of a /checkTaskStatus lookup plus its
+ * logging, with many request threads at once: the old pair of System.out.println calls versus
+ * {@link RequestLog} enabled and gated off. Both write to a file through a stream set up like
+ * System.out (autoflush on every line), so the old variant pays for the stdout lock and a write per line.
+ * Each request also burns a little CPU for the rest of its handling, so the rate stays one the
+ * log writer can keep up with; the enabled variant prints how many events it had to drop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RequestLoggingBenchmark {
+
+    // Stand-in for the rest of the request (binding, rendering): a few microseconds of work.
+    private static final long REQUEST_WORK = 2000;
+
+    private TaskStatusService service;
+    private Path file;
+    private PrintStream stdout;
+    private RequestLog requestLog;
+    private RequestLog disabledLog;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new TaskStatusService();
+        file = Files.createTempFile("request-log", ".log");
+        stdout = new PrintStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 8192), true);
+        requestLog = new RequestLog(stdout, RequestLog.Level.INFO, 1, 8192, 20);
+        disabledLog = new RequestLog(stdout, RequestLog.Level.OFF, 1, 8192, 20);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        requestLog.close();
+        disabledLog.close();
+        stdout.close();
+        System.out.println("RequestLog dropped " + requestLog.getDroppedCount() + " events, wrote " + Files.size(file) + " bytes");
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String systemOutPrintln() {
+        String studentId = "student123";
+        String taskId = "task001";
+        Blackhole.consumeCPU(REQUEST_WORK);
+        stdout.println("Received request to check status for Student: " + studentId + ", Task: " + taskId);
+        String status = service.getTaskStatus(studentId, taskId);
+        stdout.println("Task Status: " + status);
+        return status;
+    }
+
+    @Benchmark
+    public String requestLog() {
+        String studentId = "student123";
+        String taskId = "task001";
+        Blackhole.consumeCPU(REQUEST_WORK);
+        String status = service.getTaskStatus(studentId, taskId);
+        requestLog.log(RequestLog.Level.INFO, "check_task_status", studentId, taskId, status);
+        return status;
+    }
+
+    @Benchmark
+    public String requestLogDisabled() {
+        String studentId = "student123";
+        String taskId = "task001";
+        Blackhole.consumeCPU(REQUEST_WORK);
+        String status = service.getTaskStatus(studentId, taskId);
+        disabledLog.log(RequestLog.Level.INFO, "check_task_status", studentId, taskId, status);
+        return status;
+    }
+}
@@ -0,0 +1,60 @@
+package simplews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * End-to-end request handling through Spring MVC (MockMvc, no network): parameter binding,
+ * handler invocation and response writing. MockMvc does not execute JSPs, so the
+ * /checkTaskStatus numbers exclude the Jasper render itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestPathBenchmark {
+
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        TaskStatusService service = new TaskStatusService();
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new RoutingServlet(service), new TaskStatusApiController(service))
+                .build();
+    }
+
+    @Benchmark
+    public MvcResult checkTaskStatusHit() throws Exception {
+        return mockMvc.perform(get("/checkTaskStatus").param("studentId", "student123").param("taskId", "task001"))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult checkTaskStatusInvalid() throws Exception {
+        return mockMvc.perform(get("/checkTaskStatus").param("studentId", "student999").param("taskId", "taskXXX"))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult apiTaskStatusHit() throws Exception {
+        return mockMvc.perform(get("/api/tasks/student123/task001")).andReturn();
+    }
+}
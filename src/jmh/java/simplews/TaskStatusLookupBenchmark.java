@@ -0,0 +1,91 @@
+package simplews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures TaskStatusService.getTaskStatus for hits and both kinds of miss, at several table sizes.
+ * Each table holds {@code size} pairs spread over 20 tasks per student.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskStatusLookupBenchmark {
+
+    static final int TASKS_PER_STUDENT = 20;
+    // Number of pre-built queries cycled through, so one hot key does not hide cache misses.
+    static final int QUERIES = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private TaskStatusService service;
+    private final String[] hitStudents = new String[QUERIES];
+    private final String[] hitTasks = new String[QUERIES];
+    private final String[] unknownTasks = new String[QUERIES];
+    private final String[] unknownStudents = new String[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        service = new TaskStatusService(populatedStore(size));
+        java.util.Random random = new java.util.Random(42);
+        int students = size / TASKS_PER_STUDENT;
+        for (int i = 0; i < QUERIES; i++) {
+            int student = random.nextInt(students);
+            hitStudents[i] = studentId(student);
+            hitTasks[i] = taskId(random.nextInt(TASKS_PER_STUDENT));
+            unknownTasks[i] = taskId(TASKS_PER_STUDENT + random.nextInt(1000));
+            unknownStudents[i] = studentId(students + random.nextInt(1000));
+        }
+    }
+
+    @Benchmark
+    public String hit() {
+        int i = next++ & (QUERIES - 1);
+        return service.getTaskStatus(hitStudents[i], hitTasks[i]);
+    }
+
+    @Benchmark
+    public String missUnknownTask() {
+        int i = next++ & (QUERIES - 1);
+        return service.getTaskStatus(hitStudents[i], unknownTasks[i]);
+    }
+
+    @Benchmark
+    public String missUnknownStudent() {
+        int i = next++ & (QUERIES - 1);
+        return service.getTaskStatus(unknownStudents[i], hitTasks[i]);
+    }
+
+    static InMemoryTaskStatusStore populatedStore(int size) {
+        InMemoryTaskStatusStore store = new InMemoryTaskStatusStore();
+        for (int pair = 0; pair < size; pair++) {
+            store.put(studentId(pair / TASKS_PER_STUDENT), taskId(pair % TASKS_PER_STUDENT),
+                    TaskStatus.fromOrdinal(pair % 3));
+        }
+        return store;
+    }
+
+    static String studentId(int n) {
+        return "student" + n;
+    }
+
+    static String taskId(int n) {
+        return "task" + n;
+    }
+}
@@ -0,0 +1,94 @@
+package simplews;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit on the number of requests in progress at once, adapted to the latency they observe (AIMD:
+ * additive increase, multiplicative decrease).
+ * <p>
+ * While requests finish within the latency target and the limit is actually being used, every
+ * finished request raises the limit by one. A request slower than the target means work is piling
+ * up behind a saturated resource, so the limit is cut by the backoff ratio; requests that started
+ * before that cut do not cut it again, so one slow spell costs one cut rather than one per request
+ * caught in it. Requests over the limit are refused at once instead of joining the queue, which
+ * keeps the latency of the admitted ones near the target however much more traffic arrives.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // When the limit was last cut; only meaningful once 'decreased' is set, as nanoTime has no "never".
+    private volatile long lastDecreaseNanos;
+    private volatile boolean decreased;
+
+    /**
+     * Creates the limit.
+     *
+     * @param initialLimit       The limit to start with.
+     * @param minLimit           The lowest the limit may go (at least 1).
+     * @param maxLimit           The highest the limit may go.
+     * @param latencyTargetNanos Requests slower than this cut the limit.
+     * @param backoffRatio       The factor a cut multiplies the limit by (between 0 and 1).
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Need 1 <= min-limit <= max-limit and 0 < backoff-ratio < 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+    }
+
+    /**
+     * Admits a request if fewer than the limit are in progress. Every admitted request must be
+     * followed by {@link #release}.
+     *
+     * @return Whether the request is admitted.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends an admitted request and adapts the limit to its latency.
+     *
+     * @param startNanos The {@link System#nanoTime()} when the request was admitted.
+     * @param endNanos   The {@link System#nanoTime()} when it finished.
+     */
+    void release(long startNanos, long endNanos) {
+        int busy = inFlight.getAndDecrement();
+        if (endNanos - startNanos > latencyTargetNanos) {
+            // Compared by difference, as nanoTime values may be negative and wrap around.
+            if (!decreased || startNanos - lastDecreaseNanos > 0) {
+                lastDecreaseNanos = endNanos;
+                decreased = true;
+                limit.updateAndGet(current -> Math.max(minLimit, (int) (current * backoffRatio)));
+            }
+        } else if (busy * 2 >= limit.get()) {
+            // Only grow while at least half the limit is in use; an idle limit proves nothing about capacity.
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    int getLimit() {
+        return limit.get();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,149 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control in front of the task status endpoints (those in {@link TaskStatusMetrics.Endpoint}),
+ * so that a retry storm at a submission deadline is turned away cheaply instead of queueing until
+ * every request, including the well-behaved ones, is too late:
+ * <ul>
+ *   <li>each client has a token bucket ({@link ClientRateLimiter}); a client over its rate gets 429;</li>
+ *   <li>the server has a concurrency limit that adapts to the latency of the requests it admits
+ *   ({@link AdaptiveConcurrencyLimit}); requests over the limit get 503.</li>
+ * </ul>
+ * Both answers are written at once, with {@code Retry-After}, without touching the store, and are
+ * counted in {@code simplews_requests_shed_total}. Configured by {@code simplews.admission.*}; off by default.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10) // Before routing and metrics, so a refused request costs as little as possible.
+public class AdmissionControlFilter implements Filter {
+
+    private static final byte[] RATE_LIMITED_MESSAGE = "Too many requests from this client; retry later\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OVERLOADED_MESSAGE = "The server is overloaded; retry later\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final TaskStatusMetrics metrics;
+    private final boolean enabled;
+    private final ClientRateLimiter rateLimiter;
+    private final String clientHeader;
+    private final int trustedProxies;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    /**
+     * Creates the filter.
+     *
+     * @param metrics         Counts refused requests and shows the concurrency limit.
+     * @param enabled         Whether admission control is on.
+     * @param clientRate      The requests per second each client may make on average (0 for no per-client limit).
+     * @param clientBurst     The requests a client may make at once.
+     * @param clientHeader    The header identifying the client (e.g. {@code X-Forwarded-For} behind a proxy),
+     *                        or empty for the remote address.
+     * @param trustedProxies  The number of proxies in front of the server that each append an entry to
+     *                        {@code clientHeader}; the entry that many from the right is the client, as the
+     *                        entries to its left are written by the client itself.
+     * @param maxClients      The number of clients whose buckets are kept.
+     * @param latencyTargetMs Admitted requests slower than this lower the concurrency limit (0 for no limit).
+     * @param initialLimit    The concurrency limit to start with.
+     * @param minLimit        The lowest the concurrency limit may go.
+     * @param maxLimit        The highest the concurrency limit may go.
+     * @param backoffRatio    The factor a slow request multiplies the concurrency limit by.
+     */
+    public AdmissionControlFilter(TaskStatusMetrics metrics,
+                                  @Value("${simplews.admission.enabled:false}") boolean enabled,
+                                  @Value("${simplews.admission.client-rate:0}") double clientRate,
+                                  @Value("${simplews.admission.client-burst:20}") int clientBurst,
+                                  @Value("${simplews.admission.client-header:}") String clientHeader,
+                                  @Value("${simplews.admission.trusted-proxies:1}") int trustedProxies,
+                                  @Value("${simplews.admission.max-clients:100000}") int maxClients,
+                                  @Value("${simplews.admission.latency-target-ms:0}") long latencyTargetMs,
+                                  @Value("${simplews.admission.initial-limit:20}") int initialLimit,
+                                  @Value("${simplews.admission.min-limit:2}") int minLimit,
+                                  @Value("${simplews.admission.max-limit:1000}") int maxLimit,
+                                  @Value("${simplews.admission.backoff-ratio:0.9}") double backoffRatio) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.rateLimiter = enabled && clientRate > 0 ? new ClientRateLimiter(clientRate, clientBurst, maxClients) : null;
+        this.clientHeader = clientHeader.trim().isEmpty() ? null : clientHeader.trim();
+        if (trustedProxies < 1) {
+            throw new IllegalArgumentException("simplews.admission.trusted-proxies must be at least 1: " + trustedProxies);
+        }
+        this.trustedProxies = trustedProxies;
+        this.concurrencyLimit = enabled && latencyTargetMs > 0
+                ? new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, TimeUnit.MILLISECONDS.toNanos(latencyTargetMs), backoffRatio)
+                : null;
+        if (concurrencyLimit != null) {
+            metrics.setConcurrencyLimit(concurrencyLimit);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        TaskStatusMetrics.Endpoint endpoint = enabled ? TaskStatusMetrics.Endpoint.forPath(RequestMetricsFilter.pathOf(httpRequest)) : null;
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(clientOf(httpRequest), start);
+            if (waitNanos > 0) {
+                metrics.recordShed(endpoint, TaskStatusMetrics.Shed.RATE_LIMITED);
+                refuse((HttpServletResponse) response, 429, waitNanos, RATE_LIMITED_MESSAGE);
+                return;
+            }
+        }
+        if (concurrencyLimit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            metrics.recordShed(endpoint, TaskStatusMetrics.Shed.OVERLOADED);
+            refuse((HttpServletResponse) response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), OVERLOADED_MESSAGE);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            concurrencyLimit.release(start, System.nanoTime());
+        }
+    }
+
+    // The entry appended by the outermost trusted proxy; a client can only add entries to its left.
+    // With fewer entries than trusted proxies, every entry was appended by one, and the first is the client.
+    private String clientOf(HttpServletRequest request) {
+        List<String> values = clientHeader != null ? Collections.list(request.getHeaders(clientHeader)) : Collections.emptyList();
+        if (values.isEmpty()) {
+            return request.getRemoteAddr();
+        }
+        String[] entries = String.join(",", values).split(",");
+        return entries[Math.max(0, entries.length - trustedProxies)].trim();
+    }
+
+    // Answers directly instead of through sendError, which would dispatch to the error page.
+    private static void refuse(HttpServletResponse response, int status, long retryAfterNanos, byte[] message) throws IOException {
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999999999L))));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setContentLength(message.length);
+        response.getOutputStream().write(message);
+    }
+}
@@ -0,0 +1,401 @@
+package simplews;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded read-through cache in front of another {@link TaskStatusStore}.
+ * <ul>
+ *     <li>Entries expire after a fixed time-to-live, and the oldest entries are evicted once
+ *     the cache holds more than {@code maxSize} pairs.</li>
+ *     <li>Unknown pairs are cached too ("negative caching"), with their own, usually shorter, TTL,
+ *     so repeated polls for an invalid pair do not reach the backend either.</li>
+ *     <li>Concurrent misses for the same pair are coalesced: one caller loads from the backend
+ *     and the others wait for its result.</li>
+ * </ul>
+ */
+public class CachingTaskStatusStore implements TaskStatusStore {
+
+    private final TaskStatusStore delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier ticker;
+
+    // Read without locking; changed only while holding the insertionOrder lock, which keeps the two in step.
+    private final ConcurrentHashMap<TaskKey, Entry> entries = new ConcurrentHashMap<>();
+    // Keys of the entries, oldest first, used to pick eviction victims once the cache is full.
+    // Holds exactly the cached keys: a key is moved to the end when reloaded and dropped with its entry.
+    private final LinkedHashSet<TaskKey> insertionOrder = new LinkedHashSet<>();
+    private final ConcurrentHashMap<TaskKey, CompletableFuture<TaskStatus>> inFlight = new ConcurrentHashMap<>();
+
+    // Write generations of the pairs, per stripe of keys: bumped by every write to a pair of the stripe, so a
+    // load that overlapped a write does not cache the status it read before it, while loads of other stripes'
+    // pairs are unaffected. Bumped and checked while holding the insertionOrder lock, so no write slips in
+    // between the check and the put.
+    private static final int GENERATION_STRIPES = 1024;
+    private final AtomicLongArray writeGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache in front of the given store.
+     *
+     * @param delegate      The backing store that misses are loaded from.
+     * @param maxSize       The maximum number of cached pairs.
+     * @param ttlMillis     How long a found status stays cached, in milliseconds.
+     * @param negativeTtlMs How long an unknown pair stays cached, in milliseconds (0 disables negative caching).
+     */
+    public CachingTaskStatusStore(TaskStatusStore delegate, int maxSize, long ttlMillis, long negativeTtlMs) {
+        this(delegate, maxSize, ttlMillis, negativeTtlMs, System::nanoTime);
+    }
+
+    CachingTaskStatusStore(TaskStatusStore delegate, int maxSize, long ttlMillis, long negativeTtlMs,
+                           LongSupplier ticker) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+        this.ticker = ticker;
+    }
+
+    @Override
+    public TaskStatus find(String studentId, String taskId) {
+        TaskKey key = new TaskKey(studentId, taskId);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (ticker.getAsLong() - entry.expiresAt < 0) {
+                hits.increment();
+                return entry.status;
+            }
+            // Expired: drop it and fall through to a reload.
+            remove(entry);
+        }
+        misses.increment();
+        return load(key);
+    }
+
+    /**
+     * Serves cached pairs from the cache and loads all missing pairs from the backing store
+     * in a single {@link TaskStatusStore#findAll(List, TaskStatus[])} call. Misses that another
+     * thread is already loading are not loaded again; their results are awaited instead.
+     */
+    @Override
+    public void findAll(List<TaskKey> keys, TaskStatus[] out) {
+        long now = ticker.getAsLong();
+        List<Integer> owned = new ArrayList<>();
+        List<CompletableFuture<TaskStatus>> ownedFutures = new ArrayList<>();
+        Map<Integer, CompletableFuture<TaskStatus>> awaited = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            TaskKey key = keys.get(i);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.expiresAt < 0) {
+                    hits.increment();
+                    out[i] = entry.status;
+                    continue;
+                }
+                remove(entry);
+            }
+            misses.increment();
+            CompletableFuture<TaskStatus> mine = new CompletableFuture<>();
+            CompletableFuture<TaskStatus> running = inFlight.putIfAbsent(key, mine);
+            if (running != null) {
+                awaited.put(i, running);
+            } else {
+                owned.add(i);
+                ownedFutures.add(mine);
+            }
+        }
+        if (!owned.isEmpty()) {
+            loadAll(keys, owned, ownedFutures, out);
+        }
+        for (Map.Entry<Integer, CompletableFuture<TaskStatus>> waiting : awaited.entrySet()) {
+            try {
+                out[waiting.getKey()] = waiting.getValue().join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void findAll(String studentId, List<String> taskIds, TaskStatus[] out) {
+        List<TaskKey> keys = new ArrayList<>(taskIds.size());
+        for (String taskId : taskIds) {
+            keys.add(new TaskKey(studentId, taskId));
+        }
+        findAll(keys, out);
+    }
+
+    private void loadAll(List<TaskKey> keys, List<Integer> owned, List<CompletableFuture<TaskStatus>> futures,
+                         TaskStatus[] out) {
+        List<TaskKey> missing = new ArrayList<>(owned.size());
+        for (int i : owned) {
+            missing.add(keys.get(i));
+        }
+        TaskStatus[] loaded = new TaskStatus[missing.size()];
+        try {
+            loads.increment();
+            long[] generations = new long[missing.size()];
+            for (int j = 0; j < missing.size(); j++) {
+                generations[j] = writeGenerations.get(stripeOf(missing.get(j)));
+            }
+            delegate.findAll(missing, loaded);
+            for (int j = 0; j < missing.size(); j++) {
+                cache(missing.get(j), loaded[j], generations[j]);
+                out[owned.get(j)] = loaded[j];
+                futures.get(j).complete(loaded[j]);
+            }
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<TaskStatus> future : futures) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (int j = 0; j < missing.size(); j++) {
+                inFlight.remove(missing.get(j), futures.get(j));
+            }
+        }
+    }
+
+    /**
+     * Writes through to the backing store and drops the cached entry, so the next read sees the new status.
+     */
+    @Override
+    public TaskStatus put(String studentId, String taskId, TaskStatus status) {
+        try {
+            return delegate.put(studentId, taskId, status);
+        } finally {
+            invalidate(studentId, taskId);
+        }
+    }
+
+    /**
+     * Runs the compare-and-set against the backing store, never against cached data, and drops the cached entry.
+     */
+    @Override
+    public TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update) {
+        try {
+            return delegate.compareAndExchange(studentId, taskId, expected, update);
+        } finally {
+            invalidate(studentId, taskId);
+        }
+    }
+
+    @Override
+    public TaskStatus compareAndRemove(String studentId, String taskId, TaskStatus expected) {
+        try {
+            return delegate.compareAndRemove(studentId, taskId, expected);
+        } finally {
+            invalidate(studentId, taskId);
+        }
+    }
+
+    @Override
+    public boolean supportsRemoval() {
+        return delegate.supportsRemoval();
+    }
+
+    /**
+     * Replaces the backing store's pairs and then empties the cache.
+     */
+    @Override
+    public void replaceAll(TaskStatusIndex pairs) {
+        try {
+            delegate.replaceAll(pairs);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void forEach(TaskStatusVisitor visitor) {
+        delegate.forEach(visitor); // Bypasses the cache, so a walk does not evict the hot pairs.
+    }
+
+    @Override
+    public void forEachTaskOf(String studentId, TaskStatusVisitor visitor) {
+        delegate.forEachTaskOf(studentId, visitor); // Answered by the delegate's own indexes, bypassing the cache.
+    }
+
+    @Override
+    public void forEachStudentOf(String taskId, TaskStatusVisitor visitor) {
+        delegate.forEachStudentOf(taskId, visitor);
+    }
+
+    @Override
+    public void countByStatus(String taskId, long[] out) {
+        delegate.countByStatus(taskId, out);
+    }
+
+    private TaskStatus load(TaskKey key) {
+        CompletableFuture<TaskStatus> mine = new CompletableFuture<>();
+        CompletableFuture<TaskStatus> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Another thread is already loading this pair; wait for its result.
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        try {
+            loads.increment();
+            long generation = writeGenerations.get(stripeOf(key));
+            TaskStatus status = delegate.find(key.getStudentId(), key.getTaskId());
+            cache(key, status, generation);
+            mine.complete(status);
+            return status;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Caches a loaded status, unless a write to its stripe has happened since the load began (at the given generation).
+    private void cache(TaskKey key, TaskStatus status, long generation) {
+        long ttl = status != null ? ttlNanos : negativeTtlNanos;
+        if (ttl <= 0) {
+            return;
+        }
+        Entry entry = new Entry(key, status, ticker.getAsLong() + ttl);
+        synchronized (insertionOrder) {
+            if (writeGenerations.get(stripeOf(key)) != generation) {
+                return;
+            }
+            entries.put(key, entry);
+            insertionOrder.remove(key);
+            insertionOrder.add(key);
+            Iterator<TaskKey> eldest = insertionOrder.iterator();
+            while (insertionOrder.size() > maxSize) {
+                entries.remove(eldest.next());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // Removes an entry only if it is still the current mapping for its key.
+    private void remove(Entry entry) {
+        synchronized (insertionOrder) {
+            if (entries.remove(entry.key, entry)) {
+                insertionOrder.remove(entry.key);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes a pair from the cache so the next lookup reloads it from the backing store.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     */
+    public void invalidate(String studentId, String taskId) {
+        TaskKey key = new TaskKey(studentId, taskId);
+        synchronized (insertionOrder) {
+            writeGenerations.incrementAndGet(stripeOf(key));
+            entries.remove(key);
+            insertionOrder.remove(key);
+        }
+    }
+
+    /**
+     * Empties the cache, so every pair is reloaded from the backing store.
+     */
+    public void invalidateAll() {
+        synchronized (insertionOrder) {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                writeGenerations.incrementAndGet(i);
+            }
+            entries.clear();
+            insertionOrder.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of calls made to the backing store. Lower than the miss count when
+     * concurrent misses were coalesced.
+     *
+     * @return The number of backend loads.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Gets the number of entries removed because they expired or the cache was full.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // The number of keys tracked for eviction; always equal to size() once no write is in progress.
+    int insertionOrderSize() {
+        synchronized (insertionOrder) {
+            return insertionOrder.size();
+        }
+    }
+
+    // The stripe of write generations a pair belongs to.
+    static int stripeOf(TaskKey key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException("Task status lookup failed", cause);
+    }
+
+    private static final class Entry {
+        final TaskKey key;
+        final TaskStatus status; // null for a cached "unknown pair"
+        final long expiresAt;
+
+        Entry(TaskKey key, TaskStatus status, long expiresAt) {
+            this.key = key;
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package simplews;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-client token buckets: each client may make {@code ratePerSecond} requests per second on
+ * average, and up to {@code burst} at once after being idle.
+ * <p>
+ * The buckets live in a striped map: the client key picks one of {@value #STRIPES} small maps, each
+ * guarded by its own lock, so threads serving different clients rarely wait for each other. Each
+ * stripe keeps its most recently used clients only; a client that is dropped starts over with a full
+ * bucket, which is the same as never having been throttled.
+ */
+final class ClientRateLimiter {
+
+    private static final int STRIPES = 64;
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Creates the limiter.
+     *
+     * @param ratePerSecond The requests per second each client may make on average (more than 0).
+     * @param burst         The requests a client may make at once (at least 1).
+     * @param maxClients    The number of clients whose buckets are kept.
+     */
+    ClientRateLimiter(double ratePerSecond, int burst, int maxClients) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The client rate must be above 0 and the burst at least 1");
+        }
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        int perStripe = Math.max(1, maxClients / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Takes a token from a client's bucket, if there is one.
+     *
+     * @param client   The client key, e.g. its address.
+     * @param nowNanos The current {@link System#nanoTime()}.
+     * @return 0 if the request is admitted, otherwise how long until the client has a token again, in nanoseconds.
+     */
+    long tryAcquire(String client, long nowNanos) {
+        int h = client.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(client);
+            if (bucket == null) {
+                bucket = new Bucket(burst, nowNanos);
+                stripe.put(client, bucket);
+            }
+            double tokens = Math.min(burst, bucket.tokens + (nowNanos - bucket.updatedNanos) * tokensPerNano);
+            bucket.updatedNanos = nowNanos;
+            if (tokens >= 1) {
+                bucket.tokens = tokens - 1;
+                return 0;
+            }
+            bucket.tokens = tokens;
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long updatedNanos;
+
+        Bucket(double tokens, long updatedNanos) {
+            this.tokens = tokens;
+            this.updatedNanos = updatedNanos;
+        }
+    }
+
+    // Access-ordered, so the least recently seen client is the one dropped.
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxClients;
+
+        Stripe(int maxClients) {
+            super(16, 0.75f, true);
+            this.maxClients = maxClients;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxClients;
+        }
+    }
+}
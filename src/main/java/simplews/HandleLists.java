@@ -0,0 +1,107 @@
+package simplews;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Concurrent lists of handles, one per owner handle, e.g. the task handles of each student.
+ * {@link TaskStatusIndex} keeps two of them as its secondary indexes.
+ * <p>
+ * Each list is an {@code int[]} holding its size in element 0 and the handles after it, grown by
+ * doubling. Writers of the same list are serialized by a lock stripe; readers take no lock and
+ * see a consistent prefix of the list (a slot that is not written yet reads as 0, which is never
+ * a handle, and is skipped).
+ */
+final class HandleLists {
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int LOCK_STRIPES = 64;
+
+    private final HandleMap<int[]> lists = new HandleMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    HandleLists() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Appends a handle to the list of an owner. The caller makes sure it is not in the list yet.
+     *
+     * @param owner  The owner handle.
+     * @param handle The handle to add.
+     */
+    void add(int owner, int handle) {
+        synchronized (locks[owner & (LOCK_STRIPES - 1)]) {
+            int[] list = lists.get(owner);
+            if (list == null) {
+                list = new int[1 + INITIAL_CAPACITY];
+            } else if (list[0] == list.length - 1) {
+                int[] grown = new int[1 + (list.length - 1) * 2];
+                System.arraycopy(list, 0, grown, 0, list.length);
+                list = grown;
+            }
+            int size = list[0];
+            list[1 + size] = handle;
+            list[0] = size + 1;
+            lists.set(owner, list); // Publishes the new handle (and a grown array) to readers.
+        }
+    }
+
+    /**
+     * Removes every handle that no longer passes a test from the list of an owner.
+     *
+     * @param owner The owner handle.
+     * @param keep  Tells whether a handle stays in the list.
+     */
+    void retainAll(int owner, IntPredicate keep) {
+        synchronized (locks[owner & (LOCK_STRIPES - 1)]) {
+            int[] list = lists.get(owner);
+            if (list == null) {
+                return;
+            }
+            // Filtered into a copy, so readers walking the old array are not disturbed.
+            int[] kept = new int[list.length];
+            int size = 0;
+            for (int i = 1; i <= list[0]; i++) {
+                if (keep.test(list[i])) {
+                    kept[1 + size++] = list[i];
+                }
+            }
+            kept[0] = size;
+            lists.set(owner, kept);
+        }
+    }
+
+    /**
+     * Calls an action for each handle in the list of an owner, in the order they were added.
+     *
+     * @param owner  The owner handle.
+     * @param action Receives each handle.
+     */
+    void forEach(int owner, IntConsumer action) {
+        int[] list = lists.get(owner);
+        if (list == null) {
+            return;
+        }
+        int size = Math.min(list[0], list.length - 1);
+        for (int i = 1; i <= size; i++) {
+            int handle = list[i];
+            if (handle != 0) {
+                action.accept(handle);
+            }
+        }
+    }
+
+    /**
+     * Gets the length of the list of an owner.
+     *
+     * @param owner The owner handle.
+     * @return The number of handles in the list.
+     */
+    int size(int owner) {
+        int[] list = lists.get(owner);
+        return list != null ? list[0] : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package simplews;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent map from the int handles of an {@link IdTable} to values, stored in pages that are
+ * allocated as handles are handed out. Handles are dense and small, so a lookup is two array
+ * reads, without hashing or boxing.
+ * <p>
+ * Reads and {@link #set}/{@link #putIfAbsent} of a value are lock-free; only allocating a page
+ * (once per {@value #PAGE_SIZE} handles) takes a lock.
+ *
+ * @param <T> The type of the values.
+ */
+final class HandleMap<T> {
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Grown (by copying the page references) and filled only under the lock; pages never move.
+    private volatile AtomicReferenceArray<AtomicReferenceArray<T>> pages = new AtomicReferenceArray<>(1);
+
+    /**
+     * Gets the value of a handle.
+     *
+     * @param handle The handle.
+     * @return The value, or null if none was set.
+     */
+    T get(int handle) {
+        AtomicReferenceArray<AtomicReferenceArray<T>> p = pages;
+        int page = handle >>> PAGE_BITS;
+        if (page >= p.length()) {
+            return null;
+        }
+        AtomicReferenceArray<T> values = p.get(page);
+        return values != null ? values.get(handle & PAGE_MASK) : null;
+    }
+
+    /**
+     * Sets the value of a handle.
+     *
+     * @param handle The handle.
+     * @param value  The value.
+     */
+    void set(int handle, T value) {
+        pageOf(handle).set(handle & PAGE_MASK, value);
+    }
+
+    /**
+     * Sets the value of a handle unless it already has one.
+     *
+     * @param handle The handle.
+     * @param value  The value to set.
+     * @return The value the handle has now: {@code value}, or the one that was already there.
+     */
+    T putIfAbsent(int handle, T value) {
+        AtomicReferenceArray<T> values = pageOf(handle);
+        int i = handle & PAGE_MASK;
+        return values.compareAndSet(i, null, value) ? value : values.get(i);
+    }
+
+    private AtomicReferenceArray<T> pageOf(int handle) {
+        int page = handle >>> PAGE_BITS;
+        AtomicReferenceArray<AtomicReferenceArray<T>> p = pages;
+        if (page < p.length()) {
+            AtomicReferenceArray<T> values = p.get(page);
+            if (values != null) {
+                return values;
+            }
+        }
+        synchronized (this) {
+            p = pages;
+            if (page >= p.length()) {
+                AtomicReferenceArray<AtomicReferenceArray<T>> grown =
+                        new AtomicReferenceArray<>(Math.max(page + 1, p.length() * 2));
+                for (int i = 0; i < p.length(); i++) {
+                    grown.lazySet(i, p.get(i));
+                }
+                pages = p = grown;
+            }
+            AtomicReferenceArray<T> values = p.get(page);
+            if (values == null) {
+                values = new AtomicReferenceArray<>(PAGE_SIZE);
+                p.set(page, values);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package simplews;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ShardClient} that calls the other nodes' HTTP endpoints with {@link HttpURLConnection}
+ * (pooled keep-alive connections, no extra dependency).
+ */
+@Component
+public class HttpShardClient implements ShardClient {
+
+    // Connection-level headers that must not be copied from one hop to the next.
+    private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "te", "trailer", "upgrade",
+            "host", "content-length"));
+
+    private static final TypeReference<List<TaskStatusEntry>> ENTRY_LIST = new TypeReference<List<TaskStatusEntry>>() {
+    };
+    private static final TypeReference<JsonNode> JSON_TREE = new TypeReference<JsonNode>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final String secret;
+
+    /**
+     * Creates the client.
+     *
+     * @param objectMapper     Reads and writes the JSON bodies.
+     * @param connectTimeoutMs How long to wait for a connection to another node, in milliseconds.
+     * @param readTimeoutMs    How long to wait for another node's answer, in milliseconds.
+     * @param secret           The secret shared by all nodes, sent with every request; empty for none.
+     */
+    public HttpShardClient(ObjectMapper objectMapper,
+                           @Value("${simplews.shard.connect-timeout-ms:1000}") int connectTimeoutMs,
+                           @Value("${simplews.shard.read-timeout-ms:10000}") int readTimeoutMs,
+                           @Value("${simplews.shard.secret:}") String secret) {
+        this.objectMapper = objectMapper;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.secret = secret.trim();
+    }
+
+    @Override
+    public TaskStatus[] findTaskStatuses(String node, List<TaskKey> keys) throws IOException {
+        List<TaskStatusEntry> entries = postJson(node + "/api/tasks/batch", keys, ENTRY_LIST);
+        if (entries.size() != keys.size()) {
+            throw new IOException(node + " answered " + entries.size() + " statuses for " + keys.size() + " pairs");
+        }
+        TaskStatus[] statuses = new TaskStatus[entries.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = entries.get(i).getStatus();
+        }
+        return statuses;
+    }
+
+    @Override
+    public List<TaskStatusEntry> findTaskStatusesOfTask(String node, String taskId, TaskStatus status) throws IOException {
+        String query = "taskId=" + URLEncoder.encode(taskId, "UTF-8") + (status != null ? "&status=" + status.name() : "");
+        return getJson(node + "/api/tasks?" + query, ENTRY_LIST);
+    }
+
+    @Override
+    public Map<TaskStatus, Long> countTaskStatuses(String node, String taskId) throws IOException {
+        JsonNode answer = getJson(node + "/api/tasks/counts?taskId=" + URLEncoder.encode(taskId, "UTF-8"), JSON_TREE);
+        Map<TaskStatus, Long> counts = new EnumMap<>(TaskStatus.class);
+        for (Iterator<Map.Entry<String, JsonNode>> fields = answer.path("counts").fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            TaskStatus status = TaskStatus.fromLabel(field.getKey());
+            if (status != null) {
+                counts.put(status, field.getValue().asLong());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int addTaskStatuses(String node, List<TaskStatusEntry> entries) throws IOException {
+        Map<String, Integer> result = postJson(node + "/api/shard/pairs", entries, new TypeReference<Map<String, Integer>>() {
+        });
+        Integer added = result.get("added");
+        return added != null ? added : 0;
+    }
+
+    @Override
+    public void forward(String node, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Form parameters may already have been read from the body, so forms are sent on re-encoded.
+        boolean form = request.getContentType() != null
+                && request.getContentType().startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+        String query = request.getQueryString();
+        String target = node + request.getRequestURI() + (query != null && !form ? "?" + query : "");
+
+        HttpURLConnection connection = open(target, request.getMethod());
+        for (Enumeration<String> names = request.getHeaderNames(); names.hasMoreElements(); ) {
+            String name = names.nextElement();
+            // A client's own secret header is never passed on; open() adds the real one.
+            if (!HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT)) && !name.equalsIgnoreCase(SECRET_HEADER)) {
+                for (String value : Collections.list(request.getHeaders(name))) {
+                    connection.addRequestProperty(name, value);
+                }
+            }
+        }
+        if (form) {
+            write(connection, encodeParameters(request.getParameterMap()));
+        } else if (request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+            write(connection, StreamUtils.copyToByteArray(request.getInputStream()));
+        }
+
+        int status = connection.getResponseCode();
+        response.setStatus(status);
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            String name = header.getKey();
+            if (name != null && !HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT))) {
+                for (String value : header.getValue()) {
+                    response.addHeader(name, value);
+                }
+            }
+        }
+        try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+            if (in != null) {
+                StreamUtils.copy(in, response.getOutputStream());
+            }
+        }
+    }
+
+    private <T> T postJson(String url, Object body, TypeReference<T> type) throws IOException {
+        HttpURLConnection connection = open(url, "POST");
+        connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        write(connection, objectMapper.writeValueAsBytes(body));
+        return read(connection, url, type);
+    }
+
+    private <T> T getJson(String url, TypeReference<T> type) throws IOException {
+        return read(open(url, "GET"), url, type);
+    }
+
+    private <T> T read(HttpURLConnection connection, String url, TypeReference<T> type) throws IOException {
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            try (InputStream error = connection.getErrorStream()) {
+                String message = error != null ? StreamUtils.copyToString(error, StandardCharsets.UTF_8) : "";
+                throw new IOException(url + " answered " + status + " " + message);
+            }
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return objectMapper.readValue(in, type);
+        }
+    }
+
+    private HttpURLConnection open(String url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        connection.setRequestProperty(FORWARDED_HEADER, "1");
+        if (!secret.isEmpty()) {
+            connection.setRequestProperty(SECRET_HEADER, secret);
+        }
+        return connection;
+    }
+
+    private static void write(HttpURLConnection connection, byte[] body) throws IOException {
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] encodeParameters(Map<String, String[]> parameters) throws IOException {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            for (String value : parameter.getValue()) {
+                if (encoded.length() > 0) {
+                    encoded.append('&');
+                }
+                encoded.append(URLEncoder.encode(parameter.getKey(), "UTF-8"))
+                        .append('=').append(URLEncoder.encode(value, "UTF-8"));
+            }
+        }
+        return encoded.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,198 @@
+package simplews;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns string IDs (student IDs or task IDs) to small positive int handles.
+ * Uses open addressing over parallel arrays so that looking up an existing ID
+ * does not allocate. Handle 0 is reserved to mean "unknown ID".
+ * <p>
+ * Lookups are lock-free and may run concurrently with {@link #intern(String)};
+ * interning new IDs is serialized, which is cheap because new IDs are rare compared to lookups.
+ */
+final class IdTable {
+
+    // Handles are packed into 28 bits of a TaskStatusIndex slot.
+    static final int MAX_HANDLE = (1 << 28) - 1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Replaced as a whole on resize, so readers always see a consistent keys/handles pair.
+    private volatile Table table;
+    // Reverse mapping from handle to ID; index 0 is unused.
+    private volatile AtomicReferenceArray<String> names;
+    private volatile int size;
+
+    IdTable() {
+        this(MIN_CAPACITY);
+    }
+
+    IdTable(int expectedSize) {
+        table = new Table(tableSizeFor(expectedSize));
+        names = new AtomicReferenceArray<>(Math.max(MIN_CAPACITY, expectedSize + 1));
+    }
+
+    /**
+     * Gets the handle of an ID without interning it.
+     *
+     * @param id The ID to look up.
+     * @return The handle, or 0 if the ID has never been interned.
+     */
+    int get(String id) {
+        Table t = table;
+        int mask = t.keys.length() - 1;
+        for (int i = mix(id.hashCode()) & mask; ; i = (i + 1) & mask) {
+            // The key is published after its handle, so reading the key first makes the handle visible.
+            String candidate = t.keys.get(i);
+            if (candidate == null) {
+                return 0;
+            }
+            if (candidate.equals(id)) {
+                return t.handles[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the handle of an ID given as ASCII bytes, e.g. in a mapped file, assigning the next free
+     * handle if it is new. Only a new ID is copied into a String.
+     *
+     * @param bytes  The buffer holding the ID.
+     * @param offset The position of the first byte of the ID.
+     * @param length The length of the ID; every byte must be ASCII (0..127).
+     * @return The (positive) handle of the ID.
+     */
+    int intern(ByteBuffer bytes, int offset, int length) {
+        // For ASCII, String.hashCode() over the chars equals the same polynomial over the bytes.
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes.get(offset + i);
+        }
+        Table t = table;
+        int mask = t.keys.length() - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            String candidate = t.keys.get(i);
+            if (candidate == null) {
+                break;
+            }
+            if (candidate.length() == length && asciiEquals(candidate, bytes, offset)) {
+                return t.handles[i];
+            }
+        }
+        byte[] copy = new byte[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = bytes.get(offset + i);
+        }
+        return intern(new String(copy, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Gets the handle of an ID, assigning the next free handle if it is new.
+     *
+     * @param id The ID to intern.
+     * @return The (positive) handle of the ID.
+     */
+    int intern(String id) {
+        int existing = get(id);
+        if (existing != 0) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = get(id);
+            if (existing != 0) {
+                return existing;
+            }
+            if (size == MAX_HANDLE) {
+                throw new IllegalStateException("ID table is full (" + MAX_HANDLE + " entries)");
+            }
+            if ((size + 1) * 4L > table.keys.length() * 3L) {
+                table = table.resize(table.keys.length() * 2);
+            }
+            int handle = size + 1;
+            AtomicReferenceArray<String> n = names;
+            if (handle == n.length()) {
+                AtomicReferenceArray<String> grown = new AtomicReferenceArray<>(n.length() * 2);
+                for (int i = 1; i < handle; i++) {
+                    grown.lazySet(i, n.get(i));
+                }
+                names = n = grown;
+            }
+            n.set(handle, id);
+            table.insert(id, handle);
+            size = handle;
+            return handle;
+        }
+    }
+
+    /**
+     * Gets the ID that was interned under a handle.
+     *
+     * @param handle A handle previously returned by {@link #intern(String)}.
+     * @return The ID.
+     */
+    String name(int handle) {
+        return names.get(handle);
+    }
+
+    /**
+     * Gets the number of interned IDs.
+     *
+     * @return The number of IDs.
+     */
+    int size() {
+        return size;
+    }
+
+    private static boolean asciiEquals(String candidate, ByteBuffer bytes, int offset) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != bytes.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Spreads the String hash so that similar IDs ("task001", "task002") do not cluster.
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 1);
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    private static final class Table {
+        final AtomicReferenceArray<String> keys;
+        final int[] handles;
+
+        Table(int capacity) {
+            keys = new AtomicReferenceArray<>(capacity);
+            handles = new int[capacity];
+        }
+
+        Table resize(int capacity) {
+            Table bigger = new Table(capacity);
+            for (int i = 0; i < keys.length(); i++) {
+                String key = keys.get(i);
+                if (key != null) {
+                    bigger.insert(key, handles[i]);
+                }
+            }
+            return bigger;
+        }
+
+        void insert(String id, int handle) {
+            int mask = keys.length() - 1;
+            int i = mix(id.hashCode()) & mask;
+            while (keys.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            handles[i] = handle;
+            keys.set(i, id);
+        }
+    }
+}
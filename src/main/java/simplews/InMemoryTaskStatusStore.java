@@ -0,0 +1,119 @@
+package simplews;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * {@link TaskStatusStore} that keeps every status in a heap {@link TaskStatusIndex}.
+ * Safe for concurrent use: reads never block and writes are compare-and-set based.
+ */
+public class InMemoryTaskStatusStore implements TaskStatusStore {
+
+    // Replaced as a whole by replaceAll(); every method reads it once.
+    private volatile TaskStatusIndex index;
+
+    public InMemoryTaskStatusStore() {
+        this.index = new TaskStatusIndex();
+    }
+
+    /**
+     * Creates a store pre-populated with the sample statuses used by the demo page and the tests.
+     *
+     * @return A new store holding the sample data.
+     */
+    public static InMemoryTaskStatusStore withSampleData() {
+        InMemoryTaskStatusStore store = new InMemoryTaskStatusStore();
+        putSampleData(store);
+        return store;
+    }
+
+    /**
+     * Adds the sample statuses used by the demo page and the tests to a store.
+     *
+     * @param store The store to fill.
+     */
+    public static void putSampleData(TaskStatusStore store) {
+        putSampleData(store, studentId -> true);
+    }
+
+    /**
+     * Adds the sample statuses of some students to a store, e.g. only those a shard owns.
+     *
+     * @param store       The store to fill.
+     * @param ownsStudent Whether the store holds a student's pairs.
+     */
+    public static void putSampleData(TaskStatusStore store, Predicate<String> ownsStudent) {
+        // --- Ensure these entries exactly match your test expectations ---
+        putIf(store, ownsStudent, "student123", "task001", TaskStatus.SUBMITTED);
+        putIf(store, ownsStudent, "student456", "task002", TaskStatus.UNDER_REVIEW);
+        putIf(store, ownsStudent, "student123", "task003", TaskStatus.COMPLETED);
+        putIf(store, ownsStudent, "student789", "task004", TaskStatus.SUBMITTED);
+        // ------------------------------------------------------------------
+    }
+
+    private static void putIf(TaskStatusStore store, Predicate<String> ownsStudent, String studentId, String taskId, TaskStatus status) {
+        if (ownsStudent.test(studentId)) {
+            store.put(studentId, taskId, status);
+        }
+    }
+
+    @Override
+    public TaskStatus find(String studentId, String taskId) {
+        return index.get(studentId, taskId);
+    }
+
+    @Override
+    public void findAll(String studentId, List<String> taskIds, TaskStatus[] out) {
+        index.getAll(studentId, taskIds, out);
+    }
+
+    @Override
+    public void findAll(List<TaskKey> keys, TaskStatus[] out) {
+        index.getAll(keys, out);
+    }
+
+    @Override
+    public TaskStatus put(String studentId, String taskId, TaskStatus status) {
+        return index.put(studentId, taskId, status);
+    }
+
+    @Override
+    public TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update) {
+        return index.compareAndExchange(studentId, taskId, expected, update);
+    }
+
+    @Override
+    public TaskStatus compareAndRemove(String studentId, String taskId, TaskStatus expected) {
+        return index.compareAndRemove(studentId, taskId, expected);
+    }
+
+    @Override
+    public void forEachTaskOf(String studentId, TaskStatusVisitor visitor) {
+        index.forEachTaskOf(studentId, visitor);
+    }
+
+    @Override
+    public void forEachStudentOf(String taskId, TaskStatusVisitor visitor) {
+        index.forEachStudentOf(taskId, visitor);
+    }
+
+    @Override
+    public void countByStatus(String taskId, long[] out) {
+        index.countByStatus(taskId, out);
+    }
+
+    @Override
+    public void replaceAll(TaskStatusIndex pairs) {
+        index = pairs;
+    }
+
+    @Override
+    public boolean supportsRemoval() {
+        return true;
+    }
+
+    @Override
+    public void forEach(TaskStatusVisitor visitor) {
+        index.forEach(visitor);
+    }
+}
@@ -0,0 +1,101 @@
+package simplews;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram in the style of HdrHistogram: every power of two is split into 32 linear
+ * sub-buckets, so any recorded value is reported within about 3% of its true value, from single
+ * nanoseconds up to days, in a fixed array of counters.
+ * <p>
+ * Recording is lock-free and allocation-free (an index computation and a few atomic adds), so it
+ * can sit on the request path without distorting the latencies it measures. Counts accumulate
+ * for the lifetime of the histogram.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one measurement.
+     *
+     * @param nanos The measured latency in nanoseconds; negative values are recorded as 0.
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Gets the latency that the given fraction of the measurements did not exceed.
+     * Measurements recorded while this runs may or may not be included.
+     *
+     * @param quantile The quantile, between 0 and 1 (e.g. 0.99).
+     * @return The highest latency of the bucket holding that quantile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    long valueAtQuantile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above that, each power of two gets SUB_BUCKETS buckets.
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
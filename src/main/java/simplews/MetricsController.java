@@ -0,0 +1,33 @@
+package simplews;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Scrape endpoint for monitoring systems such as Prometheus.
+ */
+@RestController
+public class MetricsController {
+
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final TaskStatusMetrics metrics;
+    private final TaskStatusService taskStatusService;
+
+    public MetricsController(TaskStatusMetrics metrics, TaskStatusService taskStatusService) {
+        this.metrics = metrics;
+        this.taskStatusService = taskStatusService;
+    }
+
+    /**
+     * Handles HTTP GET requests to "/metrics".
+     * Returns lookup outcomes, request counts, latency quantiles and the number of pairs per status,
+     * in the Prometheus text format.
+     *
+     * @return The metrics text.
+     */
+    @GetMapping(value = "/metrics", produces = PROMETHEUS_TEXT)
+    public String metrics() {
+        return metrics.toPrometheusText(taskStatusService);
+    }
+}
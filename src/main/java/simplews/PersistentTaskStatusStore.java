@@ -0,0 +1,432 @@
+package simplews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskStatusStore} that survives restarts: a memory-mapped {@link TaskStatusSnapshot} holds the
+ * bulk of the data, and every change since that snapshot is appended to a {@link TaskStatusChangeLog}
+ * and kept in a small heap {@link TaskStatusIndex}.
+ * <p>
+ * Opening the store maps the snapshot and replays only the (short) change log, so a node with tens
+ * of millions of pairs serves lookups straight from the mapped file within moments of starting,
+ * instead of after reloading everything onto the heap. Once the log holds enough changes, it is
+ * compacted in the background into a new snapshot, which then replaces the old one.
+ * <p>
+ * Reads never block. Writes are serialized, so that the log records changes in the order they
+ * were applied.
+ * <p>
+ * The snapshot has no secondary indexes, so per-student and per-task queries (and counts) walk the
+ * whole store; use the in-memory store where those have to be fast.
+ */
+public class PersistentTaskStatusStore implements TaskStatusStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistentTaskStatusStore.class);
+
+    private static final String SNAPSHOT_FILE = "statuses.snapshot";
+    private static final String LOG_PREFIX = "changes-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long compactAfterChanges;
+    private final boolean syncWrites;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "status-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Lookups check 'changes', then 'compacting', then 'snapshot'. Writers replace them in the
+    // opposite order, so a reader that misses in a newer structure still finds the data in an older one.
+    private volatile TaskStatusIndex changes = new TaskStatusIndex();
+    private volatile TaskStatusIndex compacting;
+    private volatile TaskStatusSnapshot snapshot;
+
+    // Guards the change log and the start of a compaction.
+    private final Object writeLock = new Object();
+    private TaskStatusChangeLog changeLog;
+    private long logGeneration;
+
+    private PersistentTaskStatusStore(Path directory, long compactAfterChanges, boolean syncWrites) {
+        this.directory = directory;
+        this.compactAfterChanges = compactAfterChanges;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Opens the store kept in a directory, creating an empty one if the directory holds none.
+     *
+     * @param directory           The directory holding the snapshot and the change logs.
+     * @param compactAfterChanges The number of logged changes that triggers a compaction.
+     * @param syncWrites          Whether every write waits until its log record is on disk.
+     * @return The store.
+     * @throws IOException If the files cannot be read.
+     */
+    public static PersistentTaskStatusStore open(Path directory, long compactAfterChanges, boolean syncWrites)
+            throws IOException {
+        long start = System.nanoTime();
+        PersistentTaskStatusStore store = new PersistentTaskStatusStore(directory, compactAfterChanges, syncWrites);
+        Files.createDirectories(directory);
+
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            store.snapshot = TaskStatusSnapshot.open(snapshotFile);
+        }
+        long firstGeneration = store.snapshot != null ? store.snapshot.getLogGeneration() : 0;
+
+        // Logs older than the snapshot are already part of it; a crash after a compaction can leave them behind.
+        long replayed = 0;
+        long nextGeneration = firstGeneration;
+        for (long generation : store.logGenerations()) {
+            if (generation < firstGeneration) {
+                Files.delete(store.logFile(generation));
+            } else {
+                TaskStatusIndex changes = store.changes;
+                replayed += TaskStatusChangeLog.replay(store.logFile(generation), changes::put);
+                nextGeneration = generation + 1;
+            }
+        }
+        // Appending to a new log keeps the replayed ones intact until a compaction has absorbed them.
+        store.logGeneration = nextGeneration;
+        store.changeLog = TaskStatusChangeLog.open(store.logFile(nextGeneration), syncWrites);
+
+        log.info("Opened task status store in {}: {} pairs in the snapshot, {} logged changes replayed in {} ms",
+                directory, store.snapshot != null ? store.snapshot.size() : 0, replayed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (replayed >= compactAfterChanges) {
+            synchronized (store.writeLock) {
+                store.compactInBackground();
+            }
+        }
+        return store;
+    }
+
+    @Override
+    public TaskStatus find(String studentId, String taskId) {
+        TaskStatus status = changes.get(studentId, taskId);
+        if (status != null) {
+            return status;
+        }
+        TaskStatusIndex beingCompacted = compacting;
+        if (beingCompacted != null) {
+            status = beingCompacted.get(studentId, taskId);
+            if (status != null) {
+                return status;
+            }
+        }
+        TaskStatusSnapshot current = snapshot;
+        return current != null ? current.find(studentId, taskId) : null;
+    }
+
+    @Override
+    public TaskStatus put(String studentId, String taskId, TaskStatus status) {
+        checkIds(studentId, taskId);
+        synchronized (writeLock) {
+            TaskStatus previous = find(studentId, taskId);
+            if (previous != status) {
+                apply(studentId, taskId, status);
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update) {
+        checkIds(studentId, taskId);
+        synchronized (writeLock) {
+            TaskStatus current = find(studentId, taskId);
+            if (current == expected) {
+                apply(studentId, taskId, update);
+            }
+            return current;
+        }
+    }
+
+    @Override
+    public void forEach(TaskStatusVisitor visitor) {
+        // Newest first; each pair is visited only from the newest structure that holds it.
+        TaskStatusIndex current = changes;
+        TaskStatusIndex beingCompacted = compacting;
+        TaskStatusSnapshot base = snapshot;
+        current.forEach(visitor);
+        if (beingCompacted != null) {
+            beingCompacted.forEach((studentId, taskId, status) -> {
+                if (current.get(studentId, taskId) == null) {
+                    visitor.visit(studentId, taskId, status);
+                }
+            });
+        }
+        if (base != null) {
+            base.forEach((studentId, taskId, status) -> {
+                if (current.get(studentId, taskId) == null
+                        && (beingCompacted == null || beingCompacted.get(studentId, taskId) == null)) {
+                    visitor.visit(studentId, taskId, status);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the new pairs as the snapshot and starts over with an empty change log. Writes wait
+     * until the snapshot is on disk; lookups continue, and until the switch is complete they may
+     * still find old pairs that the new contents no longer have, but never miss a new pair.
+     *
+     * @param pairs The new contents.
+     * @throws UncheckedIOException If the snapshot cannot be written; the store then keeps its old contents.
+     */
+    @Override
+    public void replaceAll(TaskStatusIndex pairs) {
+        long start = System.nanoTime();
+        while (true) {
+            synchronized (writeLock) {
+                // A running compaction would install its (old) snapshot after ours, so wait for it.
+                if (compacting == null) {
+                    replaceAllLocked(pairs);
+                    break;
+                }
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a compaction to finish", e);
+            }
+        }
+        log.info("Replaced the task status store with {} pairs in {} ms", pairs.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Checks whether the store holds no pairs at all, e.g. on the very first start.
+     *
+     * @return True if the store is empty.
+     */
+    public boolean isEmpty() {
+        TaskStatusSnapshot current = snapshot;
+        return changes.size() == 0 && compacting == null && (current == null || current.size() == 0);
+    }
+
+    /**
+     * Starts reading the whole snapshot into memory on a background thread, so that the first
+     * lookups of each page stop waiting for the disk sooner. Lookups are served meanwhile.
+     */
+    public void preloadInBackground() {
+        TaskStatusSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            long start = System.nanoTime();
+            current.preload();
+            log.info("Preloaded task status snapshot in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }, "status-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Writes all changes logged so far into a new snapshot, on the calling thread.
+     * Writes may continue meanwhile; they go to a new change log.
+     *
+     * @return False if a compaction was already running, so nothing was done.
+     * @throws IOException If the new snapshot cannot be written.
+     */
+    public boolean compact() throws IOException {
+        Compaction compaction;
+        synchronized (writeLock) {
+            compaction = startCompaction();
+        }
+        if (compaction == null) {
+            return false;
+        }
+        compaction.run();
+        return true;
+    }
+
+    /**
+     * Waits for a running compaction and closes the change log. Changes not yet compacted stay in
+     * the log and are replayed on the next start.
+     *
+     * @throws IOException If the log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            changeLog.close();
+        }
+    }
+
+    // Caller holds writeLock and has checked that the status changes.
+    private void apply(String studentId, String taskId, TaskStatus status) {
+        try {
+            changeLog.append(studentId, taskId, status);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not log status change of " + studentId + "/" + taskId, e);
+        }
+        changes.put(studentId, taskId, status);
+        if (changeLog.getRecordCount() >= compactAfterChanges) {
+            compactInBackground();
+        }
+    }
+
+    // Caller holds writeLock.
+    private void compactInBackground() {
+        Compaction compaction = startCompaction();
+        if (compaction != null) {
+            compactor.execute(() -> {
+                try {
+                    compaction.run();
+                } catch (IOException e) {
+                    log.error("Compaction of the task status store failed; changes stay in the log", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Freezes the current changes and switches writes to a new log. Caller holds writeLock.
+     *
+     * @return The compaction to run, or null if one is already running.
+     */
+    private Compaction startCompaction() {
+        if (compacting != null) {
+            return null;
+        }
+        TaskStatusChangeLog nextLog;
+        try {
+            nextLog = TaskStatusChangeLog.open(logFile(logGeneration + 1), syncWrites);
+            changeLog.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start a new change log in " + directory, e);
+        }
+        changeLog = nextLog;
+        logGeneration++;
+        TaskStatusIndex frozen = changes;
+        compacting = frozen;
+        changes = new TaskStatusIndex();
+        return new Compaction(snapshot, frozen, logGeneration);
+    }
+
+    // Caller holds writeLock and no compaction is running.
+    private void replaceAllLocked(TaskStatusIndex pairs) {
+        long nextGeneration = logGeneration + 1;
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        TaskStatusSnapshot replacement;
+        try {
+            // Once this file is in place a restart loads the new pairs and skips every older log.
+            TaskStatusSnapshot.write(snapshotFile, nextGeneration, null, pairs);
+            replacement = TaskStatusSnapshot.open(snapshotFile);
+            TaskStatusChangeLog nextLog = TaskStatusChangeLog.open(logFile(nextGeneration), syncWrites);
+            changeLog.close();
+            changeLog = nextLog;
+            logGeneration = nextGeneration;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the new task status snapshot in " + directory, e);
+        }
+        // The new pairs are served from the heap index until the new snapshot has taken over.
+        changes = pairs;
+        snapshot = replacement;
+        changes = new TaskStatusIndex();
+        try {
+            for (long generation : logGenerations()) {
+                if (generation < nextGeneration) {
+                    Files.deleteIfExists(logFile(generation));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete old change logs in {}; they are skipped on the next start", directory, e);
+        }
+    }
+
+    private void checkIds(String studentId, String taskId) {
+        TaskStatusSnapshot.utf8Length(studentId);
+        TaskStatusSnapshot.utf8Length(taskId);
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Merges a frozen set of changes into a new snapshot.
+     */
+    private final class Compaction {
+        private final TaskStatusSnapshot base;
+        private final TaskStatusIndex frozen;
+        private final long firstUncompactedGeneration;
+
+        Compaction(TaskStatusSnapshot base, TaskStatusIndex frozen, long firstUncompactedGeneration) {
+            this.base = base;
+            this.frozen = frozen;
+            this.firstUncompactedGeneration = firstUncompactedGeneration;
+        }
+
+        void run() throws IOException {
+            long start = System.nanoTime();
+            try {
+                Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+                TaskStatusSnapshot.write(snapshotFile, firstUncompactedGeneration, base, frozen);
+                snapshot = TaskStatusSnapshot.open(snapshotFile);
+                compacting = null;
+            } catch (IOException | RuntimeException e) {
+                abort();
+                throw e;
+            }
+            for (long generation : logGenerations()) {
+                if (generation < firstUncompactedGeneration) {
+                    Files.deleteIfExists(logFile(generation));
+                }
+            }
+            log.info("Compacted {} changes into a snapshot of {} pairs in {} ms", frozen.size(), snapshot.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        // Folds the frozen changes back under the newer ones, so the next compaction includes them.
+        private void abort() {
+            synchronized (writeLock) {
+                TaskStatusIndex current = changes;
+                frozen.forEach((studentId, taskId, status) -> {
+                    if (current.get(studentId, taskId) == null) {
+                        current.put(studentId, taskId, status);
+                    }
+                });
+                compacting = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package simplews;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A page whose content never changes while the application runs (e.g. the empty /taskStatus form).
+ * The JSP is rendered once, on the first request, and kept as plain and gzip-compressed bytes;
+ * every later request is answered from those bytes, with a long {@code Cache-Control} lifetime and
+ * a strong {@code ETag} so that revalidation gets a 304.
+ */
+public final class PrerenderedPage {
+
+    private final String jspPath;
+    private final long maxAgeSeconds;
+    private volatile Content content;
+
+    /**
+     * Creates a page that renders a JSP on first use.
+     *
+     * @param jspPath       The path of the JSP, e.g. {@code /WEB-INF/jsp/taskStatusView.jsp}.
+     * @param maxAgeSeconds How long clients and proxies may reuse the page without asking again.
+     */
+    public PrerenderedPage(String jspPath, long maxAgeSeconds) {
+        this.jspPath = jspPath;
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Creates a page with fixed content instead of a JSP, e.g. rendered by {@link TaskStatusView}.
+     *
+     * @param html          The page as UTF-8 bytes.
+     * @param maxAgeSeconds How long clients and proxies may reuse the page without asking again.
+     * @return The page.
+     */
+    static PrerenderedPage ofBytes(byte[] html, long maxAgeSeconds) {
+        PrerenderedPage page = new PrerenderedPage(null, maxAgeSeconds);
+        try {
+            page.content = new Content(html);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown: the page is compressed in memory.
+        }
+        return page;
+    }
+
+    // A page with fixed content instead of a JSP, for tests.
+    static PrerenderedPage ofHtml(String html, long maxAgeSeconds) throws IOException {
+        return ofBytes(html.getBytes(StandardCharsets.UTF_8), maxAgeSeconds);
+    }
+
+    /**
+     * Writes the page, compressed if the client accepts gzip, or a 304 if the client's copy is current.
+     *
+     * @param request  The request.
+     * @param response The response.
+     * @throws ServletException If the JSP fails on first use.
+     * @throws IOException      If the response cannot be written.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Content page = content != null ? content : render(request, response);
+        boolean gzip = acceptsGzip(request);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAgeSeconds);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (new ServletWebRequest(request, response).checkNotModified(gzip ? page.gzipEtag : page.etag)) {
+            return;
+        }
+        byte[] body = gzip ? page.gzip : page.plain;
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentType("text/html;charset=UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private synchronized Content render(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (content == null) {
+            CapturingResponse capture = new CapturingResponse(response);
+            request.getRequestDispatcher(jspPath).include(request, capture);
+            content = new Content(capture.toByteArray());
+        }
+        return content;
+    }
+
+    // The q-value is ignored: a client that lists gzip at all is assumed to accept it.
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return accept != null && accept.contains("gzip");
+    }
+
+    /**
+     * The rendered bytes in both encodings, with a tag for each (the two must differ, being different bytes).
+     */
+    private static final class Content {
+        final byte[] plain;
+        final byte[] gzip;
+        final String etag;
+        final String gzipEtag;
+
+        Content(byte[] plain) throws IOException {
+            this.plain = plain;
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(plain.length / 2 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(plain);
+            }
+            this.gzip = compressed.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(plain, 0, plain.length);
+            String hash = Long.toHexString(crc.getValue()) + Integer.toHexString(plain.length);
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gz\"";
+        }
+    }
+
+    /**
+     * Collects what an included JSP writes, instead of sending it.
+     */
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        private final CharArrayWriter chars = new CharArrayWriter(8192);
+        private PrintWriter writer;
+        private ServletOutputStream stream;
+
+        CapturingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(chars);
+            }
+            return writer;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (stream == null) {
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        bytes.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        bytes.write(b, off, len);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public void flushBuffer() {
+            // Nothing is sent while capturing.
+        }
+
+        byte[] toByteArray() {
+            if (writer != null) {
+                writer.flush();
+                return chars.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured request log that never makes a request thread wait for output.
+ * <p>
+ * Request threads only copy the fields of an event (references, no string building) into a
+ * preallocated ring buffer, claiming a slot with a compare-and-set. A single background thread
+ * formats the events as {@code key=value} lines and writes each batch with one call. Events below
+ * the configured level, or not picked by sampling, are rejected before anything is copied; events
+ * that arrive while the buffer is full are dropped and counted rather than blocking the request.
+ * <p>
+ * Configured by {@code simplews.request-log.*} in application.properties.
+ */
+@Component
+public class RequestLog implements Closeable {
+
+    /**
+     * Severity of an event; an event is logged if its level is at or above the configured level.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, OFF
+    }
+
+    private static final int MAX_BATCH = 1024;
+
+    private final PrintStream out;
+    private final Level level;
+    private final int sampleMask;
+
+    // Ring buffer of events; a slot holds sequence number s once the event with that sequence is fully written.
+    private final int mask;
+    private final Entry[] entries;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final StringBuilder line = new StringBuilder(256);
+    // Writer thread only: the formatted time of the last event, reused while the millisecond is the same.
+    private long lastMillis = Long.MIN_VALUE;
+    private String lastTime;
+
+    private final Thread writer;
+    private final long flushIntervalNanos;
+    private volatile boolean running;
+
+    /**
+     * Creates the log and starts its writer thread.
+     *
+     * @param out             Where the lines go.
+     * @param level           The lowest level that is logged.
+     * @param sample          Log one event in this many, picked at random (rounded up to a power of two); 1 logs all.
+     * @param capacity        The number of events the buffer holds (rounded up to a power of two).
+     * @param flushIntervalMs How long the writer sleeps when the buffer is empty, in milliseconds.
+     */
+    public RequestLog(PrintStream out, Level level, int sample, int capacity, long flushIntervalMs) {
+        this(out, level, sample, capacity, flushIntervalMs, true);
+    }
+
+    /**
+     * Creates the log for the application: lines go to standard output.
+     *
+     * @param level           The lowest level that is logged.
+     * @param sample          Log one event in this many.
+     * @param capacity        The number of events the buffer holds.
+     * @param flushIntervalMs How long the writer sleeps when the buffer is empty, in milliseconds.
+     */
+    @Autowired
+    public RequestLog(@Value("${simplews.request-log.level:INFO}") Level level,
+                      @Value("${simplews.request-log.sample:1}") int sample,
+                      @Value("${simplews.request-log.buffer-size:8192}") int capacity,
+                      @Value("${simplews.request-log.flush-interval-ms:20}") long flushIntervalMs) {
+        this(System.out, level, sample, capacity, flushIntervalMs);
+    }
+
+    // Without a writer thread, events stay in the buffer until drain() is called.
+    RequestLog(PrintStream out, Level level, int sample, int capacity, long flushIntervalMs, boolean startWriter) {
+        this.out = out;
+        this.level = level;
+        this.sampleMask = powerOfTwoAtLeast(sample) - 1;
+        int size = powerOfTwoAtLeast(capacity);
+        this.mask = size - 1;
+        this.entries = new Entry[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            published.set(i, -1);
+        }
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        if (startWriter && level != Level.OFF) {
+            running = true;
+            writer = new Thread(this::writeLoop, "request-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Creates a log that discards everything, for code that is used without a Spring context.
+     *
+     * @return A log at level {@link Level#OFF}.
+     */
+    public static RequestLog off() {
+        return new RequestLog(System.out, Level.OFF, 1, 1, 1, false);
+    }
+
+    /**
+     * Checks whether events of a level are logged at all (before sampling).
+     *
+     * @param eventLevel The level.
+     * @return Whether the level is enabled.
+     */
+    public boolean isEnabled(Level eventLevel) {
+        return eventLevel.compareTo(level) >= 0 && eventLevel != Level.OFF;
+    }
+
+    /**
+     * Logs one request event. Returns immediately; the line is written later by the writer thread.
+     * Fields that are null are left out of the line.
+     *
+     * @param eventLevel The level of the event.
+     * @param event      The name of the event (e.g. {@code check_task_status}).
+     * @param studentId  The ID of the student, or null.
+     * @param taskId     The ID of the task, or null.
+     * @param status     The status, or null.
+     */
+    public void log(Level eventLevel, String event, String studentId, String taskId, String status) {
+        if (!isEnabled(eventLevel)
+                || (sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0)) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) sequence & mask;
+        Entry entry = entries[slot];
+        entry.timeMillis = System.currentTimeMillis();
+        entry.level = eventLevel;
+        entry.event = event;
+        entry.studentId = studentId;
+        entry.taskId = taskId;
+        entry.status = status;
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * Gets the number of events dropped because the buffer was full.
+     *
+     * @return The number of dropped events.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the writer thread after it has written every event logged so far.
+     */
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Writes the events published so far, in batches, from the thread that calls it.
+     * Only one thread may drain at a time (the writer thread, or a test when there is none).
+     *
+     * @return The number of events written.
+     */
+    int drain() {
+        int written = 0;
+        long next = consumed.get();
+        while (true) {
+            StringBuilder batch = line;
+            batch.setLength(0);
+            int count = 0;
+            while (count < MAX_BATCH) {
+                int slot = (int) next & mask;
+                if (published.get(slot) != next) {
+                    break;
+                }
+                format(entries[slot], batch);
+                entries[slot].clear();
+                next++;
+                count++;
+            }
+            if (count == 0) {
+                return written;
+            }
+            consumed.lazySet(next);
+            out.print(batch);
+            out.flush();
+            written += count;
+        }
+    }
+
+    private void format(Entry entry, StringBuilder out) {
+        if (entry.timeMillis != lastMillis) {
+            lastMillis = entry.timeMillis;
+            lastTime = Instant.ofEpochMilli(lastMillis).toString();
+        }
+        out.append(lastTime).append(' ').append(entry.level)
+                .append(" event=").append(entry.event);
+        field(out, "studentId", entry.studentId);
+        field(out, "taskId", entry.taskId);
+        field(out, "status", entry.status);
+        out.append('\n');
+    }
+
+    // Values are quoted so that IDs with spaces, quotes or line breaks cannot break the line format.
+    private static void field(StringBuilder out, String key, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append(' ').append(key).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\r') {
+                out.append("\\r");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static int powerOfTwoAtLeast(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * One slot of the ring buffer; written by one request thread, then read and cleared by the writer.
+     */
+    private static final class Entry {
+        long timeMillis;
+        Level level;
+        String event;
+        String studentId;
+        String taskId;
+        String status;
+
+        void clear() {
+            event = null;
+            studentId = null;
+            taskId = null;
+            status = null;
+        }
+    }
+}
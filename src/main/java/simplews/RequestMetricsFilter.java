@@ -0,0 +1,56 @@
+package simplews;
+
+import org.springframework.stereotype.Component;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Times every request to a measured endpoint (see {@link TaskStatusMetrics.Endpoint}) from the moment
+ * it enters the application until the response, including any JSP, has been rendered.
+ * Spring Boot registers the filter for all URLs because it is a Filter bean.
+ */
+@Component
+public class RequestMetricsFilter implements Filter {
+
+    private final TaskStatusMetrics metrics;
+
+    public RequestMetricsFilter(TaskStatusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        TaskStatusMetrics.Endpoint endpoint = TaskStatusMetrics.Endpoint.forPath(pathOf(httpRequest));
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!request.isAsyncStarted()) {
+                boolean serverError = failed || ((HttpServletResponse) response).getStatus() >= 500;
+                metrics.recordRequest(endpoint, System.nanoTime() - start, serverError);
+            }
+        }
+    }
+
+    // The request path without the context path, as TaskStatusMetrics.Endpoint.forPath expects it.
+    static String pathOf(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? uri : uri.substring(contextPath.length());
+    }
+}
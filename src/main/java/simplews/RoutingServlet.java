@@ -1,46 +1,116 @@
 package simplews;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Spring MVC Controller to handle web requests related to task status checking.
  * It maps URLs to methods that interact with the TaskStatusService and prepare the view.
+ * <p>
+ * The write endpoints (/updateTaskStatus and /setTaskStatus) do not authenticate the caller: they
+ * expect to sit behind an authenticating proxy that only lets graders through. The administrative
+ * override /setTaskStatus additionally requires {@code simplews.admin.secret} in {@link #ADMIN_SECRET_HEADER},
+ * and is refused while no secret is configured.
  */
 @Controller // Marks this class as a Spring Controller, responsible for handling web requests.
 public class RoutingServlet {
 
+    /**
+     * Header carrying {@code simplews.admin.secret}, which /setTaskStatus requires.
+     */
+    public static final String ADMIN_SECRET_HEADER = "X-Simplews-Admin-Secret";
+
     // Declare a field for the TaskStatusService.
     // Spring will automatically inject an instance of TaskStatusService here.
     private final TaskStatusService taskStatusService;
+    // Request events are handed to the log's background writer, so logging never blocks a request thread.
+    private final RequestLog requestLog;
+    // The empty form is the same for everyone, so it is rendered once and served from memory.
+    private final PrerenderedPage statusForm;
+    // The secret /setTaskStatus requires, as UTF-8; empty refuses every override.
+    private final byte[] adminSecret;
+
+    /**
+     * Constructor for the RoutingServlet without request logging (e.g. for standalone tests).
+     *
+     * @param taskStatusService The TaskStatusService instance.
+     */
+    public RoutingServlet(TaskStatusService taskStatusService) {
+        this(taskStatusService, RequestLog.off(), statusForm(null, 3600));
+    }
 
     /**
      * Constructor for the RoutingServlet.
-     * Uses Spring's @Autowired to inject the TaskStatusService dependency.
+     * Uses Spring's @Autowired to inject the TaskStatusService and RequestLog dependencies.
      *
-     * @param taskStatusService The TaskStatusService instance injected by Spring.
+     * @param taskStatusService    The TaskStatusService instance injected by Spring.
+     * @param requestLog           The request log injected by Spring.
+     * @param formMaxAgeSeconds    How long browsers may reuse the /taskStatus form without asking again.
+     * @param precompiledView      The precompiled page view, present with {@code simplews.view.mode=precompiled};
+     *                             then the form is rendered by it instead of by the JSP.
+     * @param adminSecret          The secret /setTaskStatus requires; empty refuses every override.
      */
     @Autowired // Tells Spring to automatically inject dependencies via this constructor.
-    public RoutingServlet(TaskStatusService taskStatusService) {
+    public RoutingServlet(TaskStatusService taskStatusService, RequestLog requestLog,
+                          @Value("${simplews.http.form-max-age-seconds:3600}") long formMaxAgeSeconds,
+                          ObjectProvider<TaskStatusView> precompiledView,
+                          @Value("${simplews.admin.secret:}") String adminSecret) {
+        this(taskStatusService, requestLog, statusForm(precompiledView.getIfAvailable(), formMaxAgeSeconds), adminSecret);
+    }
+
+    // Lets tests supply the form page.
+    RoutingServlet(TaskStatusService taskStatusService, RequestLog requestLog, PrerenderedPage statusForm) {
+        this(taskStatusService, requestLog, statusForm, "");
+    }
+
+    // Lets tests supply the form page and the admin secret.
+    RoutingServlet(TaskStatusService taskStatusService, RequestLog requestLog, PrerenderedPage statusForm, String adminSecret) {
         this.taskStatusService = taskStatusService;
+        this.requestLog = requestLog;
+        this.statusForm = statusForm;
+        this.adminSecret = adminSecret.trim().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static PrerenderedPage statusForm(TaskStatusView precompiledView, long maxAgeSeconds) {
+        return precompiledView != null
+                ? PrerenderedPage.ofBytes(precompiledView.renderForm(), maxAgeSeconds)
+                : new PrerenderedPage("/WEB-INF/jsp/taskStatusView.jsp", maxAgeSeconds);
     }
 
     /**
      * Handles HTTP GET requests to the "/taskStatus" URL.
      * This method is used to display the initial web page containing the form
-     * for checking task status.
+     * for checking task status. The page (/WEB-INF/jsp/taskStatusView.jsp without a result) is rendered
+     * on the first request only; after that it is written from memory, gzip-compressed for clients that
+     * accept it, and browsers may cache it (or get a 304 when they revalidate).
      *
-     * @return The logical name of the view (JSP/HTML file) to render.
-     * Spring will resolve this name to the actual file path based on configuration (e.g., /WEB-INF/jsp/taskStatusView.jsp).
+     * @param request  The servlet request.
+     * @param response The servlet response the page is written to.
+     * @throws ServletException If the JSP fails to render.
+     * @throws IOException      If the page cannot be written.
      */
     @GetMapping("/taskStatus") // Maps GET requests for the "/taskStatus" path to this method.
-    public String showStatusForm() {
-        System.out.println("Received request to show task status form.");
-        // Return the name of the view file.
-        return "taskStatusView";
+    public void showStatusForm(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        requestLog.log(RequestLog.Level.DEBUG, "show_task_status_form", null, null, null);
+        statusForm.write(request, response);
     }
 
     /**
@@ -53,17 +123,32 @@ public class RoutingServlet {
      * @param studentId The value of the "studentId" request parameter. @RequestParam automatically binds the request parameter to this method argument.
      * @param taskId    The value of the "taskId" request parameter.
      * @param model     The Spring Model object. Used to pass data (like the task status) from the controller to the view.
+     * @param request   The request, used to answer conditional requests (If-None-Match / If-Modified-Since).
+     * @param response  The response, used to set the caching headers.
      * @return The logical name of the view (JSP/HTML file) to render. Typically returns the same view name to display the result on the form page.
+     * Returns null, with status 304 and no rendering at all, if the client's copy of the page is still current.
      */
     @GetMapping("/checkTaskStatus") // Maps GET requests for the "/checkTaskStatus" path to this method.
     public String checkTaskStatus(@RequestParam("studentId") String studentId, // Get 'studentId' from request parameters.
                                   @RequestParam("taskId") String taskId,     // Get 'taskId' from request parameters.
-                                  Model model) { // Model to pass data to the view.
-
-        System.out.println("Received request to check status for Student: " + studentId + ", Task: " + taskId);
+                                  Model model, // Model to pass data to the view.
+                                  WebRequest request,
+                                  HttpServletResponse response) {
 
+        // Read the pair's last-modified stamp before its status, so the status is at least as new as the stamp.
+        long lastModified = taskStatusService.getLastModified(studentId, taskId);
         // Call the TaskStatusService to get the status based on the provided student and task IDs.
-        String status = taskStatusService.getTaskStatus(studentId, taskId);
+        TaskStatus taskStatus = taskStatusService.findTaskStatus(studentId, taskId);
+        String status = taskStatus != null ? taskStatus.getLabel() : TaskStatusService.INVALID_STATUS_MESSAGE;
+
+        // One structured event per lookup, carrying both the query and its result.
+        requestLog.log(RequestLog.Level.INFO, "check_task_status", studentId, taskId, status);
+
+        // Pollers revalidate on every load; an unchanged status is answered with a 304 and the page is not rendered.
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (request.checkNotModified(TaskStatusVersions.etag(taskStatus, lastModified), lastModified)) {
+            return null;
+        }
 
         // Add the retrieved status to the Model. This makes the 'status' variable available to the JSP view under the name "taskStatus".
         model.addAttribute("taskStatus", status);
@@ -71,11 +156,63 @@ public class RoutingServlet {
         model.addAttribute("queriedStudentId", studentId);
         model.addAttribute("queriedTaskId", taskId);
 
-
-        System.out.println("Task Status: " + status);
-
         // Return the name of the view file. This will render the taskStatusView.jsp page again,
         // but now with the 'taskStatus', 'queriedStudentId', and 'queriedTaskId' data available in the model.
         return "taskStatusView";
     }
+
+    /**
+     * Handles HTTP POST requests to the "/updateTaskStatus" URL.
+     * Moves a task to its next status (Submitted, then Under Review, then Completed).
+     * The transition is validated and applied atomically by the TaskStatusService.
+     *
+     * @param studentId The value of the "studentId" request parameter.
+     * @param taskId    The value of the "taskId" request parameter.
+     * @param status    The requested status, either its label (e.g. "Under Review") or its name (e.g. "UNDER_REVIEW").
+     * @return 200 with the new status, 400 if the status is unknown, or 409 if the transition is not allowed.
+     */
+    @PostMapping("/updateTaskStatus") // Maps POST requests for the "/updateTaskStatus" path to this method.
+    public ResponseEntity<String> updateTaskStatus(@RequestParam("studentId") String studentId,
+                                                   @RequestParam("taskId") String taskId,
+                                                   @RequestParam("status") String status) {
+        TaskStatus newStatus = TaskStatus.fromLabel(status);
+        if (newStatus == null) {
+            return ResponseEntity.badRequest().body("Unknown status: " + status);
+        }
+        if (!taskStatusService.transitionTaskStatus(studentId, taskId, newStatus)) {
+            // Report the status the task is actually in, so the caller can see why the transition was refused.
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Cannot change status to " + newStatus.getLabel()
+                            + "; current status: " + taskStatusService.getTaskStatus(studentId, taskId));
+        }
+        return ResponseEntity.ok("Status: " + newStatus.getLabel());
+    }
+
+    /**
+     * Handles HTTP PUT requests to the "/setTaskStatus" URL.
+     * Sets a task's status unconditionally (administrative correction), creating the task if needed.
+     * Only for requests carrying {@code simplews.admin.secret} in {@link #ADMIN_SECRET_HEADER}.
+     *
+     * @param presented The secret sent with the request.
+     * @param studentId The value of the "studentId" request parameter.
+     * @param taskId    The value of the "taskId" request parameter.
+     * @param status    The new status, either its label or its name.
+     * @return 200 with the new status, 403 without the right secret (always while none is configured),
+     * or 400 if the status is unknown.
+     */
+    @PutMapping("/setTaskStatus") // Maps PUT requests for the "/setTaskStatus" path to this method.
+    public ResponseEntity<String> setTaskStatus(@RequestHeader(value = ADMIN_SECRET_HEADER, required = false) String presented,
+                                                @RequestParam("studentId") String studentId,
+                                                @RequestParam("taskId") String taskId,
+                                                @RequestParam("status") String status) {
+        if (!ShardController.isSecret(adminSecret, presented)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Missing or wrong " + ADMIN_SECRET_HEADER);
+        }
+        TaskStatus newStatus = TaskStatus.fromLabel(status);
+        if (newStatus == null) {
+            return ResponseEntity.badRequest().body("Unknown status: " + status);
+        }
+        taskStatusService.setTaskStatus(studentId, taskId, newStatus);
+        return ResponseEntity.ok("Status: " + newStatus.getLabel());
+    }
 }
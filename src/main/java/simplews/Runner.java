@@ -16,6 +16,6 @@ public class Runner extends SpringBootServletInitializer {
 	}
 	
 	public static void main(String[] args) {
-		SpringApplication.run(Runner.class);
+		SpringApplication.run(Runner.class, args);
 	}
 }
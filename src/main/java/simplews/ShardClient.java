@@ -0,0 +1,77 @@
+package simplews;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How a node talks to the other nodes of a sharded cluster (see {@link TaskStatusShards}).
+ * Requests sent through a client carry {@link #FORWARDED_HEADER}, so the receiving node always
+ * answers them itself and a request can never bounce between nodes.
+ */
+public interface ShardClient {
+
+    /**
+     * Header marking a request that another node has already routed.
+     */
+    String FORWARDED_HEADER = "X-Simplews-Shard-Forwarded";
+
+    /**
+     * Header carrying {@code simplews.shard.secret}, which the node-to-node endpoints of
+     * {@link ShardController} require.
+     */
+    String SECRET_HEADER = "X-Simplews-Shard-Secret";
+
+    /**
+     * Looks up pairs on another node.
+     *
+     * @param node The node, e.g. {@code http://host-b:8080}.
+     * @param keys The pairs, all owned by that node.
+     * @return The statuses, in the order of {@code keys}; null where a pair is not found.
+     * @throws IOException If the node cannot be reached or answers with an error.
+     */
+    TaskStatus[] findTaskStatuses(String node, List<TaskKey> keys) throws IOException;
+
+    /**
+     * Finds the students of a task on another node.
+     *
+     * @param node   The node.
+     * @param taskId The ID of the task.
+     * @param status Only pairs with this status, or null for all of them.
+     * @return The node's pairs of the task, with their statuses.
+     * @throws IOException If the node cannot be reached or answers with an error.
+     */
+    List<TaskStatusEntry> findTaskStatusesOfTask(String node, String taskId, TaskStatus status) throws IOException;
+
+    /**
+     * Counts the students of a task per status on another node.
+     *
+     * @param node   The node.
+     * @param taskId The ID of the task.
+     * @return The node's number of students in each status.
+     * @throws IOException If the node cannot be reached or answers with an error.
+     */
+    Map<TaskStatus, Long> countTaskStatuses(String node, String taskId) throws IOException;
+
+    /**
+     * Hands pairs over to another node, which adds those it does not have yet.
+     *
+     * @param node    The node.
+     * @param entries The pairs and their statuses.
+     * @return The number of pairs the node added.
+     * @throws IOException If the node cannot be reached or answers with an error.
+     */
+    int addTaskStatuses(String node, List<TaskStatusEntry> entries) throws IOException;
+
+    /**
+     * Sends a request on to another node and copies its answer into the response.
+     *
+     * @param node     The node.
+     * @param request  The request to send on.
+     * @param response The response to copy the answer into.
+     * @throws IOException If the node cannot be reached or the answer cannot be copied.
+     */
+    void forward(String node, HttpServletRequest request, HttpServletResponse response) throws IOException;
+}
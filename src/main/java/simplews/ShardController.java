@@ -0,0 +1,133 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Administration of sharded mode (see {@link TaskStatusShards}), and the endpoint through which
+ * nodes hand pairs over to each other.
+ * <p>
+ * The endpoints that change the ring or the pairs only exist in sharded mode (404 otherwise), and
+ * only answer requests carrying {@code simplews.shard.secret} in {@link ShardClient#SECRET_HEADER}
+ * (403 otherwise, and always while no secret is configured). {@link HttpShardClient} sends it.
+ */
+@RestController
+@RequestMapping("/api/shard")
+public class ShardController {
+
+    private final TaskStatusShards shards;
+    private final byte[] secret;
+
+    /**
+     * Creates the controller.
+     *
+     * @param shards The shard configuration of this node.
+     * @param secret The secret shared by all nodes; empty refuses every change.
+     */
+    @Autowired
+    public ShardController(TaskStatusShards shards, @Value("${simplews.shard.secret:}") String secret) {
+        this.shards = shards;
+        this.secret = secret.trim().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles HTTP GET requests to "/api/shard".
+     * Describes the ring as this node sees it, e.g. {@code {"self":"http://a:8080","nodes":["http://a:8080","http://b:8080"]}}.
+     *
+     * @return This node and all nodes; no nodes if the service is not sharded.
+     */
+    @GetMapping
+    public Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("self", shards.getSelf());
+        description.put("nodes", shards.getNodes());
+        return description;
+    }
+
+    /**
+     * Handles HTTP POST requests to "/api/shard/rebalance?nodes=a,b,c".
+     * Switches this node to the given nodes and hands over the pairs it no longer owns.
+     * Call it on every node that was already running, after the new nodes have started.
+     *
+     * @param presented The secret sent with the request.
+     * @param nodes     The base URLs of all nodes, comma separated or as repeated parameters.
+     * @return 200 with the number of pairs handed over per node, 404 if the service is not
+     * sharded, 403 without the right secret, 501 if the store cannot give pairs away, or 502 if a
+     * node cannot be reached (run it again once the node is back).
+     */
+    @PostMapping("/rebalance")
+    public ResponseEntity<Object> rebalance(@RequestHeader(value = ShardClient.SECRET_HEADER, required = false) String presented,
+                                            @RequestParam("nodes") List<String> nodes) {
+        ResponseEntity<Object> refusal = refuse(presented);
+        if (refusal != null) {
+            return refusal;
+        }
+        try {
+            return ResponseEntity.ok(shards.rebalance(nodes));
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Handles HTTP POST requests to "/api/shard/pairs", sent by another node during a rebalance.
+     * Adds the pairs this node does not have yet, e.g. {@code [{"studentId":"s1","taskId":"t1","status":"SUBMITTED"}]}.
+     *
+     * @param presented The secret sent with the request.
+     * @param entries   The pairs and their statuses.
+     * @return The number of pairs added, e.g. {@code {"added":1}}; 404 if the service is not sharded,
+     * or 403 without the right secret.
+     */
+    @PostMapping(value = "/pairs", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> addTaskStatuses(@RequestHeader(value = ShardClient.SECRET_HEADER, required = false) String presented,
+                                                  @RequestBody List<TaskStatusEntry> entries) {
+        ResponseEntity<Object> refusal = refuse(presented);
+        if (refusal != null) {
+            return refusal;
+        }
+        return ResponseEntity.ok(Collections.singletonMap("added", shards.addTaskStatuses(entries)));
+    }
+
+    // The response refusing a node-to-node request, or null if it may proceed.
+    private ResponseEntity<Object> refuse(String presented) {
+        if (!shards.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isSecret(secret, presented)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Missing or wrong " + ShardClient.SECRET_HEADER);
+        }
+        return null;
+    }
+
+    /**
+     * Checks a presented secret in constant time.
+     *
+     * @param secret    The configured secret, as UTF-8; empty matches nothing.
+     * @param presented The secret sent with a request, or null.
+     * @return Whether a secret is configured and the presented one equals it.
+     */
+    static boolean isSecret(byte[] secret, String presented) {
+        return secret.length > 0 && presented != null
+                && MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
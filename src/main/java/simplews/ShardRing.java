@@ -0,0 +1,118 @@
+package simplews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Consistent-hash ring that assigns every student to one node of the cluster.
+ * <p>
+ * Each node is placed on the ring at many pseudo-random points (virtual nodes), and a student
+ * belongs to the node of the first point at or after the student's own hash. All tasks of a
+ * student live on the same node, so per-student lookups and batches stay on one node. When a
+ * node joins, it takes over roughly 1/N of the students, all of them from the other nodes, and
+ * no student moves between two nodes that were already there.
+ * <p>
+ * Immutable; the hashes depend only on the node names and IDs, so every node computes the same ring.
+ */
+public final class ShardRing {
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Builds a ring.
+     *
+     * @param nodes        The nodes, e.g. {@code http://host-a:8080}; duplicates and trailing slashes are ignored.
+     * @param virtualNodes The number of points per node (more points spread the load more evenly).
+     */
+    public ShardRing(List<String> nodes, int virtualNodes) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String node : nodes) {
+            String normalized = normalize(node);
+            if (!normalized.isEmpty()) {
+                unique.add(normalized);
+            }
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(unique));
+
+        // Sort the (hash, node) points; equal hashes, should they ever occur, are ordered by node so all nodes agree.
+        int count = this.nodes.size() * virtualNodes;
+        long[][] placed = new long[count][];
+        for (int n = 0, i = 0; n < this.nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++, i++) {
+                placed[i] = new long[]{hash(this.nodes.get(n) + "#" + v), n};
+            }
+        }
+        Arrays.sort(placed, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        points = new long[count];
+        owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = placed[i][0];
+            owners[i] = (int) placed[i][1];
+        }
+    }
+
+    /**
+     * Gets the nodes of the ring, in the order they were given.
+     *
+     * @return The normalized node names.
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Finds the node that owns a student.
+     *
+     * @param studentId The ID of the student.
+     * @return The node.
+     */
+    public String ownerOf(String studentId) {
+        long h = hash(studentId);
+        int i = Arrays.binarySearch(points, h);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return nodes.get(owners[i == points.length ? 0 : i]);
+    }
+
+    /**
+     * Normalizes a node name the same way the ring does, so names can be compared.
+     *
+     * @param node A node name, e.g. {@code http://host-a:8080/}.
+     * @return The name without surrounding spaces and trailing slashes.
+     */
+    public static String normalize(String node) {
+        String trimmed = node.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars (no allocation), then the MurmurHash3 finalizer;
+    // stable across JVMs and releases.
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,176 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * In sharded mode (see {@link TaskStatusShards}), sends every request about a student this node
+ * does not own to the node that does. The student is taken from the {@code studentId} parameter
+ * or from the path of {@code /api/tasks/{studentId}/{taskId}}; requests without one are served here.
+ * <p>
+ * {@code simplews.shard.routing} chooses how: {@code redirect} answers 307 with the owner's URL
+ * (the client sends the same request there, and nothing passes through this node), and
+ * {@code forward} sends the request on and relays the answer (for clients that cannot follow
+ * redirects or cannot reach the other nodes). Subscriptions ({@code /api/tasks/subscribe}) are
+ * always redirected: a relayed event stream would hold a thread here for as long as it is open,
+ * and would be cut by the read timeout between heartbeats. Requests that name students of several nodes
+ * are rejected with 400, as they cannot be answered by one node.
+ * <p>
+ * A request marked with {@link ShardClient#FORWARDED_HEADER} is served here without routing only if
+ * it also carries {@code simplews.shard.secret} in {@link ShardClient#SECRET_HEADER}, as sent by
+ * {@link HttpShardClient}; from anyone else the mark is removed and the request is routed as usual.
+ */
+@Component
+public class ShardRoutingFilter implements Filter {
+
+    private static final String TASKS_PATH = "/api/tasks/";
+    // The only endpoint whose studentId parameter is a list; everywhere else it names one student.
+    private static final String SUBSCRIBE_PATH = "/api/tasks/subscribe";
+
+    private final TaskStatusShards shards;
+    private final ShardClient client;
+    private final boolean forward;
+    private final byte[] secret;
+
+    /**
+     * Creates the filter.
+     *
+     * @param shards  The shard configuration, which finds the owner of a student.
+     * @param client  Forwards requests in {@code forward} mode.
+     * @param routing {@code redirect} or {@code forward}.
+     * @param secret  The secret shared by all nodes, which a forwarded request must carry; empty trusts none.
+     */
+    public ShardRoutingFilter(TaskStatusShards shards, ShardClient client,
+                              @Value("${simplews.shard.routing:redirect}") String routing,
+                              @Value("${simplews.shard.secret:}") String secret) {
+        this.shards = shards;
+        this.client = client;
+        this.secret = secret.trim().getBytes(StandardCharsets.UTF_8);
+        if ("forward".equalsIgnoreCase(routing)) {
+            this.forward = true;
+        } else if ("redirect".equalsIgnoreCase(routing)) {
+            this.forward = false;
+        } else {
+            throw new IllegalArgumentException("simplews.shard.routing must be 'redirect' or 'forward': " + routing);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!shards.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (httpRequest.getHeader(ShardClient.FORWARDED_HEADER) != null) {
+            // Requests sent on by another node are always served here, so a disagreement between rings cannot loop.
+            if (ShardController.isSecret(secret, httpRequest.getHeader(ShardClient.SECRET_HEADER))) {
+                chain.doFilter(request, response);
+                return;
+            }
+            httpRequest = new WithoutForwardedHeader(httpRequest);
+        }
+        List<String> studentIds = studentIdsOf(httpRequest);
+        if (studentIds.isEmpty()) {
+            chain.doFilter(httpRequest, response);
+            return;
+        }
+        String owner = shards.ownerOf(studentIds.get(0));
+        for (String studentId : studentIds) {
+            if (!shards.ownerOf(studentId).equals(owner)) {
+                ((HttpServletResponse) response).sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "The students of this request live on different nodes; send one request per student");
+                return;
+            }
+        }
+        if (owner.equals(shards.getSelf())) {
+            chain.doFilter(httpRequest, response);
+        } else if (forward && !pathOf(httpRequest).equals(SUBSCRIBE_PATH)) {
+            client.forward(owner, httpRequest, (HttpServletResponse) response);
+        } else {
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            String query = httpRequest.getQueryString();
+            httpResponse.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+            httpResponse.setHeader(HttpHeaders.LOCATION, owner + httpRequest.getRequestURI() + (query != null ? "?" + query : ""));
+        }
+    }
+
+    // The students a request is about, as the controllers will bind them: the studentId parameters,
+    // or the first segment after /api/tasks/.
+    private static List<String> studentIdsOf(HttpServletRequest request) {
+        String path = pathOf(request);
+        String[] parameters = request.getParameterValues("studentId");
+        if (parameters != null) {
+            if (!path.equals(SUBSCRIBE_PATH)) {
+                // A single student, which may contain commas; Spring joins repeated values with commas.
+                return Collections.singletonList(String.join(",", parameters));
+            }
+            // A list: repeated values, or a single value that Spring splits on commas.
+            return parameters.length == 1 ? Arrays.asList(parameters[0].split(",")) : Arrays.asList(parameters);
+        }
+        if (path.startsWith(TASKS_PATH)) {
+            String rest = path.substring(TASKS_PATH.length());
+            int slash = rest.indexOf('/');
+            if (slash > 0 && rest.indexOf('/', slash + 1) < 0) {
+                return Collections.singletonList(UriUtils.decode(rest.substring(0, slash), StandardCharsets.UTF_8));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    /**
+     * Hides {@link ShardClient#FORWARDED_HEADER} of a request that did not prove it came from another node,
+     * so neither this filter nor the controllers take it for one.
+     */
+    private static final class WithoutForwardedHeader extends HttpServletRequestWrapper {
+
+        WithoutForwardedHeader(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return ShardClient.FORWARDED_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return ShardClient.FORWARDED_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = new ArrayList<>();
+            for (Enumeration<String> all = super.getHeaderNames(); all.hasMoreElements(); ) {
+                String name = all.nextElement();
+                if (!ShardClient.FORWARDED_HEADER.equalsIgnoreCase(name)) {
+                    names.add(name);
+                }
+            }
+            return Collections.enumeration(names);
+        }
+    }
+}
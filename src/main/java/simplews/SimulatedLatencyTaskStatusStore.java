@@ -0,0 +1,132 @@
+package simplews;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator that adds a fixed delay to every call into another {@link TaskStatusStore},
+ * standing in for a remote database or LMS during load tests and local experiments.
+ * Bulk lookups pay the delay once, like a single round-trip to a real backend.
+ * Optionally the backend also has a limited capacity, like a connection pool: calls beyond it wait
+ * for a free slot first, so that under overload latency grows the way it does with a real database.
+ */
+public class SimulatedLatencyTaskStatusStore implements TaskStatusStore {
+
+    private final TaskStatusStore delegate;
+    private final long latencyNanos;
+    private final Semaphore capacity;
+
+    /**
+     * Creates a store that delays every call by the given time.
+     *
+     * @param delegate      The store that actually answers the calls.
+     * @param latencyMillis The delay per call, in milliseconds.
+     */
+    public SimulatedLatencyTaskStatusStore(TaskStatusStore delegate, long latencyMillis) {
+        this(delegate, latencyMillis, 0);
+    }
+
+    /**
+     * Creates a store that delays every call by the given time and serves a limited number of calls at once.
+     *
+     * @param delegate           The store that actually answers the calls.
+     * @param latencyMillis      The delay per call, in milliseconds.
+     * @param maxConcurrentCalls The number of calls served at once (0 for unlimited); others wait in line.
+     */
+    public SimulatedLatencyTaskStatusStore(TaskStatusStore delegate, long latencyMillis, int maxConcurrentCalls) {
+        this.delegate = delegate;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.capacity = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls, true) : null;
+    }
+
+    @Override
+    public TaskStatus find(String studentId, String taskId) {
+        pause();
+        return delegate.find(studentId, taskId);
+    }
+
+    @Override
+    public void findAll(String studentId, List<String> taskIds, TaskStatus[] out) {
+        pause();
+        delegate.findAll(studentId, taskIds, out);
+    }
+
+    @Override
+    public void findAll(List<TaskKey> keys, TaskStatus[] out) {
+        pause();
+        delegate.findAll(keys, out);
+    }
+
+    @Override
+    public TaskStatus put(String studentId, String taskId, TaskStatus status) {
+        pause();
+        return delegate.put(studentId, taskId, status);
+    }
+
+    @Override
+    public TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update) {
+        pause();
+        return delegate.compareAndExchange(studentId, taskId, expected, update);
+    }
+
+    @Override
+    public TaskStatus compareAndRemove(String studentId, String taskId, TaskStatus expected) {
+        pause();
+        return delegate.compareAndRemove(studentId, taskId, expected);
+    }
+
+    @Override
+    public void replaceAll(TaskStatusIndex pairs) {
+        pause();
+        delegate.replaceAll(pairs);
+    }
+
+    @Override
+    public boolean supportsRemoval() {
+        return delegate.supportsRemoval();
+    }
+
+    @Override
+    public void forEach(TaskStatusVisitor visitor) {
+        pause();
+        delegate.forEach(visitor);
+    }
+
+    @Override
+    public void forEachTaskOf(String studentId, TaskStatusVisitor visitor) {
+        pause();
+        delegate.forEachTaskOf(studentId, visitor);
+    }
+
+    @Override
+    public void forEachStudentOf(String taskId, TaskStatusVisitor visitor) {
+        pause();
+        delegate.forEachStudentOf(taskId, visitor);
+    }
+
+    @Override
+    public void countByStatus(String taskId, long[] out) {
+        pause();
+        delegate.countByStatus(taskId, out);
+    }
+
+    // Blocks the calling thread, as a synchronous database driver would.
+    private void pause() {
+        try {
+            if (capacity == null) {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+                return;
+            }
+            capacity.acquire();
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            } finally {
+                capacity.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the task status store", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package simplews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reports how long the application took to become ready, counted from the start of the JVM, and its
+ * resident memory (RSS) at that point.
+ * <p>
+ * With {@code simplews.startup.exit-after-ready=true} it then times one status page request, reports
+ * that too, and shuts the application down. The fast-start Maven profile uses this to measure
+ * startup in each configuration, and for the training run that records the class-data sharing
+ * archive (the classes loaded up to and including the first request).
+ */
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+    private final String reportFile;
+    private final boolean exitAfterReady;
+
+    /**
+     * Creates the report.
+     *
+     * @param reportFile     A file to append the report line to, or empty for the log only.
+     * @param exitAfterReady Whether to time one request and shut down once ready.
+     */
+    public StartupReport(@Value("${simplews.startup.report-file:}") String reportFile,
+                         @Value("${simplews.startup.exit-after-ready:false}") boolean exitAfterReady) {
+        this.reportFile = reportFile.trim();
+        this.exitAfterReady = exitAfterReady;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        long readyMillis = System.currentTimeMillis();
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        String configuration = describe(context, runtime);
+        long startupMillis = readyMillis - runtime.getStartTime();
+        long rssKb = residentKilobytes();
+
+        StringBuilder line = new StringBuilder(configuration).append(": ready in ").append(startupMillis).append(" ms");
+        if (exitAfterReady) {
+            line.append(", first response in ").append(timeFirstRequest(context)).append(" ms");
+        }
+        line.append(", RSS ").append(rssKb >= 0 ? (rssKb / 1024) + " MB" : "n/a");
+        log.info("Startup: {}", line);
+        if (!reportFile.isEmpty()) {
+            try (PrintWriter out = new PrintWriter(new FileWriter(reportFile, true))) {
+                out.println(line);
+            } catch (IOException e) {
+                log.warn("Could not write the startup report to {}", reportFile, e);
+            }
+        }
+        if (exitAfterReady) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    // E.g. "profiles [fast-start], CDS archive, -XX:TieredStopAtLevel=1".
+    private static String describe(ConfigurableApplicationContext context, RuntimeMXBean runtime) {
+        String[] profiles = context.getEnvironment().getActiveProfiles();
+        StringBuilder description = new StringBuilder(profiles.length > 0 ? "profiles " + Arrays.toString(profiles) : "default configuration");
+        for (String arg : runtime.getInputArguments()) {
+            if (arg.startsWith("-XX:SharedArchiveFile")) {
+                description.append(", CDS archive");
+            } else if (arg.startsWith("-XX:")) {
+                description.append(", ").append(arg);
+            }
+        }
+        return description.toString();
+    }
+
+    // Milliseconds for a GET of a status page, or -1 if it fails; it pays for whatever lazy initialization left to do.
+    private static long timeFirstRequest(ConfigurableApplicationContext context) {
+        if (!(context instanceof WebServerApplicationContext)) {
+            return -1;
+        }
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        long start = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + port + "/checkTaskStatus?studentId=student123&taskId=task001").openConnection();
+            if (connection.getResponseCode() != 200) {
+                return -1;
+            }
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) > 0) {
+                    // Read the whole page.
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    // From /proc/self/status on Linux; -1 elsewhere.
+    private static long residentKilobytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,53 @@
+package simplews;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable (studentId, taskId) pair, used where a pair has to be kept as a map key or sent
+ * over the wire. Unlike a concatenated "studentId-taskId" string it cannot collide.
+ */
+public final class TaskKey {
+
+    private final String studentId;
+    private final String taskId;
+
+    @JsonCreator // Lets Jackson build a key from {"studentId": ..., "taskId": ...} request bodies.
+    public TaskKey(@JsonProperty("studentId") String studentId, @JsonProperty("taskId") String taskId) {
+        if (studentId == null || taskId == null) {
+            throw new IllegalArgumentException("studentId and taskId are required");
+        }
+        this.studentId = studentId;
+        this.taskId = taskId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaskKey)) {
+            return false;
+        }
+        TaskKey other = (TaskKey) o;
+        return studentId.equals(other.studentId) && taskId.equals(other.taskId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * studentId.hashCode() + taskId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + studentId + ", " + taskId + ")";
+    }
+}
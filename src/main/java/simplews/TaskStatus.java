@@ -0,0 +1,78 @@
+package simplews;
+
+/**
+ * The fixed vocabulary of task statuses a (student, task) pair can be in.
+ * Each constant carries the exact label that is shown to users, so the rest of the
+ * application can store and compare the small ordinal instead of the full string.
+ */
+public enum TaskStatus {
+
+    SUBMITTED("Submitted"),
+    UNDER_REVIEW("Under Review"),
+    COMPLETED("Completed - Feedback Available");
+
+    // Cached copy of values() so ordinal lookups on the hot path do not clone the array.
+    private static final TaskStatus[] VALUES = values();
+
+    private final String label;
+
+    TaskStatus(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the human readable label of this status, e.g. "Under Review".
+     *
+     * @return The label displayed to users.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Checks whether a pair may move from one status to another.
+     * New pairs start as Submitted, and each status can only advance to the next one:
+     * Submitted, then Under Review, then Completed.
+     *
+     * @param from The current status, or null if the pair does not exist yet.
+     * @param to   The requested status.
+     * @return True if the transition is allowed.
+     */
+    public static boolean isValidTransition(TaskStatus from, TaskStatus to) {
+        if (to == null) {
+            return false;
+        }
+        if (from == null) {
+            return to == SUBMITTED;
+        }
+        return to.ordinal() == from.ordinal() + 1;
+    }
+
+    /**
+     * Resolves a status from its ordinal without allocating.
+     *
+     * @param ordinal The ordinal of the status.
+     * @return The matching status.
+     */
+    static TaskStatus fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Resolves a status from its display label (e.g. "Submitted") or its constant name (e.g. "SUBMITTED").
+     *
+     * @param value The label or name to resolve.
+     * @return The matching status, or null if the value is not part of the vocabulary.
+     */
+    public static TaskStatus fromLabel(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (TaskStatus status : VALUES) {
+            if (status.label.equals(value) || status.name().equals(value)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
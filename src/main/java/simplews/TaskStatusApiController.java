@@ -0,0 +1,327 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON API for scripts and dashboards that poll task statuses.
+ * Responses are written straight to the servlet output stream from a reusable buffer,
+ * skipping view resolution and JSP rendering entirely.
+ */
+@RestController
+@RequestMapping("/api/tasks")
+public class TaskStatusApiController {
+
+    // Batch responses are flushed to the client in chunks of roughly this size.
+    private static final int STREAM_CHUNK_SIZE = 8 * 1024;
+
+    private final TaskStatusService taskStatusService;
+    private final TaskStatusShards shards;
+    private final int maxBatchSize;
+
+    public TaskStatusApiController(TaskStatusService taskStatusService) {
+        this(taskStatusService, null, 10000);
+    }
+
+    @Autowired
+    public TaskStatusApiController(TaskStatusService taskStatusService, TaskStatusShards shards,
+                                   @Value("${simplews.api.batch.max-size:10000}") int maxBatchSize) {
+        this.taskStatusService = taskStatusService;
+        this.shards = shards;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Handles HTTP GET requests to "/api/tasks/{studentId}/{taskId}".
+     * Writes a document such as
+     * {@code {"studentId":"student123","taskId":"task001","status":"SUBMITTED","label":"Submitted"}}.
+     * Unknown pairs get status 404 and a document with {@code "status":null}.
+     * Responses carry an {@code ETag} and {@code Last-Modified}; a poller that sends them back
+     * gets an empty 304 while the status is unchanged.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param request   The servlet request, checked for If-None-Match / If-Modified-Since.
+     * @param response  The servlet response to write the document to.
+     * @throws IOException If the response cannot be written.
+     */
+    @GetMapping("/{studentId}/{taskId}")
+    public void getTaskStatus(@PathVariable("studentId") String studentId,
+                              @PathVariable("taskId") String taskId,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        long lastModified = taskStatusService.getLastModified(studentId, taskId);
+        TaskStatus status = taskStatusService.findTaskStatus(studentId, taskId);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(TaskStatusVersions.etag(status, lastModified), lastModified)) {
+            return;
+        }
+
+        TaskStatusJson.Buffer json = TaskStatusJson.buffer();
+        TaskStatusJson.writeStatus(json, studentId, taskId, status);
+
+        response.setStatus(status != null ? HttpServletResponse.SC_OK : HttpServletResponse.SC_NOT_FOUND);
+        writeJson(response, json);
+    }
+
+    /**
+     * Handles HTTP POST requests to "/api/tasks/batch".
+     * Looks up a list of pairs, e.g. {@code [{"studentId":"student123","taskId":"task001"}, ...]},
+     * and streams back a JSON array with one status document per pair, in request order.
+     * In sharded mode the pairs of other nodes' students are looked up on those nodes; a node
+     * that cannot be reached fails the whole batch with 502.
+     *
+     * @param keys     The pairs to look up, bound from the JSON request body.
+     * @param request  The servlet request, checked for having been sent on by another node.
+     * @param response The servlet response to stream the array to.
+     * @throws IOException If the response cannot be written.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void getTaskStatuses(@RequestBody List<TaskKey> keys, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        if (rejectOversizedBatch(keys.size(), response)) {
+            return;
+        }
+        TaskStatus[] statuses;
+        if (isGatheredFromShards(request)) {
+            try {
+                statuses = shards.findTaskStatuses(keys);
+            } catch (IOException e) {
+                response.sendError(HttpServletResponse.SC_BAD_GATEWAY, e.getMessage());
+                return;
+            }
+        } else {
+            statuses = taskStatusService.findTaskStatuses(keys);
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ServletOutputStream out = response.getOutputStream();
+        TaskStatusJson.Buffer json = TaskStatusJson.buffer();
+        TaskStatusJson.writeArrayStart(json);
+        for (int i = 0; i < statuses.length; i++) {
+            if (i > 0) {
+                TaskStatusJson.writeArraySeparator(json);
+            }
+            TaskKey key = keys.get(i);
+            TaskStatusJson.writeStatus(json, key.getStudentId(), key.getTaskId(), statuses[i]);
+            flushIfFull(json, out);
+        }
+        TaskStatusJson.writeArrayEnd(json);
+        out.write(json.array(), 0, json.length());
+    }
+
+    /**
+     * Handles HTTP GET requests to "/api/tasks/batch?studentId=...&amp;taskIds=a,b,c".
+     * Looks up many tasks of one student and streams back a JSON array, in the order of {@code taskIds}.
+     *
+     * @param studentId The ID of the student.
+     * @param taskIds   The IDs of the tasks, comma separated or as repeated parameters.
+     * @param response  The servlet response to stream the array to.
+     * @throws IOException If the response cannot be written.
+     */
+    @GetMapping("/batch")
+    public void getTaskStatuses(@RequestParam("studentId") String studentId,
+                                @RequestParam("taskIds") List<String> taskIds,
+                                HttpServletResponse response) throws IOException {
+        if (rejectOversizedBatch(taskIds.size(), response)) {
+            return;
+        }
+        TaskStatus[] statuses = taskStatusService.findTaskStatuses(studentId, taskIds);
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ServletOutputStream out = response.getOutputStream();
+        TaskStatusJson.Buffer json = TaskStatusJson.buffer();
+        TaskStatusJson.writeArrayStart(json);
+        for (int i = 0; i < statuses.length; i++) {
+            if (i > 0) {
+                TaskStatusJson.writeArraySeparator(json);
+            }
+            TaskStatusJson.writeStatus(json, studentId, taskIds.get(i), statuses[i]);
+            flushIfFull(json, out);
+        }
+        TaskStatusJson.writeArrayEnd(json);
+        out.write(json.array(), 0, json.length());
+    }
+
+    /**
+     * Handles HTTP GET requests to "/api/tasks?studentId=..." and "/api/tasks?taskId=...".
+     * Streams back a JSON array with the status document of every task of the student, or of every
+     * student of the task, optionally only those with a given status
+     * (e.g. {@code /api/tasks?taskId=task001&status=UNDER_REVIEW}). Both are answered from the
+     * store's secondary indexes, in time proportional to the answer rather than to the store.
+     * In sharded mode a student's tasks are served by the student's node (see {@link ShardRoutingFilter}),
+     * and the students of a task are gathered from every node; a node that cannot be reached fails
+     * the request with 502.
+     *
+     * @param studentId The ID of the student; give either this or {@code taskId}.
+     * @param taskId    The ID of the task.
+     * @param status    Only pairs with this status (a constant name such as {@code UNDER_REVIEW}), or all if absent.
+     * @param request   The servlet request, checked for having been sent on by another node.
+     * @param response  The servlet response to stream the array to.
+     * @throws IOException If the response cannot be written.
+     */
+    @GetMapping
+    public void findTaskStatuses(@RequestParam(value = "studentId", required = false) String studentId,
+                                 @RequestParam(value = "taskId", required = false) String taskId,
+                                 @RequestParam(value = "status", required = false) TaskStatus status,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        if ((studentId == null) == (taskId == null)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Give either studentId or taskId");
+            return;
+        }
+        StatusArrayWriter array = new StatusArrayWriter(response, status);
+        try {
+            if (studentId != null) {
+                for (Map.Entry<String, TaskStatus> task : taskStatusService.findTaskStatusesOfStudent(studentId).entrySet()) {
+                    array.visit(studentId, task.getKey(), task.getValue());
+                }
+            } else if (isGatheredFromShards(request)) {
+                shards.forEachTaskStatusOfTask(taskId, status, array);
+            } else if (shards != null) {
+                shards.forEachOwnedTaskStatusOfTask(taskId, status, array);
+            } else {
+                taskStatusService.forEachTaskStatusOfTask(taskId, array);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            // Another node failed; the other nodes are asked before anything is written, so the response is untouched.
+            response.sendError(HttpServletResponse.SC_BAD_GATEWAY, e.getMessage());
+            return;
+        }
+        array.finish();
+    }
+
+    /**
+     * Handles HTTP GET requests to "/api/tasks/counts?taskId=...".
+     * Counts the students of a task per status, e.g.
+     * {@code {"taskId":"task001","counts":{"SUBMITTED":1,"UNDER_REVIEW":0,"COMPLETED":0},"total":1}}.
+     * In sharded mode the counts of every node are added up, each node counting only the students it owns.
+     *
+     * @param taskId  The ID of the task.
+     * @param request The servlet request, checked for having been sent on by another node.
+     * @return 200 with the counts (all 0 for an unknown task), or 502 if another node cannot be reached.
+     */
+    @GetMapping("/counts")
+    public ResponseEntity<Object> countTaskStatuses(@RequestParam("taskId") String taskId, HttpServletRequest request) {
+        Map<TaskStatus, Long> counts;
+        try {
+            if (isGatheredFromShards(request)) {
+                counts = shards.countTaskStatuses(taskId);
+            } else {
+                counts = shards != null ? shards.countOwnedTaskStatuses(taskId) : taskStatusService.countTaskStatuses(taskId);
+            }
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(e.getMessage());
+        }
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("taskId", taskId);
+        body.put("counts", counts);
+        body.put("total", total);
+        return ResponseEntity.ok(body);
+    }
+
+    // Requests sent on by another node are answered from this node's shard only, and only for the students it owns.
+    private boolean isGatheredFromShards(HttpServletRequest request) {
+        return shards != null && shards.isEnabled() && request.getHeader(ShardClient.FORWARDED_HEADER) == null;
+    }
+
+    private boolean rejectOversizedBatch(int size, HttpServletResponse response) throws IOException {
+        if (size <= maxBatchSize) {
+            return false;
+        }
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                "Batch of " + size + " pairs exceeds the limit of " + maxBatchSize);
+        return true;
+    }
+
+    // Streams the buffered part of a batch response once it reaches the chunk size, and starts over.
+    private static void flushIfFull(TaskStatusJson.Buffer json, ServletOutputStream out) throws IOException {
+        if (json.length() >= STREAM_CHUNK_SIZE) {
+            out.write(json.array(), 0, json.length());
+            json.reset();
+        }
+    }
+
+    private static void writeJson(HttpServletResponse response, TaskStatusJson.Buffer json) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(json.length());
+        ServletOutputStream out = response.getOutputStream();
+        out.write(json.array(), 0, json.length());
+    }
+
+    /**
+     * Streams the pairs it visits into a JSON array of status documents, skipping pairs without the
+     * wanted status. The response is only touched once the first pair arrives (or on {@link #finish()}).
+     */
+    private static final class StatusArrayWriter implements TaskStatusVisitor {
+
+        private final HttpServletResponse response;
+        private final TaskStatus wanted;
+        private final TaskStatusJson.Buffer json = TaskStatusJson.buffer();
+        private ServletOutputStream out;
+        private boolean empty = true;
+
+        StatusArrayWriter(HttpServletResponse response, TaskStatus wanted) {
+            this.response = response;
+            this.wanted = wanted;
+            TaskStatusJson.writeArrayStart(json);
+        }
+
+        @Override
+        public void visit(String studentId, String taskId, TaskStatus status) {
+            if (wanted != null && status != wanted) {
+                return;
+            }
+            if (!empty) {
+                TaskStatusJson.writeArraySeparator(json);
+            }
+            empty = false;
+            TaskStatusJson.writeStatus(json, studentId, taskId, status);
+            try {
+                flushIfFull(json, output());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            TaskStatusJson.writeArrayEnd(json);
+            output().write(json.array(), 0, json.length());
+        }
+
+        private ServletOutputStream output() throws IOException {
+            if (out == null) {
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                out = response.getOutputStream();
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package simplews;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the status changes made since the last snapshot (see {@link TaskStatusSnapshot}).
+ * Each change is one record:
+ * <pre>
+ *   payload length (int), payload, CRC-32 of the payload (int)
+ *   payload: student ID length (short), student ID (UTF-8), task ID length (short), task ID (UTF-8), status ordinal (byte)
+ * </pre>
+ * A record cut short by a crash, or damaged, ends the log: replay stops there and truncates the file.
+ * Not thread-safe; the owning store serializes appends.
+ */
+final class TaskStatusChangeLog implements Closeable {
+
+    private final FileChannel channel;
+    private final boolean syncWrites;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+    private long records;
+
+    private TaskStatusChangeLog(FileChannel channel, boolean syncWrites) {
+        this.channel = channel;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Opens a log file for appending, creating it if needed.
+     *
+     * @param file       The log file.
+     * @param syncWrites Whether every append waits until the record is on disk (survives power loss),
+     *                   rather than only in the OS page cache (survives a process crash).
+     * @return The log.
+     * @throws IOException If the file cannot be opened.
+     */
+    static TaskStatusChangeLog open(Path file, boolean syncWrites) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new TaskStatusChangeLog(channel, syncWrites);
+    }
+
+    /**
+     * Appends one change.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The new status.
+     * @throws IOException If the record cannot be written.
+     */
+    void append(String studentId, String taskId, TaskStatus status) throws IOException {
+        byte[] student = studentId.getBytes(StandardCharsets.UTF_8);
+        byte[] task = taskId.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 2 + student.length + 2 + task.length + 1;
+        if (buffer.capacity() < payloadLength + 8) {
+            buffer = ByteBuffer.allocate(payloadLength + 8);
+        }
+        buffer.clear();
+        buffer.putInt(payloadLength)
+                .putShort((short) student.length).put(student)
+                .putShort((short) task.length).put(task)
+                .put((byte) status.ordinal());
+        crc.reset();
+        crc.update(buffer.array(), 4, payloadLength);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (syncWrites) {
+            channel.force(false);
+        }
+        records++;
+    }
+
+    /**
+     * Gets the number of changes appended since the log was opened.
+     *
+     * @return The number of records.
+     */
+    long getRecordCount() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads every intact change in a log file, in the order they were made, and cuts off a damaged tail.
+     *
+     * @param file    The log file.
+     * @param visitor Receives each change.
+     * @return The number of changes read.
+     * @throws IOException If the file cannot be read.
+     */
+    static long replay(Path file, TaskStatusVisitor visitor) throws IOException {
+        long records = 0;
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024))) {
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = data.readInt();
+                    if (length < 5 || length > 4 + 2 * TaskStatusSnapshot.MAX_ID_BYTES + 1) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    data.readFully(payload);
+                    checksum = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                String studentId = readId(record);
+                String taskId = readId(record);
+                visitor.visit(studentId, taskId, TaskStatus.fromOrdinal(record.get()));
+                records++;
+                validLength += 8 + payload.length;
+            }
+        }
+        if (validLength < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return records;
+    }
+
+    private static String readId(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package simplews;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A (studentId, taskId) pair with its status, as sent between shards. Reads the documents written by
+ * {@link TaskStatusJson} (the extra {@code label} field is ignored).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class TaskStatusEntry {
+
+    private final String studentId;
+    private final String taskId;
+    private final TaskStatus status;
+
+    @JsonCreator // Lets Jackson build an entry from {"studentId": ..., "taskId": ..., "status": "SUBMITTED"}.
+    public TaskStatusEntry(@JsonProperty("studentId") String studentId,
+                           @JsonProperty("taskId") String taskId,
+                           @JsonProperty("status") TaskStatus status) {
+        if (studentId == null || taskId == null) {
+            throw new IllegalArgumentException("studentId and taskId are required");
+        }
+        this.studentId = studentId;
+        this.taskId = taskId;
+        this.status = status;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Gets the status.
+     *
+     * @return The status, or null if the pair is not known.
+     */
+    public TaskStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,121 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Upload endpoint for bulk imports (see {@link TaskStatusImporter}).
+ * <p>
+ * An upload replaces every pair and the endpoint has no authentication of its own, so it only
+ * exists when {@code simplews.import.upload.enabled} is set, which should only be done where
+ * the endpoint is reachable by operators alone. Bodies larger than
+ * {@code simplews.import.upload.max-bytes} are refused before they can fill the disk.
+ */
+@RestController
+@ConditionalOnProperty(name = "simplews.import.upload.enabled", havingValue = "true")
+public class TaskStatusImportController {
+
+    private final TaskStatusImporter importer;
+    private final long maxBytes;
+
+    /**
+     * Creates the endpoint.
+     *
+     * @param importer The importer that applies uploaded files.
+     * @param maxBytes The largest accepted upload, in bytes.
+     */
+    @Autowired
+    public TaskStatusImportController(TaskStatusImporter importer,
+                                      @Value("${simplews.import.upload.max-bytes:268435456}") long maxBytes) {
+        this.importer = importer;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Handles HTTP POST requests to "/api/import", e.g.
+     * {@code curl --data-binary @statuses.csv -H 'Content-Type: text/csv' localhost:8080/api/import}.
+     * The body is spooled to a temporary file, which is then imported like any other file and deleted.
+     *
+     * @param format  {@code csv} or {@code ndjson}; if absent, taken from the Content-Type, or else from the first byte.
+     * @param request The request whose body is the file.
+     * @return 200 with the report if the pairs were replaced, 422 with the report if the file was refused,
+     * 400 if the format or CSV header is not understood, 413 if the body is larger than
+     * {@code simplews.import.upload.max-bytes}, or 501 if the store cannot be replaced.
+     * @throws IOException If the body cannot be read or spooled.
+     */
+    @PostMapping("/api/import")
+    public ResponseEntity<Object> importTaskStatuses(@RequestParam(value = "format", required = false) String format,
+                                                     HttpServletRequest request) throws IOException {
+        TaskStatusImporter.Format resolved = format != null ? TaskStatusImporter.Format.fromName(format) : formatOf(request);
+        if (format != null && resolved == null) {
+            return ResponseEntity.badRequest().body("Unknown format: " + format);
+        }
+        if (request.getContentLengthLong() > maxBytes) {
+            return tooLarge();
+        }
+        Path upload = Files.createTempFile("simplews-import-", ".tmp");
+        try {
+            try (InputStream body = request.getInputStream()) {
+                if (!copyAtMost(body, upload, maxBytes)) {
+                    return tooLarge(); // No or a false Content-Length, e.g. a chunked upload.
+                }
+            }
+            TaskStatusImporter.Report report = importer.importFile(upload, resolved);
+            return ResponseEntity.status(report.isApplied() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY).body(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    private ResponseEntity<Object> tooLarge() {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Uploads are limited to " + maxBytes + " bytes");
+    }
+
+    // Copies the body to the file, or stops and returns false as soon as it exceeds maxBytes.
+    private static boolean copyAtMost(InputStream body, Path file, long maxBytes) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            long copied = 0;
+            int n;
+            while ((n = body.read(buffer)) > 0) {
+                copied += n;
+                if (copied > maxBytes) {
+                    return false;
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        return true;
+    }
+
+    private static TaskStatusImporter.Format formatOf(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        if (contentType.startsWith("text/csv")) {
+            return TaskStatusImporter.Format.CSV;
+        }
+        if (contentType.startsWith("application/x-ndjson") || contentType.startsWith("application/jsonl")) {
+            return TaskStatusImporter.Format.NDJSON;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,565 @@
+package simplews;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Parses a CSV or NDJSON export of task statuses straight from the memory-mapped file into a
+ * {@link TaskStatusIndex}, splitting the file into line-aligned chunks that are parsed in parallel
+ * as fork/join tasks.
+ * <p>
+ * Rows are read in place: IDs are matched against the index's ID tables byte by byte, and only an
+ * ID seen for the first time is copied into a String, so the parser allocates next to nothing per
+ * row. Rows that the fast path cannot handle (quoted CSV fields, JSON escapes or nested values,
+ * non-ASCII IDs) are decoded and parsed the slow way.
+ * <p>
+ * CSV files have the columns {@code studentId,taskId,status}, optionally preceded by a header
+ * line naming them in any order (other columns are then ignored). NDJSON files have one object
+ * per line, e.g. {@code {"studentId":"s1","taskId":"t1","status":"SUBMITTED"}}. Statuses are given
+ * by name or label. A pair listed more than once keeps its most advanced status.
+ */
+final class TaskStatusImportParser {
+
+    // The number of problems described in the report; the rest are only counted.
+    static final int MAX_REPORTED_PROBLEMS = 10;
+
+    private static final byte[][] STATUS_NAMES = new byte[TaskStatus.values().length * 2][];
+    private static final byte[] STUDENT_ID_KEY = ascii("studentId");
+    private static final byte[] TASK_ID_KEY = ascii("taskId");
+    private static final byte[] STATUS_KEY = ascii("status");
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    static {
+        for (TaskStatus status : TaskStatus.values()) {
+            STATUS_NAMES[status.ordinal() * 2] = ascii(status.name());
+            STATUS_NAMES[status.ordinal() * 2 + 1] = ascii(status.getLabel());
+        }
+    }
+
+    private final FileChannel channel;
+    private final TaskStatusImporter.Format format;
+    private final TaskStatusIndex index;
+    private final Predicate<String> ownsStudent;
+    private final long chunkSize;
+    private final Queue<String> problems = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger problemCount = new AtomicInteger();
+
+    // CSV column positions, from the header if there is one.
+    private int studentColumn = 0;
+    private int taskColumn = 1;
+    private int statusColumn = 2;
+    private long dataStart;
+
+    /**
+     * Creates a parser for one file.
+     *
+     * @param channel     The open file.
+     * @param format      The format of the file.
+     * @param index       Receives the pairs.
+     * @param ownsStudent Accepts the students to import, or null to import every student.
+     * @param chunkSize   The number of bytes parsed by one task; the file is split until chunks are this small.
+     */
+    TaskStatusImportParser(FileChannel channel, TaskStatusImporter.Format format, TaskStatusIndex index,
+                           Predicate<String> ownsStudent, long chunkSize) {
+        this.channel = channel;
+        this.format = format;
+        this.index = index;
+        this.ownsStudent = ownsStudent;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the CSV header, if there is one. Call before {@link #task()}.
+     *
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the header does not name the required columns.
+     */
+    void readHeader() throws IOException {
+        byte[] first = readLine(0);
+        // Spreadsheet exports often start with a UTF-8 byte order mark.
+        int bom = first.length >= 3 && first[0] == (byte) 0xEF && first[1] == (byte) 0xBB && first[2] == (byte) 0xBF ? 3 : 0;
+        dataStart = bom;
+        if (format != TaskStatusImporter.Format.CSV) {
+            return;
+        }
+        String line = new String(first, bom, first.length - bom, StandardCharsets.UTF_8);
+        List<String> names = splitCsv(line.trim());
+        List<String> normalized = new ArrayList<>(names.size());
+        for (String name : names) {
+            normalized.add(name.trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", ""));
+        }
+        if (!normalized.contains("studentid")) {
+            return; // No header: the data starts on the first line.
+        }
+        studentColumn = normalized.indexOf("studentid");
+        taskColumn = normalized.indexOf("taskid");
+        statusColumn = normalized.indexOf("status");
+        if (taskColumn < 0 || statusColumn < 0) {
+            throw new IllegalArgumentException("The CSV header must name the studentId, taskId and status columns: " + line);
+        }
+        dataStart = Math.min(first.length + 1, channel.size());
+    }
+
+    /**
+     * Creates the task that parses the whole file; run it in a {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @return The root task, whose result counts the rows.
+     * @throws IOException If the file size cannot be read.
+     */
+    RecursiveTask<Counts> task() throws IOException {
+        return new Range(dataStart, channel.size());
+    }
+
+    /**
+     * Gets descriptions of the first invalid rows, e.g. {@code "byte 1234: unknown status 'Done'"}.
+     *
+     * @return At most {@link #MAX_REPORTED_PROBLEMS} descriptions, in no particular order.
+     */
+    List<String> getProblems() {
+        return new ArrayList<>(problems);
+    }
+
+    /**
+     * Row counts of a part of the file.
+     */
+    static final class Counts {
+        long rows;        // Valid rows, including duplicates and rows of other nodes' students.
+        long duplicates;  // Rows for a pair that an earlier row (in any chunk) already had.
+        long invalid;
+        long foreign;     // Rows for students owned by another node, skipped.
+
+        Counts add(Counts other) {
+            rows += other.rows;
+            duplicates += other.duplicates;
+            invalid += other.invalid;
+            foreign += other.foreign;
+            return this;
+        }
+    }
+
+    /**
+     * A line-aligned range of the file: parsed directly if small, otherwise split in two at a line break.
+     */
+    private final class Range extends RecursiveTask<Counts> {
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+        private final long end;
+
+        Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Counts compute() {
+            try {
+                if (end - start > chunkSize) {
+                    long middle = nextLineStart(start + (end - start) / 2);
+                    if (middle < end) {
+                        Range second = new Range(middle, end);
+                        second.fork();
+                        Counts counts = new Range(start, middle).compute();
+                        return counts.add(second.join());
+                    }
+                }
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("A line of the import file is longer than 2 GB at byte " + start);
+                }
+                return parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Counts parse(ByteBuffer chunk, long chunkOffset) {
+        Counts counts = new Counts();
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart) {
+                if (format == TaskStatusImporter.Format.CSV) {
+                    parseCsvLine(chunk, lineStart, contentEnd, chunkOffset, counts);
+                } else {
+                    parseJsonLine(chunk, lineStart, contentEnd, chunkOffset, counts);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return counts;
+    }
+
+    // Field positions of the current row; -1 while not found. Per call, so chunks can run in parallel.
+    private static final class Fields {
+        int studentStart = -1;
+        int studentLength;
+        boolean studentAscii = true;
+        int taskStart = -1;
+        int taskLength;
+        boolean taskAscii = true;
+        int statusStart = -1;
+        int statusLength;
+    }
+
+    private void parseCsvLine(ByteBuffer chunk, int start, int end, long chunkOffset, Counts counts) {
+        Fields fields = new Fields();
+        int column = 0;
+        int fieldStart = start;
+        boolean ascii = true;
+        for (int i = start; i <= end; i++) {
+            byte b = i < end ? chunk.get(i) : (byte) ',';
+            if (b == '"' && i == fieldStart) {
+                parseSlowCsvLine(chunk, start, end, chunkOffset, counts);
+                return;
+            }
+            if (b < 0) {
+                ascii = false;
+            } else if (b == ',') {
+                int length = i - fieldStart;
+                if (column == studentColumn) {
+                    fields.studentStart = fieldStart;
+                    fields.studentLength = length;
+                    fields.studentAscii = ascii;
+                } else if (column == taskColumn) {
+                    fields.taskStart = fieldStart;
+                    fields.taskLength = length;
+                    fields.taskAscii = ascii;
+                } else if (column == statusColumn) {
+                    fields.statusStart = fieldStart;
+                    fields.statusLength = length;
+                }
+                column++;
+                fieldStart = i + 1;
+                ascii = true;
+            }
+        }
+        if (fields.studentStart < 0 || fields.taskStart < 0 || fields.statusStart < 0) {
+            invalid(counts, chunkOffset + start, "expected studentId, taskId and status columns");
+            return;
+        }
+        accept(chunk, fields, chunkOffset + start, counts);
+    }
+
+    private void parseJsonLine(ByteBuffer chunk, int start, int end, long chunkOffset, Counts counts) {
+        Fields fields = new Fields();
+        int i = skipSpaces(chunk, start, end);
+        if (i == end || chunk.get(i) != '{') {
+            invalid(counts, chunkOffset + start, "expected a JSON object");
+            return;
+        }
+        i = skipSpaces(chunk, i + 1, end);
+        boolean closed = i < end && chunk.get(i) == '}';
+        while (!closed) {
+            // "key"
+            if (i == end || chunk.get(i) != '"') {
+                parseSlowJsonLine(chunk, start, end, chunkOffset, counts);
+                return;
+            }
+            int keyStart = i + 1;
+            int keyEnd = keyStart;
+            while (keyEnd < end && chunk.get(keyEnd) != '"' && chunk.get(keyEnd) != '\\') {
+                keyEnd++;
+            }
+            if (keyEnd == end || chunk.get(keyEnd) == '\\') {
+                parseSlowJsonLine(chunk, start, end, chunkOffset, counts);
+                return;
+            }
+            i = skipSpaces(chunk, keyEnd + 1, end);
+            if (i == end || chunk.get(i) != ':') {
+                parseSlowJsonLine(chunk, start, end, chunkOffset, counts);
+                return;
+            }
+            i = skipSpaces(chunk, i + 1, end);
+            // Value: a plain string, or a scalar that is skipped; anything else takes the slow path.
+            int valueStart = i + 1;
+            int valueEnd;
+            boolean ascii = true;
+            boolean string = i < end && chunk.get(i) == '"';
+            if (string) {
+                valueEnd = valueStart;
+                while (valueEnd < end && chunk.get(valueEnd) != '"') {
+                    byte b = chunk.get(valueEnd);
+                    if (b == '\\') {
+                        parseSlowJsonLine(chunk, start, end, chunkOffset, counts);
+                        return;
+                    }
+                    ascii &= b >= 0;
+                    valueEnd++;
+                }
+                if (valueEnd == end) {
+                    break; // Unterminated string: reported as invalid below.
+                }
+                i = valueEnd + 1;
+            } else {
+                valueEnd = i;
+                while (valueEnd < end && chunk.get(valueEnd) != ',' && chunk.get(valueEnd) != '}') {
+                    byte b = chunk.get(valueEnd);
+                    if (b == '{' || b == '[' || b == '"') {
+                        parseSlowJsonLine(chunk, start, end, chunkOffset, counts);
+                        return;
+                    }
+                    valueEnd++;
+                }
+                i = valueEnd;
+            }
+            int keyLength = keyEnd - keyStart;
+            if (matches(chunk, keyStart, keyLength, STUDENT_ID_KEY)) {
+                fields.studentStart = string ? valueStart : -2;
+                fields.studentLength = valueEnd - valueStart;
+                fields.studentAscii = ascii;
+            } else if (matches(chunk, keyStart, keyLength, TASK_ID_KEY)) {
+                fields.taskStart = string ? valueStart : -2;
+                fields.taskLength = valueEnd - valueStart;
+                fields.taskAscii = ascii;
+            } else if (matches(chunk, keyStart, keyLength, STATUS_KEY)) {
+                fields.statusStart = string ? valueStart : -2;
+                fields.statusLength = valueEnd - valueStart;
+            }
+            i = skipSpaces(chunk, i, end);
+            if (i < end && chunk.get(i) == ',') {
+                i = skipSpaces(chunk, i + 1, end);
+            } else if (i < end && chunk.get(i) == '}') {
+                closed = true;
+            } else {
+                break;
+            }
+        }
+        if (!closed || skipSpaces(chunk, i + 1, end) != end) {
+            invalid(counts, chunkOffset + start, "malformed JSON object");
+            return;
+        }
+        if (fields.studentStart < 0 || fields.taskStart < 0 || fields.statusStart < 0) {
+            invalid(counts, chunkOffset + start, "studentId, taskId and status must all be strings");
+            return;
+        }
+        accept(chunk, fields, chunkOffset + start, counts);
+    }
+
+    private void accept(ByteBuffer chunk, Fields fields, long offset, Counts counts) {
+        TaskStatus status = statusOf(chunk, fields.statusStart, fields.statusLength);
+        if (status == null) {
+            invalid(counts, offset, "unknown status '" + decode(chunk, fields.statusStart, fields.statusLength) + "'");
+            return;
+        }
+        if (fields.studentLength == 0 || fields.taskLength == 0) {
+            invalid(counts, offset, "empty studentId or taskId");
+            return;
+        }
+        if (!fields.studentAscii || !fields.taskAscii || ownsStudent != null) {
+            accept(decode(chunk, fields.studentStart, fields.studentLength),
+                    decode(chunk, fields.taskStart, fields.taskLength), status, offset, counts);
+            return;
+        }
+        if (fields.studentLength > TaskStatusSnapshot.MAX_ID_BYTES || fields.taskLength > TaskStatusSnapshot.MAX_ID_BYTES) {
+            invalid(counts, offset, "ID longer than " + TaskStatusSnapshot.MAX_ID_BYTES + " bytes");
+            return;
+        }
+        int student = index.internStudent(chunk, fields.studentStart, fields.studentLength);
+        int task = index.internTask(chunk, fields.taskStart, fields.taskLength);
+        store(student, task, status, counts);
+    }
+
+    // The slow path, and rows that must be checked against the shard ring.
+    private void accept(String studentId, String taskId, TaskStatus status, long offset, Counts counts) {
+        if (status == null) {
+            invalid(counts, offset, "unknown status");
+            return;
+        }
+        if (studentId.isEmpty() || taskId.isEmpty()) {
+            invalid(counts, offset, "empty studentId or taskId");
+            return;
+        }
+        if (studentId.getBytes(StandardCharsets.UTF_8).length > TaskStatusSnapshot.MAX_ID_BYTES
+                || taskId.getBytes(StandardCharsets.UTF_8).length > TaskStatusSnapshot.MAX_ID_BYTES) {
+            invalid(counts, offset, "ID longer than " + TaskStatusSnapshot.MAX_ID_BYTES + " bytes");
+            return;
+        }
+        if (ownsStudent != null && !ownsStudent.test(studentId)) {
+            counts.rows++;
+            counts.foreign++;
+            return;
+        }
+        store(index.internStudent(studentId), index.internTask(taskId), status, counts);
+    }
+
+    private void store(int student, int task, TaskStatus status, Counts counts) {
+        counts.rows++;
+        if (index.putIfFurther(student, task, status) != null) {
+            counts.duplicates++;
+        }
+    }
+
+    private void parseSlowCsvLine(ByteBuffer chunk, int start, int end, long chunkOffset, Counts counts) {
+        List<String> values = splitCsv(decode(chunk, start, end - start));
+        int needed = Math.max(studentColumn, Math.max(taskColumn, statusColumn));
+        if (values == null || values.size() <= needed) {
+            invalid(counts, chunkOffset + start, values == null ? "unterminated quoted field" : "expected studentId, taskId and status columns");
+            return;
+        }
+        accept(values.get(studentColumn), values.get(taskColumn), TaskStatus.fromLabel(values.get(statusColumn)),
+                chunkOffset + start, counts);
+    }
+
+    private void parseSlowJsonLine(ByteBuffer chunk, int start, int end, long chunkOffset, Counts counts) {
+        JsonNode row;
+        try {
+            row = JSON.readTree(decode(chunk, start, end - start));
+        } catch (IOException e) {
+            invalid(counts, chunkOffset + start, "malformed JSON object");
+            return;
+        }
+        JsonNode studentId = row.get("studentId");
+        JsonNode taskId = row.get("taskId");
+        JsonNode status = row.get("status");
+        if (studentId == null || !studentId.isTextual() || taskId == null || !taskId.isTextual()
+                || status == null || !status.isTextual()) {
+            invalid(counts, chunkOffset + start, "studentId, taskId and status must all be strings");
+            return;
+        }
+        accept(studentId.textValue(), taskId.textValue(), TaskStatus.fromLabel(status.textValue()), chunkOffset + start, counts);
+    }
+
+    private void invalid(Counts counts, long offset, String problem) {
+        counts.invalid++;
+        if (problemCount.getAndIncrement() < MAX_REPORTED_PROBLEMS) {
+            problems.add("byte " + offset + ": " + problem);
+        }
+    }
+
+    /**
+     * Splits a CSV line into fields, handling quoted fields with doubled quotes inside.
+     *
+     * @return The fields, or null if a quoted field is not closed.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static TaskStatus statusOf(ByteBuffer chunk, int start, int length) {
+        for (int i = 0; i < STATUS_NAMES.length; i++) {
+            if (matches(chunk, start, length, STATUS_NAMES[i])) {
+                return TaskStatus.fromOrdinal(i / 2);
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(ByteBuffer chunk, int start, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(ByteBuffer chunk, int i, int end) {
+        while (i < end && (chunk.get(i) == ' ' || chunk.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String decode(ByteBuffer chunk, int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = chunk.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Finds the start of the first line that begins at or after a position (the file size if there is none).
+    private long nextLineStart(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Reads the first line of the file (without its line break), or the whole file if it has only one line.
+    private byte[] readLine(long position) throws IOException {
+        long end = Math.min(nextLineStart(position), channel.size());
+        long length = end - position;
+        if (length > 1 << 20) {
+            throw new IllegalArgumentException("The first line of the import file is longer than 1 MB");
+        }
+        ByteBuffer line = ByteBuffer.allocate((int) length);
+        while (line.hasRemaining() && channel.read(line, position + line.position()) > 0) {
+            // Keep reading until the whole line is in.
+        }
+        int content = line.position();
+        if (content > 0 && line.get(content - 1) == '\n') {
+            content--;
+        }
+        byte[] bytes = new byte[content];
+        line.flip();
+        line.get(bytes);
+        return bytes;
+    }
+}
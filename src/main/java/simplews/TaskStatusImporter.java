@@ -0,0 +1,384 @@
+package simplews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Bulk loader for task status exports (CSV or NDJSON, see {@link TaskStatusImportParser}) that
+ * replaces every pair in the service at once.
+ * <p>
+ * The file is memory-mapped and parsed in parallel straight into a new {@link TaskStatusIndex},
+ * sized up front from a sample of the file so it never has to grow. Only when the whole file has
+ * been read is the index swapped into the store, so lookups see either the old pairs or all of the
+ * new ones. The file itself never lands on the heap: the new pairs cost what they cost in the
+ * index (about 8 bytes each plus their distinct IDs) while the old ones are still being served.
+ * <p>
+ * An import is refused, and the old pairs kept, if the file has no valid rows or more than
+ * {@code simplews.import.max-invalid-rows} invalid ones. In sharded mode, rows for students of
+ * other nodes are skipped. A file named by {@code simplews.import.file} is imported at startup,
+ * before the server accepts requests. The importer is never created lazily, so this holds in the
+ * fast-start profile too, where other beans wait for their first use.
+ */
+@Component
+@Lazy(false)
+public class TaskStatusImporter implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskStatusImporter.class);
+
+    // Bytes per parallel parsing task.
+    private static final long DEFAULT_CHUNK_SIZE = 16 << 20;
+    // Bytes read from the start of the file to estimate the number of rows.
+    private static final int SAMPLE_SIZE = 1 << 20;
+
+    /**
+     * The supported file formats.
+     */
+    public enum Format {
+        /** Comma separated {@code studentId,taskId,status}, with an optional header line. */
+        CSV,
+        /** Newline-delimited JSON, one {@code {"studentId":..,"taskId":..,"status":..}} object per line. */
+        NDJSON;
+
+        /**
+         * Resolves a format from a name such as {@code csv}, {@code ndjson} or {@code jsonl}.
+         *
+         * @param name The name, in any case.
+         * @return The format, or null if the name is not known.
+         */
+        public static Format fromName(String name) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "csv":
+                    return CSV;
+                case "ndjson":
+                case "jsonl":
+                case "json":
+                    return NDJSON;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private final TaskStatusService service;
+    private final TaskStatusShards shards;
+    private final int parallelism;
+    private final long maxInvalidRows;
+    private final String startupFile;
+    private final long chunkSize;
+
+    /**
+     * Creates the importer.
+     *
+     * @param service        The service whose pairs are replaced.
+     * @param shards         The shard configuration, to skip other nodes' students; may be null.
+     * @param parallelism    The number of threads that parse a file (0 for one per processor).
+     * @param maxInvalidRows The most invalid rows an import may have and still be applied.
+     * @param startupFile    A file to import at startup, or empty for none.
+     */
+    @Autowired
+    public TaskStatusImporter(TaskStatusService service, TaskStatusShards shards,
+                              @Value("${simplews.import.parallelism:0}") int parallelism,
+                              @Value("${simplews.import.max-invalid-rows:1000}") long maxInvalidRows,
+                              @Value("${simplews.import.file:}") String startupFile) {
+        this(service, shards, parallelism, maxInvalidRows, startupFile, DEFAULT_CHUNK_SIZE);
+    }
+
+    TaskStatusImporter(TaskStatusService service, TaskStatusShards shards, int parallelism, long maxInvalidRows,
+                       String startupFile, long chunkSize) {
+        this.service = service;
+        this.shards = shards;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxInvalidRows = maxInvalidRows;
+        this.startupFile = startupFile;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports {@code simplews.import.file}, if set. Failing to read it stops the application.
+     *
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (startupFile == null || startupFile.trim().isEmpty()) {
+            return;
+        }
+        Report report = importFile(Paths.get(startupFile.trim()), null);
+        if (!report.isApplied()) {
+            throw new IllegalStateException("Import of " + startupFile + " was refused: " + report.getProblems());
+        }
+    }
+
+    /**
+     * Imports a file and, if it is acceptable, replaces every pair in the service with its rows.
+     * Imports run one at a time.
+     *
+     * @param file   The file.
+     * @param format The format of the file, or null to tell from its first byte ({@code '{'} means NDJSON).
+     * @return What was read and whether it was applied.
+     * @throws IOException                   If the file cannot be read.
+     * @throws IllegalArgumentException      If a CSV header lacks a required column.
+     * @throws UnsupportedOperationException If the store cannot be replaced as a whole.
+     */
+    public synchronized Report importFile(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        resetPeakHeap();
+        long heapBefore = usedHeap();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (format == null) {
+                format = detectFormat(channel);
+            }
+            TaskStatusIndex index = new TaskStatusIndex(estimateRows(channel));
+            Predicate<String> ownsStudent = shards != null && shards.isEnabled()
+                    ? studentId -> shards.ownerOf(studentId).equals(shards.getSelf())
+                    : null;
+            TaskStatusImportParser parser = new TaskStatusImportParser(channel, format, index, ownsStudent, chunkSize);
+            parser.readHeader();
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            TaskStatusImportParser.Counts counts;
+            try {
+                counts = pool.invoke(parser.task());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+
+            boolean applied = counts.rows - counts.foreign > 0 && counts.invalid <= maxInvalidRows;
+            if (applied) {
+                service.replaceAllTaskStatuses(index);
+            }
+            Report report = new Report(format, size, counts, index.size(), parser.getProblems(), applied,
+                    System.nanoTime() - start, heapBefore, usedHeap(), peakHeap());
+            if (applied) {
+                log.info("Imported {}: {}", file, report);
+            } else {
+                log.warn("Refused import of {}: {}", file, report);
+            }
+            return report;
+        }
+    }
+
+    // NDJSON lines start with '{'; anything else is taken for CSV.
+    private static Format detectFormat(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(64);
+        channel.read(head, 0);
+        for (int i = 0; i < head.position(); i++) {
+            byte b = head.get(i);
+            if (b == '{') {
+                return Format.NDJSON;
+            }
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b >= 0) {
+                break;
+            }
+        }
+        return Format.CSV;
+    }
+
+    // Extrapolates the number of lines in the sample to the whole file.
+    private static int estimateRows(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(size, SAMPLE_SIZE));
+        while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0) {
+            // Keep reading until the sample is full.
+        }
+        int lines = 0;
+        for (int i = 0; i < sample.position(); i++) {
+            if (sample.get(i) == '\n') {
+                lines++;
+            }
+        }
+        if (lines == 0) {
+            return 16;
+        }
+        return (int) Math.min(Integer.MAX_VALUE / 2, size * lines / sample.position() + 1);
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // The pools peak at different moments, so their sum is an upper bound of the heap's peak.
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * The outcome of an import, with its throughput and memory use. Serialized as the JSON answer of
+     * {@code POST /api/import}.
+     */
+    public static final class Report {
+        private final Format format;
+        private final long bytes;
+        private final long rows;
+        private final long pairs;
+        private final long duplicates;
+        private final long invalidRows;
+        private final long skippedRows;
+        private final List<String> problems;
+        private final boolean applied;
+        private final long millis;
+        private final long heapBeforeBytes;
+        private final long heapAfterBytes;
+        private final long peakHeapBytes;
+
+        Report(Format format, long bytes, TaskStatusImportParser.Counts counts, long pairs, List<String> problems,
+               boolean applied, long nanos, long heapBeforeBytes, long heapAfterBytes, long peakHeapBytes) {
+            this.format = format;
+            this.bytes = bytes;
+            this.rows = counts.rows;
+            this.pairs = pairs;
+            this.duplicates = counts.duplicates;
+            this.invalidRows = counts.invalid;
+            this.skippedRows = counts.foreign;
+            this.problems = problems;
+            this.applied = applied;
+            this.millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            this.heapBeforeBytes = heapBeforeBytes;
+            this.heapAfterBytes = heapAfterBytes;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Gets the number of valid rows read, including duplicates and skipped rows.
+         *
+         * @return The number of valid rows.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the number of distinct pairs imported.
+         *
+         * @return The number of pairs in the new index.
+         */
+        public long getPairs() {
+            return pairs;
+        }
+
+        /**
+         * Gets the number of rows for a pair that another row also had; the most advanced status was kept.
+         *
+         * @return The number of duplicate rows.
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getInvalidRows() {
+            return invalidRows;
+        }
+
+        /**
+         * Gets the number of valid rows skipped because their student belongs to another node.
+         *
+         * @return The number of skipped rows.
+         */
+        public long getSkippedRows() {
+            return skippedRows;
+        }
+
+        /**
+         * Gets descriptions of the first few invalid rows, with their byte offsets in the file.
+         *
+         * @return The descriptions.
+         */
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        /**
+         * Checks whether the pairs were swapped in; if not, the service kept its old pairs.
+         *
+         * @return Whether the import was applied.
+         */
+        public boolean isApplied() {
+            return applied;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getRowsPerSecond() {
+            return millis > 0 ? (rows + invalidRows) * 1000 / millis : rows + invalidRows;
+        }
+
+        public double getMegabytesPerSecond() {
+            return millis > 0 ? Math.round(bytes * 1000.0 / millis / (1 << 20) * 10) / 10.0 : 0;
+        }
+
+        public long getHeapBeforeBytes() {
+            return heapBeforeBytes;
+        }
+
+        public long getHeapAfterBytes() {
+            return heapAfterBytes;
+        }
+
+        /**
+         * Gets the peak heap use during the import (an upper bound: the sum of each heap pool's peak).
+         *
+         * @return The peak, in bytes.
+         */
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s, %d MB, %d rows (%d duplicate, %d invalid, %d skipped) -> %d pairs in %d ms "
+                            + "(%d rows/s, %.1f MB/s), heap %d MB -> %d MB, peak %d MB%s",
+                    format, bytes >> 20, rows, duplicates, invalidRows, skippedRows, pairs, millis,
+                    getRowsPerSecond(), getMegabytesPerSecond(), heapBeforeBytes >> 20, heapAfterBytes >> 20,
+                    peakHeapBytes >> 20, problems.isEmpty() ? "" : ", problems: " + problems);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package simplews;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact, concurrent index from (studentId, taskId) pairs to a {@link TaskStatus}.
+ * <p>
+ * Student and task IDs are interned to int handles, and every pair is stored as a single
+ * packed {@code long} in an open-addressing table:
+ * <pre>
+ *   bits 63..36  student handle (28 bits)
+ *   bits 35..8   task handle    (28 bits)
+ *   bit   7      moved flag (set while the table is being resized)
+ *   bits  6..0   status ordinal (127 once the pair has been removed)
+ * </pre>
+ * A pair therefore costs 8 bytes (plus table slack) instead of a String key, a String value
+ * and a HashMap entry, and looking a pair up does not allocate. Because the two IDs are kept
+ * apart, a student ID containing "-" can no longer collide with a different pair.
+ * <p>
+ * Reads never block. Status updates are single compare-and-set operations on a slot, so
+ * concurrent writers never lose each other's updates. When the table grows, each old slot is
+ * frozen with the moved flag before it is copied; writers that meet a frozen slot wait for the
+ * new table and retry there, while readers keep reading the frozen (still correct) values.
+ * A removed pair keeps its slot, marked as removed, so that probe sequences through it stay
+ * intact; removed slots are left behind when the table next grows.
+ * <p>
+ * Two secondary indexes answer per-student and per-task queries without walking the table: the
+ * task handles of each student and the student handles of each task ({@link HandleLists}), plus
+ * the number of pairs per status of each task. A pair joins both lists when it takes a slot and
+ * leaves them when its removed slot is left behind by a resize, so the lists hold exactly the
+ * pairs that have a slot; queries read the current status from the slot and skip removed pairs.
+ * The counts are adjusted after every successful compare-and-set.
+ */
+class TaskStatusIndex {
+
+    private static final int STATUS_BITS = 8;
+    private static final long STATUS_MASK = 0x7F;
+    private static final long MOVED = 0x80;
+    private static final int REMOVED = 0x7F;
+    private static final int HANDLE_BITS = 28;
+
+    private final IdTable students;
+    private final IdTable tasks;
+    private volatile AtomicLongArray slots;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Object resizeLock = new Object();
+    private final HandleLists tasksOfStudent = new HandleLists();
+    private final HandleLists studentsOfTask = new HandleLists();
+    // Per task: the number of its pairs with each status, indexed by ordinal.
+    private final HandleMap<AtomicIntegerArray> statusCounts = new HandleMap<>();
+
+    TaskStatusIndex() {
+        this(16);
+    }
+
+    /**
+     * Creates an index sized to hold the given number of pairs without resizing.
+     *
+     * @param expectedPairs The expected number of (student, task) pairs.
+     */
+    TaskStatusIndex(int expectedPairs) {
+        students = new IdTable();
+        tasks = new IdTable();
+        slots = new AtomicLongArray(IdTable.tableSizeFor(expectedPairs));
+    }
+
+    /**
+     * Gets the status of a (student, task) pair.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @return The status, or null if the pair is not in the index.
+     */
+    TaskStatus get(String studentId, String taskId) {
+        int student = students.get(studentId);
+        if (student == 0) {
+            return null;
+        }
+        int task = tasks.get(taskId);
+        if (task == 0) {
+            return null;
+        }
+        return statusOf(pairKey(student, task));
+    }
+
+    /**
+     * Gets the statuses of many tasks of one student, resolving the student ID only once.
+     *
+     * @param studentId The ID of the student.
+     * @param taskIds   The IDs of the tasks.
+     * @param out       Receives the status of {@code taskIds.get(i)} at index i (null if unknown).
+     */
+    void getAll(String studentId, List<String> taskIds, TaskStatus[] out) {
+        int student = students.get(studentId);
+        for (int i = 0; i < taskIds.size(); i++) {
+            int task = student == 0 ? 0 : tasks.get(taskIds.get(i));
+            out[i] = task == 0 ? null : statusOf(pairKey(student, task));
+        }
+    }
+
+    /**
+     * Gets the statuses of many (student, task) pairs. Runs of pairs for the same student
+     * (the usual shape of a class grid) resolve the student ID only once.
+     *
+     * @param keys The pairs to look up.
+     * @param out  Receives the status of {@code keys.get(i)} at index i (null if unknown).
+     */
+    void getAll(List<TaskKey> keys, TaskStatus[] out) {
+        String lastStudentId = null;
+        int student = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            TaskKey key = keys.get(i);
+            if (!key.getStudentId().equals(lastStudentId)) {
+                lastStudentId = key.getStudentId();
+                student = students.get(lastStudentId);
+            }
+            int task = student == 0 ? 0 : tasks.get(key.getTaskId());
+            out[i] = task == 0 ? null : statusOf(pairKey(student, task));
+        }
+    }
+
+    /**
+     * Sets the status of a (student, task) pair, adding the pair if it is new.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The new status.
+     * @return The previous status, or null if the pair was new.
+     */
+    TaskStatus put(String studentId, String taskId, TaskStatus status) {
+        long key = pairKey(students.intern(studentId), tasks.intern(taskId));
+        while (true) {
+            TaskStatus current = statusOf(key);
+            if (exchange(key, current, status)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Atomically sets the status of a pair if it currently has the expected status.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param expected  The status the pair must have, or null if the pair must not exist yet.
+     * @param update    The new status.
+     * @return The status witnessed by the operation; the update was applied if and only if it is {@code expected}.
+     */
+    TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update) {
+        long key = pairKey(students.intern(studentId), tasks.intern(taskId));
+        while (true) {
+            TaskStatus current = statusOf(key);
+            if (current != expected) {
+                return current;
+            }
+            if (exchange(key, expected, update)) {
+                return expected;
+            }
+        }
+    }
+
+    /**
+     * Atomically removes a pair if it currently has the expected status.
+     * Its slot keeps a tombstone, reused if the pair is added again and dropped on the next resize;
+     * its IDs stay interned.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param expected  The status the pair must have.
+     * @return The status witnessed by the operation; the pair was removed if and only if it is {@code expected}.
+     */
+    TaskStatus compareAndRemove(String studentId, String taskId, TaskStatus expected) {
+        int student = students.get(studentId);
+        int task = student == 0 ? 0 : tasks.get(taskId);
+        if (task == 0) {
+            return null;
+        }
+        long key = pairKey(student, task);
+        while (true) {
+            TaskStatus current = statusOf(key);
+            if (current != expected || current == null) {
+                return current;
+            }
+            if (exchange(key, expected, null)) {
+                return expected;
+            }
+        }
+    }
+
+    /**
+     * Interns a student ID, for {@link #putIfFurther}.
+     *
+     * @param studentId The ID of the student.
+     * @return Its handle in this index.
+     */
+    int internStudent(String studentId) {
+        return students.intern(studentId);
+    }
+
+    /**
+     * Interns a student ID given as ASCII bytes, without copying it unless it is new.
+     *
+     * @param bytes  The buffer holding the ID.
+     * @param offset The position of the ID.
+     * @param length The length of the ID, in bytes.
+     * @return Its handle in this index.
+     */
+    int internStudent(ByteBuffer bytes, int offset, int length) {
+        return students.intern(bytes, offset, length);
+    }
+
+    /**
+     * Interns a task ID, for {@link #putIfFurther}.
+     *
+     * @param taskId The ID of the task.
+     * @return Its handle in this index.
+     */
+    int internTask(String taskId) {
+        return tasks.intern(taskId);
+    }
+
+    /**
+     * Interns a task ID given as ASCII bytes, without copying it unless it is new.
+     *
+     * @param bytes  The buffer holding the ID.
+     * @param offset The position of the ID.
+     * @param length The length of the ID, in bytes.
+     * @return Its handle in this index.
+     */
+    int internTask(ByteBuffer bytes, int offset, int length) {
+        return tasks.intern(bytes, offset, length);
+    }
+
+    /**
+     * Gets a student ID by its handle.
+     *
+     * @param student A handle from {@link #internStudent}.
+     * @return The ID.
+     */
+    String studentName(int student) {
+        return students.name(student);
+    }
+
+    /**
+     * Sets the status of a pair unless it already has that status or a later one in the workflow,
+     * so that loading the same pair twice keeps its most advanced status whatever the order.
+     *
+     * @param student A handle from {@link #internStudent}.
+     * @param task    A handle from {@link #internTask}.
+     * @param status  The status.
+     * @return The status the pair had before, or null if it was new.
+     */
+    TaskStatus putIfFurther(int student, int task, TaskStatus status) {
+        long key = pairKey(student, task);
+        while (true) {
+            TaskStatus current = statusOf(key);
+            if (current != null && current.ordinal() >= status.ordinal()) {
+                return current;
+            }
+            if (exchange(key, current, status)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Visits the tasks of one student, in the order they were first added. Takes time proportional
+     * to the number of tasks of the student, not to the size of the index.
+     *
+     * @param studentId The ID of the student.
+     * @param visitor   Receives each pair of the student and its status.
+     */
+    void forEachTaskOf(String studentId, TaskStatusVisitor visitor) {
+        int student = students.get(studentId);
+        if (student == 0) {
+            return;
+        }
+        tasksOfStudent.forEach(student, task -> {
+            TaskStatus status = statusOf(pairKey(student, task));
+            if (status != null) {
+                visitor.visit(studentId, tasks.name(task), status);
+            }
+        });
+    }
+
+    /**
+     * Visits the students of one task, in the order they were first added. Takes time proportional
+     * to the number of students of the task, not to the size of the index.
+     *
+     * @param taskId  The ID of the task.
+     * @param visitor Receives each pair of the task and its status.
+     */
+    void forEachStudentOf(String taskId, TaskStatusVisitor visitor) {
+        int task = tasks.get(taskId);
+        if (task == 0) {
+            return;
+        }
+        studentsOfTask.forEach(task, student -> {
+            TaskStatus status = statusOf(pairKey(student, task));
+            if (status != null) {
+                visitor.visit(students.name(student), taskId, status);
+            }
+        });
+    }
+
+    /**
+     * Counts the pairs of one task per status, in constant time. While writers are busy with the
+     * task, a count may briefly lag behind by their in-flight changes.
+     *
+     * @param taskId The ID of the task.
+     * @param out    Receives the number of pairs with each status, indexed by {@link TaskStatus#ordinal()}.
+     */
+    void countByStatus(String taskId, long[] out) {
+        int task = tasks.get(taskId);
+        AtomicIntegerArray counts = task != 0 ? statusCounts.get(task) : null;
+        for (int i = 0; i < out.length; i++) {
+            // Two writers' adjustments can land in either order, so a count may dip below 0 for a moment.
+            out[i] = counts != null ? Math.max(0, counts.get(i)) : 0;
+        }
+    }
+
+    /**
+     * Gets the number of (student, task) pairs in the index.
+     *
+     * @return The number of pairs.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Visits every pair in the index, in no particular order. Runs concurrently with writers;
+     * a pair changed during the walk is visited with either its old or its new status.
+     *
+     * @param visitor Receives each pair and its status.
+     */
+    void forEach(TaskStatusVisitor visitor) {
+        AtomicLongArray table = slots;
+        for (int i = 0; i < table.length(); i++) {
+            long slot = table.get(i);
+            long key = slot >>> STATUS_BITS;
+            if (key != 0 && (slot & STATUS_MASK) != REMOVED) {
+                visitor.visit(students.name((int) (key >>> HANDLE_BITS)),
+                        tasks.name((int) (key & IdTable.MAX_HANDLE)),
+                        TaskStatus.fromOrdinal((int) (slot & STATUS_MASK)));
+            }
+        }
+    }
+
+    private TaskStatus statusOf(long key) {
+        AtomicLongArray table = slots;
+        int mask = table.length() - 1;
+        for (int probes = 0, i = hash(key) & mask; probes <= mask; probes++, i = (i + 1) & mask) {
+            long slot = table.get(i);
+            if (slot >>> STATUS_BITS == key) {
+                int ordinal = (int) (slot & STATUS_MASK);
+                return ordinal == REMOVED ? null : TaskStatus.fromOrdinal(ordinal);
+            }
+            if (slot >>> STATUS_BITS == 0) {
+                return null; // Empty (or an empty slot frozen by a resize).
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the slot of {@code key} if it holds {@code expected} (null meaning "absent"),
+     * with {@code update} (null meaning "remove").
+     * Returns false if another writer changed the slot first; the caller re-reads and retries.
+     */
+    private boolean exchange(long key, TaskStatus expected, TaskStatus update) {
+        long packed = key << STATUS_BITS | (update != null ? update.ordinal() : REMOVED);
+        AtomicLongArray table = slots;
+        int mask = table.length() - 1;
+        for (int probes = 0, i = hash(key) & mask; probes <= mask; probes++, i = (i + 1) & mask) {
+            long slot = table.get(i);
+            if ((slot & MOVED) != 0) {
+                awaitResize(table);
+                return false;
+            }
+            if (slot == 0) {
+                if (expected != null) {
+                    return false; // Expected an existing pair, but it is absent.
+                }
+                if (update == null) {
+                    return true; // Nothing to remove.
+                }
+                if (!table.compareAndSet(i, 0, packed)) {
+                    return false; // Lost a race for this empty slot; it may now hold our key.
+                }
+                link(key);
+                count(key, null, update);
+                if (size.incrementAndGet() * 4L > table.length() * 3L) {
+                    resize(table);
+                }
+                return true;
+            }
+            if (slot >>> STATUS_BITS == key) {
+                long expectedOrdinal = expected != null ? expected.ordinal() : REMOVED;
+                if ((slot & STATUS_MASK) != expectedOrdinal || !table.compareAndSet(i, slot, packed)) {
+                    return false;
+                }
+                if (expected == null && update != null) {
+                    size.incrementAndGet(); // A removed pair came back in its old slot.
+                } else if (expected != null && update == null) {
+                    size.decrementAndGet();
+                }
+                count(key, expected, update);
+                return true;
+            }
+        }
+        // Racing inserts filled the table before it could grow; grow it now and retry.
+        resize(table);
+        return false;
+    }
+
+    private void resize(AtomicLongArray table) {
+        synchronized (resizeLock) {
+            if (slots != table) {
+                return; // Another writer already grew the table.
+            }
+            int capacity = table.length() * 2;
+            if (capacity <= 0) {
+                throw new IllegalStateException("Task status index cannot grow beyond " + table.length() + " slots");
+            }
+            AtomicLongArray bigger = new AtomicLongArray(capacity);
+            int mask = capacity - 1;
+            long[] dropped = new long[16];
+            int droppedCount = 0;
+            for (int i = 0; i < table.length(); i++) {
+                // Freeze the slot so no writer can change it after it has been copied.
+                long slot = table.get(i);
+                while (!table.compareAndSet(i, slot, slot | MOVED)) {
+                    slot = table.get(i);
+                }
+                if (slot != 0 && (slot & STATUS_MASK) != REMOVED) {
+                    int j = hash(slot >>> STATUS_BITS) & mask;
+                    while (bigger.get(j) != 0) {
+                        j = (j + 1) & mask;
+                    }
+                    bigger.lazySet(j, slot);
+                } else if (slot != 0) {
+                    if (droppedCount == dropped.length) {
+                        dropped = Arrays.copyOf(dropped, droppedCount * 2);
+                    }
+                    dropped[droppedCount++] = slot >>> STATUS_BITS;
+                }
+            }
+            // Before publishing, so no writer can add one of the dropped pairs back in the meantime.
+            unlink(dropped, droppedCount, bigger);
+            slots = bigger;
+        }
+    }
+
+    // A pair took a fresh slot: list it in both secondary indexes.
+    private void link(long key) {
+        int student = (int) (key >>> HANDLE_BITS);
+        int task = (int) (key & IdTable.MAX_HANDLE);
+        tasksOfStudent.add(student, task);
+        studentsOfTask.add(task, student);
+    }
+
+    // Removed pairs whose slots a resize left behind leave the lists of their students and tasks.
+    private void unlink(long[] keys, int count, AtomicLongArray table) {
+        if (count == 0) {
+            return;
+        }
+        int[] owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            owners[i] = (int) (keys[i] >>> HANDLE_BITS);
+        }
+        Arrays.sort(owners);
+        for (int i = 0; i < count; i++) {
+            int student = owners[i];
+            if (i == 0 || student != owners[i - 1]) {
+                tasksOfStudent.retainAll(student, task -> contains(table, pairKey(student, task)));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            owners[i] = (int) (keys[i] & IdTable.MAX_HANDLE);
+        }
+        Arrays.sort(owners);
+        for (int i = 0; i < count; i++) {
+            int task = owners[i];
+            if (i == 0 || task != owners[i - 1]) {
+                studentsOfTask.retainAll(task, student -> contains(table, pairKey(student, task)));
+            }
+        }
+    }
+
+    // Moves one pair of a task from one status count to another (null meaning "not counted").
+    private void count(long key, TaskStatus previous, TaskStatus current) {
+        if (previous == current) {
+            return;
+        }
+        int task = (int) (key & IdTable.MAX_HANDLE);
+        AtomicIntegerArray counts = statusCounts.get(task);
+        if (counts == null) {
+            counts = statusCounts.putIfAbsent(task, new AtomicIntegerArray(TaskStatus.values().length));
+        }
+        if (previous != null) {
+            counts.decrementAndGet(previous.ordinal());
+        }
+        if (current != null) {
+            counts.incrementAndGet(current.ordinal());
+        }
+    }
+
+    private static boolean contains(AtomicLongArray table, long key) {
+        int mask = table.length() - 1;
+        for (int probes = 0, i = hash(key) & mask; probes <= mask; probes++, i = (i + 1) & mask) {
+            long slot = table.get(i) >>> STATUS_BITS;
+            if (slot == key) {
+                return true;
+            }
+            if (slot == 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void awaitResize(AtomicLongArray table) {
+        while (slots == table) {
+            Thread.yield();
+        }
+    }
+
+    private static long pairKey(int student, int task) {
+        return (long) student << HANDLE_BITS | task;
+    }
+
+    // 64-bit finalizer (from MurmurHash3) so neighbouring handles spread across the table.
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,170 @@
+package simplews;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the compact JSON status document served by {@link TaskStatusApiController}:
+ * <pre>
+ *   {"studentId":"student123","taskId":"task001","status":"SUBMITTED","label":"Submitted"}
+ * </pre>
+ * The status vocabulary is tiny and fixed, so the tail of the document for every status
+ * (and for an unknown pair) is encoded to UTF-8 once; only the two IDs are escaped per request.
+ * Documents are written into a reusable {@link Buffer} rather than through an ObjectMapper.
+ */
+final class TaskStatusJson {
+
+    private static final byte[] STUDENT_PREFIX = ascii("{\"studentId\":\"");
+    private static final byte[] TASK_PREFIX = ascii("\",\"taskId\":\"");
+    private static final byte[] ARRAY_START = ascii("[");
+    private static final byte[] ARRAY_SEPARATOR = ascii(",");
+    private static final byte[] ARRAY_END = ascii("]");
+    private static final byte[] NOT_FOUND_SUFFIX =
+            ascii("\",\"status\":null,\"label\":\"" + TaskStatusService.INVALID_STATUS_MESSAGE + "\"}");
+    private static final byte[][] STATUS_SUFFIXES = new byte[TaskStatus.values().length][];
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    static {
+        for (TaskStatus status : TaskStatus.values()) {
+            STATUS_SUFFIXES[status.ordinal()] =
+                    ascii("\",\"status\":\"" + status.name() + "\",\"label\":\"" + status.getLabel() + "\"}");
+        }
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Buffers that grew past this size are not kept, so one large document does not pin memory.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    // One buffer per thread, reused across requests so the common case does not allocate.
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(() -> new Buffer(INITIAL_BUFFER_SIZE));
+
+    private TaskStatusJson() {
+    }
+
+    /**
+     * Gets this thread's reusable buffer, emptied and ready to write into.
+     *
+     * @return The buffer.
+     */
+    static Buffer buffer() {
+        Buffer buffer = BUFFERS.get();
+        if (buffer.array().length > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new Buffer(INITIAL_BUFFER_SIZE);
+            BUFFERS.set(buffer);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Appends the status document of one (student, task) pair.
+     *
+     * @param out       The buffer to write into.
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The status, or null if the pair is not known.
+     */
+    static void writeStatus(Buffer out, String studentId, String taskId, TaskStatus status) {
+        out.write(STUDENT_PREFIX);
+        writeEscaped(out, studentId);
+        out.write(TASK_PREFIX);
+        writeEscaped(out, taskId);
+        out.write(status != null ? STATUS_SUFFIXES[status.ordinal()] : NOT_FOUND_SUFFIX);
+    }
+
+    static void writeArrayStart(Buffer out) {
+        out.write(ARRAY_START);
+    }
+
+    static void writeArraySeparator(Buffer out) {
+        out.write(ARRAY_SEPARATOR);
+    }
+
+    static void writeArrayEnd(Buffer out) {
+        out.write(ARRAY_END);
+    }
+
+    // Escapes a string as the body of a JSON string literal and encodes it as UTF-8.
+    private static void writeEscaped(Buffer out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out.write(c);
+            } else if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write('\\');
+                out.write('u');
+                out.write('0');
+                out.write('0');
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xF]);
+            } else if (c < 0x800) {
+                out.write(0xC0 | c >> 6);
+                out.write(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xF0 | cp >> 18);
+                out.write(0x80 | cp >> 12 & 0x3F);
+                out.write(0x80 | cp >> 6 & 0x3F);
+                out.write(0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                out.write('?'); // Unpaired surrogate; not representable in UTF-8.
+            } else {
+                out.write(0xE0 | c >> 12);
+                out.write(0x80 | c >> 6 & 0x3F);
+                out.write(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable byte buffer whose backing array is kept between uses.
+     */
+    static final class Buffer {
+        private byte[] bytes;
+        private int length;
+
+        Buffer(int initialCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        void write(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        void write(byte[] b) {
+            if (length + b.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + b.length));
+            }
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
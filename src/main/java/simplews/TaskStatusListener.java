@@ -0,0 +1,26 @@
+package simplews;
+
+/**
+ * Callback for status changes made through {@link TaskStatusService}.
+ * Called on the writer's thread after the change has been applied, so implementations must be quick
+ * and must not block; hand any real work off to another thread.
+ */
+public interface TaskStatusListener {
+
+    /**
+     * Called after the status of a pair actually changed (never for a write that left it as it was).
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param previous  The previous status, or null if the pair is new.
+     * @param current   The new status, or null if the pair was removed (e.g. handed over to another shard).
+     */
+    void onStatusChanged(String studentId, String taskId, TaskStatus previous, TaskStatus current);
+
+    /**
+     * Called after every pair was replaced at once, e.g. by a bulk import. No per-pair calls are
+     * made for such a replacement, so anything derived from individual changes must be rebuilt.
+     */
+    default void onAllReplaced() {
+    }
+}
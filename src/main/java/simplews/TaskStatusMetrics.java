@@ -0,0 +1,372 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for task status lookups and the HTTP endpoints, written out in
+ * the Prometheus text format by {@link MetricsController}.
+ * <p>
+ * Everything recorded on the request path is a lock-free, allocation-free update of a
+ * preallocated counter or histogram. Request rates are derived from the counters by the scraper
+ * (e.g. {@code rate(simplews_requests_total[1m])}).
+ * <p>
+ * Reading the clock costs more than a lookup itself, so the lookup latency histogram can be fed a
+ * random sample of lookups ({@code simplews.metrics.lookup-timing-sample}); the lookup counters
+ * still count every lookup.
+ */
+@Component
+public class TaskStatusMetrics implements TaskStatusListener {
+
+    /**
+     * Outcome of a lookup: the pair was found, was not found, or was not a valid pair to begin with (an empty ID).
+     */
+    public enum Outcome {
+        HIT, MISS, INVALID
+    }
+
+    /**
+     * HTTP endpoints with their own request counter and latency histogram.
+     */
+    public enum Endpoint {
+        TASK_STATUS_FORM("/taskStatus"),
+        CHECK_TASK_STATUS("/checkTaskStatus"),
+        UPDATE_TASK_STATUS("/updateTaskStatus"),
+        SET_TASK_STATUS("/setTaskStatus"),
+        API_TASK_STATUS("/api/tasks/{studentId}/{taskId}"),
+        API_BATCH("/api/tasks/batch"),
+        API_TASK_QUERY("/api/tasks"),
+        API_TASK_COUNTS("/api/tasks/counts");
+
+        private final String path;
+
+        Endpoint(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Finds the endpoint that serves a request path.
+         *
+         * @param path The request path, without the context path.
+         * @return The endpoint, or null for paths that are not measured.
+         */
+        public static Endpoint forPath(String path) {
+            switch (path) {
+                case "/taskStatus":
+                    return TASK_STATUS_FORM;
+                case "/checkTaskStatus":
+                    return CHECK_TASK_STATUS;
+                case "/updateTaskStatus":
+                    return UPDATE_TASK_STATUS;
+                case "/setTaskStatus":
+                    return SET_TASK_STATUS;
+                case "/api/tasks/batch":
+                    return API_BATCH;
+                case "/api/tasks":
+                    return API_TASK_QUERY;
+                case "/api/tasks/counts":
+                    return API_TASK_COUNTS;
+                case "/api/tasks/subscribe":
+                    return null; // Long-lived event streams have no meaningful latency.
+                default:
+                    return path.startsWith("/api/tasks/") ? API_TASK_STATUS : null;
+            }
+        }
+    }
+
+    /**
+     * Why admission control refused a request: its client was over its rate (429), or the server was
+     * at its concurrency limit (503).
+     */
+    public enum Shed {
+        RATE_LIMITED, OVERLOADED
+    }
+
+    /**
+     * Default for {@code simplews.metrics.lookup-timing-sample}.
+     */
+    public static final int DEFAULT_LOOKUP_TIMING_SAMPLE = 8;
+
+    // Returned by startLookup() for lookups that are not timed.
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final int lookupSampleMask;
+    private final LongAdder[] lookups = newAdders(Outcome.values().length);
+    private final LatencyHistogram lookupLatency = new LatencyHistogram();
+    private final LongAdder[] requests = newAdders(Endpoint.values().length);
+    private final LongAdder[] serverErrors = newAdders(Endpoint.values().length);
+    private final LatencyHistogram[] requestLatency = new LatencyHistogram[Endpoint.values().length];
+    // Indexed by endpoint ordinal * number of reasons + reason ordinal.
+    private final LongAdder[] shed = newAdders(Endpoint.values().length * Shed.values().length);
+    // Set when admission control is on, for the limit and in-flight gauges.
+    private volatile AdaptiveConcurrencyLimit concurrencyLimit;
+    // Set in virtual thread mode with a pinning threshold, for the pinning counters.
+    private volatile VirtualThreadPinningMonitor pinningMonitor;
+
+    // Number of pairs per status; counted once on first use, then kept up to date from status changes.
+    private final AtomicLongArray statusCounts = new AtomicLongArray(TaskStatus.values().length);
+    private volatile boolean statusCountsReady;
+
+    /**
+     * Creates metrics that time one lookup in {@link #DEFAULT_LOOKUP_TIMING_SAMPLE}.
+     */
+    public TaskStatusMetrics() {
+        this(DEFAULT_LOOKUP_TIMING_SAMPLE);
+    }
+
+    /**
+     * Creates metrics that time one lookup in {@code lookupTimingSample}, picked at random.
+     *
+     * @param lookupTimingSample Time one lookup in this many (rounded up to a power of two); 1 times all of them.
+     */
+    @Autowired
+    public TaskStatusMetrics(@Value("${simplews.metrics.lookup-timing-sample:" + DEFAULT_LOOKUP_TIMING_SAMPLE + "}") int lookupTimingSample) {
+        lookupSampleMask = Integer.highestOneBit(Math.max(1, lookupTimingSample * 2 - 1)) - 1;
+        for (int i = 0; i < requestLatency.length; i++) {
+            requestLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Starts a lookup in {@link TaskStatusService}.
+     *
+     * @return The value to pass to {@link #recordLookup(Outcome, long)}.
+     */
+    public long startLookup() {
+        if (lookupSampleMask != 0 && (ThreadLocalRandom.current().nextInt() & lookupSampleMask) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records one lookup in {@link TaskStatusService}.
+     *
+     * @param outcome The outcome.
+     * @param start   The value returned by {@link #startLookup()} before the lookup.
+     */
+    public void recordLookup(Outcome outcome, long start) {
+        lookups[outcome.ordinal()].increment();
+        if (start != NOT_TIMED) {
+            lookupLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the outcomes of a bulk lookup without timing each pair.
+     *
+     * @param outcome The outcome.
+     * @param count   The number of pairs with that outcome.
+     */
+    public void recordLookups(Outcome outcome, long count) {
+        lookups[outcome.ordinal()].add(count);
+    }
+
+    /**
+     * Records one handled HTTP request.
+     *
+     * @param endpoint    The endpoint.
+     * @param nanos       How long the request took, including rendering the response.
+     * @param serverError Whether the response was a 5xx error.
+     */
+    public void recordRequest(Endpoint endpoint, long nanos, boolean serverError) {
+        requests[endpoint.ordinal()].increment();
+        if (serverError) {
+            serverErrors[endpoint.ordinal()].increment();
+        }
+        requestLatency[endpoint.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records a request refused by admission control. Refused requests are not counted in the
+     * request counters and latencies, which describe the requests that were served.
+     *
+     * @param endpoint The endpoint.
+     * @param reason   Why it was refused.
+     */
+    public void recordShed(Endpoint endpoint, Shed reason) {
+        shed[endpoint.ordinal() * Shed.values().length + reason.ordinal()].increment();
+    }
+
+    /**
+     * Publishes the current limit and in-flight count of admission control.
+     *
+     * @param limit The concurrency limit of {@link AdmissionControlFilter}.
+     */
+    void setConcurrencyLimit(AdaptiveConcurrencyLimit limit) {
+        this.concurrencyLimit = limit;
+    }
+
+    /**
+     * Publishes the counts of virtual threads pinned to their carrier.
+     *
+     * @param monitor The monitor created by {@link VirtualThreadConfig}.
+     */
+    void setPinningMonitor(VirtualThreadPinningMonitor monitor) {
+        this.pinningMonitor = monitor;
+    }
+
+    @Override
+    public void onStatusChanged(String studentId, String taskId, TaskStatus previous, TaskStatus current) {
+        if (previous != null) {
+            statusCounts.decrementAndGet(previous.ordinal());
+        }
+        if (current != null) {
+            statusCounts.incrementAndGet(current.ordinal());
+        }
+    }
+
+    /**
+     * Makes the next scrape count the pairs per status again.
+     */
+    @Override
+    public void onAllReplaced() {
+        statusCountsReady = false;
+    }
+
+    public long getLookupCount(Outcome outcome) {
+        return lookups[outcome.ordinal()].sum();
+    }
+
+    public long getRequestCount(Endpoint endpoint) {
+        return requests[endpoint.ordinal()].sum();
+    }
+
+    public long getShedCount(Endpoint endpoint, Shed reason) {
+        return shed[endpoint.ordinal() * Shed.values().length + reason.ordinal()].sum();
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format (version 0.0.4).
+     * The first call counts the pairs per status by walking the store; later calls only read counters.
+     *
+     * @param service The service, used for that first count.
+     * @return The metrics text.
+     */
+    public String toPrometheusText(TaskStatusService service) {
+        countStatusesOnce(service);
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "simplews_lookups_total", "counter", "Task status lookups by outcome.");
+        for (Outcome outcome : Outcome.values()) {
+            out.append("simplews_lookups_total{outcome=\"").append(label(outcome)).append("\"} ")
+                    .append(lookups[outcome.ordinal()].sum()).append('\n');
+        }
+        header(out, "simplews_lookup_latency_seconds", "summary", "Latency of single task status lookups (a random sample of them).");
+        summary(out, "simplews_lookup_latency_seconds", "", lookupLatency);
+        header(out, "simplews_lookup_latency_max_seconds", "gauge", "Slowest single task status lookup.");
+        out.append("simplews_lookup_latency_max_seconds ").append(seconds(lookupLatency.getMaxNanos())).append('\n');
+
+        header(out, "simplews_requests_total", "counter", "HTTP requests by endpoint.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            out.append("simplews_requests_total{endpoint=\"").append(endpoint.getPath()).append("\"} ")
+                    .append(requests[endpoint.ordinal()].sum()).append('\n');
+        }
+        header(out, "simplews_request_errors_total", "counter", "HTTP requests answered with a 5xx status, by endpoint.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            out.append("simplews_request_errors_total{endpoint=\"").append(endpoint.getPath()).append("\"} ")
+                    .append(serverErrors[endpoint.ordinal()].sum()).append('\n');
+        }
+        header(out, "simplews_request_latency_seconds", "summary", "HTTP request latency by endpoint.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            summary(out, "simplews_request_latency_seconds", "endpoint=\"" + endpoint.getPath() + "\",",
+                    requestLatency[endpoint.ordinal()]);
+        }
+        header(out, "simplews_request_latency_max_seconds", "gauge", "Slowest HTTP request by endpoint.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            out.append("simplews_request_latency_max_seconds{endpoint=\"").append(endpoint.getPath()).append("\"} ")
+                    .append(seconds(requestLatency[endpoint.ordinal()].getMaxNanos())).append('\n');
+        }
+
+        header(out, "simplews_requests_shed_total", "counter", "HTTP requests refused by admission control, by endpoint and reason.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (Shed reason : Shed.values()) {
+                out.append("simplews_requests_shed_total{endpoint=\"").append(endpoint.getPath()).append("\",reason=\"")
+                        .append(reason.name().toLowerCase()).append("\"} ").append(getShedCount(endpoint, reason)).append('\n');
+            }
+        }
+        AdaptiveConcurrencyLimit limit = concurrencyLimit;
+        if (limit != null) {
+            header(out, "simplews_admission_concurrency_limit", "gauge", "Requests admission control currently lets run at once.");
+            out.append("simplews_admission_concurrency_limit ").append(limit.getLimit()).append('\n');
+            header(out, "simplews_admission_in_flight", "gauge", "Admitted requests in progress.");
+            out.append("simplews_admission_in_flight ").append(limit.getInFlight()).append('\n');
+        }
+        VirtualThreadPinningMonitor pinning = pinningMonitor;
+        if (pinning != null) {
+            header(out, "simplews_virtual_thread_pinned_total", "counter",
+                    "Virtual threads pinned to their carrier for longer than simplews.threads.pinned-threshold-ms.");
+            out.append("simplews_virtual_thread_pinned_total ").append(pinning.getPinnedCount()).append('\n');
+            header(out, "simplews_virtual_thread_pinned_seconds_total", "counter", "Time spent in those pinning episodes.");
+            out.append("simplews_virtual_thread_pinned_seconds_total ").append(seconds(pinning.getPinnedNanos())).append('\n');
+        }
+
+        header(out, "simplews_task_statuses", "gauge", "Number of (student, task) pairs by status.");
+        for (TaskStatus status : TaskStatus.values()) {
+            out.append("simplews_task_statuses{status=\"").append(status.name()).append("\"} ")
+                    .append(statusCounts.get(status.ordinal())).append('\n');
+        }
+        return out.toString();
+    }
+
+    // Changes made while the walk runs may be counted twice; the counts are exact from then on.
+    private void countStatusesOnce(TaskStatusService service) {
+        if (statusCountsReady) {
+            return;
+        }
+        synchronized (statusCounts) {
+            if (statusCountsReady) {
+                return;
+            }
+            for (int i = 0; i < statusCounts.length(); i++) {
+                statusCounts.set(i, 0);
+            }
+            try {
+                service.forEachTaskStatus((studentId, taskId, status) -> statusCounts.incrementAndGet(status.ordinal()));
+            } catch (UnsupportedOperationException e) {
+                // The store cannot be listed; the gauges then only reflect changes made since startup.
+            }
+            statusCountsReady = true;
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.append(name).append('{').append(labels).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.valueAtQuantile(quantile))).append('\n');
+        }
+        String braces = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(seconds(histogram.getTotalNanos())).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String label(Outcome outcome) {
+        return outcome.name().toLowerCase();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,60 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wires the push of status changes to subscribed clients (see {@link TaskStatusPushController}).
+ */
+@Configuration
+public class TaskStatusPushConfig {
+
+    /**
+     * Creates the small thread pool that writes queued updates and heartbeats to subscribers.
+     * Idle subscriptions hold no thread at all, and writes never wait for a slow client, so threads
+     * are only busy while events are being copied to the connections.
+     *
+     * @param dispatchThreads The number of threads.
+     * @return The executor; stopped with the application context.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService taskStatusPushExecutor(
+            @Value("${simplews.push.dispatch-threads:4}") int dispatchThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ScheduledThreadPoolExecutor(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "status-push-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the subscription registry, listening to the service, and schedules its heartbeats.
+     *
+     * @param taskStatusService      The service whose status changes are pushed.
+     * @param taskStatusPushExecutor The executor that delivers events.
+     * @param queueCapacity          The maximum number of pending pairs per subscriber.
+     * @param heartbeatMillis        The interval between keep-alive comments, in milliseconds.
+     * @param writeTimeoutMillis     How long a subscriber's connection may stop taking events before it is closed.
+     * @return The registry bean.
+     */
+    @Bean
+    public TaskStatusSubscriptions taskStatusSubscriptions(
+            TaskStatusService taskStatusService,
+            ScheduledExecutorService taskStatusPushExecutor,
+            @Value("${simplews.push.queue-capacity:256}") int queueCapacity,
+            @Value("${simplews.push.heartbeat-ms:15000}") long heartbeatMillis,
+            @Value("${simplews.push.write-timeout-ms:30000}") long writeTimeoutMillis) {
+        TaskStatusSubscriptions subscriptions = new TaskStatusSubscriptions(
+                taskStatusService, taskStatusPushExecutor, queueCapacity, writeTimeoutMillis);
+        taskStatusPushExecutor.scheduleAtFixedRate(
+                subscriptions::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        return subscriptions;
+    }
+}
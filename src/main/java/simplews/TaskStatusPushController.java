@@ -0,0 +1,225 @@
+package simplews;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-sent events endpoint that pushes status changes to clients, so they no longer have to poll.
+ * <p>
+ * The response is handled asynchronously: once the subscription is set up the request thread goes
+ * back to the pool, and an idle subscription costs only its open connection and a few small objects.
+ * The stream is written in non-blocking mode, so a client that stops reading never holds a thread.
+ */
+@RestController
+@RequestMapping("/api/tasks")
+public class TaskStatusPushController {
+
+    private static final byte[] STATUS_EVENT_START = "event:status\ndata:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final TaskStatusSubscriptions subscriptions;
+    private final long timeoutMillis;
+    private final int maxPairs;
+
+    @Autowired
+    public TaskStatusPushController(TaskStatusSubscriptions subscriptions,
+                                    @Value("${simplews.push.timeout-ms:1800000}") long timeoutMillis,
+                                    @Value("${simplews.push.max-pairs:100}") int maxPairs) {
+        this.subscriptions = subscriptions;
+        this.timeoutMillis = timeoutMillis;
+        this.maxPairs = maxPairs;
+    }
+
+    /**
+     * Handles HTTP GET requests to "/api/tasks/subscribe".
+     * Either one {@code studentId} with any number of {@code taskIds}, or as many {@code studentId}
+     * values as {@code taskIds}, paired by position. The stream starts with a "status" event holding
+     * the current status of each pair, followed by one "status" event per change, e.g.
+     * <pre>
+     *   event:status
+     *   data:{"studentId":"student123","taskId":"task001","status":"UNDER_REVIEW","label":"Under Review"}
+     * </pre>
+     * Several changes of one pair made before the client has read them are merged into the latest.
+     *
+     * @param studentIds The IDs of the students.
+     * @param taskIds    The IDs of the tasks, comma separated or as repeated parameters.
+     * @param request    The request, put into asynchronous mode.
+     * @param response   The response that carries the event stream.
+     * @throws IOException If the response stream cannot be opened.
+     */
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void subscribe(@RequestParam("studentId") List<String> studentIds,
+                          @RequestParam("taskIds") List<String> taskIds,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<TaskKey> pairs = toPairs(studentIds, taskIds);
+
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        AsyncContext async = request.startAsync();
+        async.setTimeout(timeoutMillis);
+        StreamSink sink = new StreamSink(async, response.getOutputStream());
+        TaskStatusSubscriptions.Subscriber subscriber = subscriptions.subscribe(pairs, sink);
+        sink.attach(subscriber);
+    }
+
+    private List<TaskKey> toPairs(List<String> studentIds, List<String> taskIds) {
+        if (studentIds.size() != 1 && studentIds.size() != taskIds.size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Expected one studentId, or one studentId per task ID");
+        }
+        if (taskIds.size() > maxPairs) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Subscription to " + taskIds.size() + " pairs exceeds the limit of " + maxPairs);
+        }
+        List<TaskKey> pairs = new ArrayList<>(taskIds.size());
+        for (int i = 0; i < taskIds.size(); i++) {
+            String studentId = studentIds.size() == 1 ? studentIds.get(0) : studentIds.get(i);
+            pairs.add(new TaskKey(studentId, taskIds.get(i)));
+        }
+        return pairs;
+    }
+
+    /**
+     * Writes subscriber events to an SSE response in non-blocking mode. An event is written only when
+     * the stream can take it; when it cannot, the container's write callback resumes the subscriber.
+     * Events that Tomcat could not send at once are flushed before the next one is written.
+     */
+    private final class StreamSink implements TaskStatusSubscriptions.EventSink, WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile TaskStatusSubscriptions.Subscriber subscriber;
+        // Whether written bytes may still sit in the response buffer; only used by the writing thread.
+        private boolean unflushed;
+
+        StreamSink(AsyncContext async, ServletOutputStream out) {
+            this.async = async;
+            this.out = out;
+            async.addListener(this);
+            out.setWriteListener(this);
+        }
+
+        // Called once the subscriber exists; write callbacks before that had nobody to resume.
+        void attach(TaskStatusSubscriptions.Subscriber subscriber) {
+            this.subscriber = subscriber;
+            if (closed.get()) {
+                subscriptions.unsubscribe(subscriber);
+            } else {
+                subscriber.resume();
+            }
+        }
+
+        @Override
+        public boolean isReady() throws IOException {
+            if (closed.get()) {
+                throw new IOException("Subscription closed");
+            }
+            if (!out.isReady()) {
+                return false;
+            }
+            if (unflushed) {
+                unflushed = false;
+                out.flush();
+                return out.isReady();
+            }
+            return true;
+        }
+
+        @Override
+        public void sendStatus(String studentId, String taskId, TaskStatus status) throws IOException {
+            TaskStatusJson.Buffer event = TaskStatusJson.buffer();
+            event.write(STATUS_EVENT_START);
+            TaskStatusJson.writeStatus(event, studentId, taskId, status);
+            event.write(EVENT_END);
+            write(event.array(), event.length());
+        }
+
+        @Override
+        public void sendHeartbeat() throws IOException {
+            write(HEARTBEAT, HEARTBEAT.length);
+        }
+
+        private void write(byte[] bytes, int length) throws IOException {
+            out.write(bytes, 0, length);
+            if (out.isReady()) {
+                out.flush();
+            } else {
+                unflushed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                unsubscribe();
+                try {
+                    async.complete();
+                } catch (IllegalStateException e) {
+                    // Already completed by the container, e.g. after a timeout.
+                }
+            }
+        }
+
+        private void unsubscribe() {
+            TaskStatusSubscriptions.Subscriber current = subscriber;
+            if (current != null) {
+                subscriptions.unsubscribe(current);
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            TaskStatusSubscriptions.Subscriber current = subscriber;
+            if (current != null) {
+                current.resume();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed.set(true);
+            unsubscribe();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
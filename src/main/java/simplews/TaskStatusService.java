@@ -1,26 +1,146 @@
 package simplews;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Service // Marks this class as a Spring Service bean so it can be injected
 public class TaskStatusService {
 
-    // Simulated data source for task statuses
-    // In a real application, this data would typically come from a database or external system
-    private final Map<String, String> simulatedTaskStatuses;
+    /**
+     * Message returned when a (student, task) pair is not known.
+     */
+    public static final String INVALID_STATUS_MESSAGE = "Invalid Task ID or Student ID";
+
+    // Data source for task statuses (see TaskStatusStoreConfig for how it is assembled)
+    private final TaskStatusStore taskStatusStore;
+
+    // Lookup counters and latency histogram
+    private final TaskStatusMetrics metrics;
 
+    // Last-modified stamps per pair, used for HTTP conditional requests
+    private final TaskStatusVersions versions = new TaskStatusVersions();
+
+    // Notified of every applied status change (e.g. to push it to subscribed clients)
+    private final List<TaskStatusListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a service backed by an in-memory store holding the sample task statuses.
+     */
     public TaskStatusService() {
-        // Initialize the map with sample task statuses
-        simulatedTaskStatuses = new HashMap<>();
-        // --- Ensure these key-value pairs exactly match your test expectations ---
-        simulatedTaskStatuses.put("student123-task001", "Submitted"); // Key format: studentId-taskId
-        simulatedTaskStatuses.put("student456-task002", "Under Review");
-        simulatedTaskStatuses.put("student123-task003", "Completed - Feedback Available");
-        simulatedTaskStatuses.put("student789-task004", "Submitted");
-        // ------------------------------------------------------------------------
+        this(InMemoryTaskStatusStore.withSampleData());
+    }
+
+    /**
+     * Creates a service that delegates to the given store.
+     *
+     * @param taskStatusStore The store to read statuses from.
+     */
+    public TaskStatusService(TaskStatusStore taskStatusStore) {
+        this(taskStatusStore, new TaskStatusMetrics());
+    }
+
+    /**
+     * Creates a service that delegates to the given store and records its lookups.
+     *
+     * @param taskStatusStore The store to read statuses from.
+     * @param metrics         The metrics to record lookups and status changes in.
+     */
+    @Autowired // Spring injects the TaskStatusStore and TaskStatusMetrics beans through this constructor
+    public TaskStatusService(TaskStatusStore taskStatusStore, TaskStatusMetrics metrics) {
+        this.taskStatusStore = taskStatusStore;
+        this.metrics = metrics;
+        addListener(metrics);
+    }
+
+    /**
+     * Finds the status of a task as a {@link TaskStatus} value rather than a display string.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @return The status, or null if the task/student combination is not found.
+     */
+    public TaskStatus findTaskStatus(String studentId, String taskId) {
+        long start = metrics.startLookup();
+        TaskStatus status = taskStatusStore.find(studentId, taskId);
+        metrics.recordLookup(outcomeOf(studentId, taskId, status), start);
+        return status;
+    }
+
+    /**
+     * Finds the statuses of many tasks of one student in a single pass through the store.
+     *
+     * @param studentId The ID of the student.
+     * @param taskIds   The IDs of the tasks.
+     * @return The statuses, in the order of {@code taskIds}; null where a task is not found.
+     */
+    public TaskStatus[] findTaskStatuses(String studentId, List<String> taskIds) {
+        TaskStatus[] statuses = new TaskStatus[taskIds.size()];
+        taskStatusStore.findAll(studentId, taskIds, statuses);
+        recordOutcomes(statuses);
+        return statuses;
+    }
+
+    /**
+     * Finds the statuses of many (student, task) pairs in a single pass through the store.
+     *
+     * @param keys The pairs to look up.
+     * @return The statuses, in the order of {@code keys}; null where a pair is not found.
+     */
+    public TaskStatus[] findTaskStatuses(List<TaskKey> keys) {
+        TaskStatus[] statuses = new TaskStatus[keys.size()];
+        taskStatusStore.findAll(keys, statuses);
+        recordOutcomes(statuses);
+        return statuses;
+    }
+
+    /**
+     * Finds every task of a student with its status, through the store's index by student
+     * (in time proportional to the student's tasks, not to the whole store).
+     *
+     * @param studentId The ID of the student.
+     * @return The statuses by task ID, in the order the tasks were added; empty if the student is not known.
+     * @throws UnsupportedOperationException If the store can neither query by student nor list its pairs.
+     */
+    public Map<String, TaskStatus> findTaskStatusesOfStudent(String studentId) {
+        Map<String, TaskStatus> statuses = new LinkedHashMap<>();
+        taskStatusStore.forEachTaskOf(studentId, (pairStudentId, taskId, status) -> statuses.put(taskId, status));
+        return statuses;
+    }
+
+    /**
+     * Visits every student of a task with their status, through the store's index by task.
+     * A task may have a whole cohort, so the pairs are handed over one by one instead of collected.
+     *
+     * @param taskId  The ID of the task.
+     * @param visitor Receives each pair of the task and its status, in the order the students were added.
+     * @throws UnsupportedOperationException If the store can neither query by task nor list its pairs.
+     */
+    public void forEachTaskStatusOfTask(String taskId, TaskStatusVisitor visitor) {
+        taskStatusStore.forEachStudentOf(taskId, visitor);
+    }
+
+    /**
+     * Counts the students of a task per status, e.g. how many are Under Review. The in-memory store
+     * keeps these counts up to date with every change, so this takes constant time there.
+     *
+     * @param taskId The ID of the task.
+     * @return The number of students in each status (0 for statuses nobody is in), in workflow order.
+     * @throws UnsupportedOperationException If the store can neither count by task nor list its pairs.
+     */
+    public Map<TaskStatus, Long> countTaskStatuses(String taskId) {
+        long[] counts = new long[TaskStatus.values().length];
+        taskStatusStore.countByStatus(taskId, counts);
+        Map<TaskStatus, Long> result = new EnumMap<>(TaskStatus.class);
+        for (TaskStatus status : TaskStatus.values()) {
+            result.put(status, counts[status.ordinal()]);
+        }
+        return result;
     }
 
     /**
@@ -31,19 +151,175 @@ public class TaskStatusService {
      * @return The status of the task, or "Invalid Task ID or Student ID" if the task/student combination is not found.
      */
     public String getTaskStatus(String studentId, String taskId) {
-        // Create a unique key by combining student ID and task ID
-        String key = studentId + "-" + taskId;
+        // Look up the status by the (student, task) pair; no composite key string is built
+        TaskStatus status = findTaskStatus(studentId, taskId);
 
-        // Look up the status using the created key
-        String status = simulatedTaskStatuses.get(key);
-
-        // Return the found status or the default message if the key was not in the map
+        // Return the found status or the default message if the pair is not known to the store
         if (status == null) {
             // --- Ensure this string literal exactly matches the expected value in your Invalid Task test ---
-            return "Invalid Task ID or Student ID";
+            return INVALID_STATUS_MESSAGE;
             // ---------------------------------------------------------------------------------------------
         } else {
-            return status;
+            return status.getLabel();
+        }
+    }
+
+    /**
+     * Moves a task to a new status if the transition is allowed from its current status
+     * (a new pair can only start as Submitted, then Under Review, then Completed).
+     * The check and the update happen as one atomic step, so when several graders update
+     * the same task concurrently exactly one of them applies each transition.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param newStatus The requested status.
+     * @return True if the status was changed, false if the transition is not allowed from the current status.
+     */
+    public boolean transitionTaskStatus(String studentId, String taskId, TaskStatus newStatus) {
+        TaskStatus current = taskStatusStore.find(studentId, taskId);
+        while (TaskStatus.isValidTransition(current, newStatus)) {
+            TaskStatus witness = taskStatusStore.compareAndExchange(studentId, taskId, current, newStatus);
+            if (witness == current) {
+                fireStatusChanged(studentId, taskId, current, newStatus);
+                return true;
+            }
+            // Another writer got there first; re-check the transition against the status it left behind.
+            current = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the status of a task unconditionally, bypassing the transition rules.
+     * Intended for administrative corrections and data loading.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The new status.
+     * @return The previous status, or null if the pair was new.
+     */
+    public TaskStatus setTaskStatus(String studentId, String taskId, TaskStatus status) {
+        TaskStatus previous = taskStatusStore.put(studentId, taskId, status);
+        if (previous != status) {
+            fireStatusChanged(studentId, taskId, previous, status);
+        }
+        return previous;
+    }
+
+    /**
+     * Gets when the status of a pair last changed, for {@code Last-Modified} and {@code ETag} headers.
+     * Call it before looking up the status, so the status read afterwards is at least that new.
+     * May report a change that did not affect this pair, but never misses one made through this service.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @return The time of the last change, in epoch milliseconds (the startup time if there was none).
+     */
+    public long getLastModified(String studentId, String taskId) {
+        return versions.lastModified(studentId, taskId);
+    }
+
+    /**
+     * Adds a pair only if the store does not have it yet, so an existing (newer) status is never overwritten.
+     * Used to take over pairs from another shard.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The status.
+     * @return True if the pair was added, false if the store already had it.
+     */
+    public boolean addTaskStatusIfAbsent(String studentId, String taskId, TaskStatus status) {
+        if (taskStatusStore.compareAndExchange(studentId, taskId, null, status) != null) {
+            return false;
+        }
+        fireStatusChanged(studentId, taskId, null, status);
+        return true;
+    }
+
+    /**
+     * Removes a pair if it still has the given status, e.g. after handing it over to another shard.
+     * A pair that changed in the meantime is kept, so a concurrent update is never lost.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param expected  The status the pair must still have (not null).
+     * @return True if the pair was removed.
+     * @throws UnsupportedOperationException If the store cannot remove pairs (see {@link #supportsRemoval()}).
+     */
+    public boolean removeTaskStatus(String studentId, String taskId, TaskStatus expected) {
+        if (expected == null || taskStatusStore.compareAndRemove(studentId, taskId, expected) != expected) {
+            return false;
+        }
+        fireStatusChanged(studentId, taskId, expected, null);
+        return true;
+    }
+
+    /**
+     * Checks whether pairs can be removed, i.e. whether {@link #removeTaskStatus} is supported by the store.
+     *
+     * @return Whether the store can remove pairs.
+     */
+    public boolean supportsRemoval() {
+        return taskStatusStore.supportsRemoval();
+    }
+
+    /**
+     * Replaces every pair with the contents of a fully built index (see {@link TaskStatusImporter}).
+     * Lookups never see a partly loaded store, and every pair counts as modified afterwards.
+     *
+     * @param pairs The new contents; must not be changed afterwards.
+     * @throws UnsupportedOperationException If the store cannot be replaced as a whole.
+     */
+    public void replaceAllTaskStatuses(TaskStatusIndex pairs) {
+        taskStatusStore.replaceAll(pairs);
+        versions.touchAll();
+        for (TaskStatusListener listener : listeners) {
+            listener.onAllReplaced();
+        }
+    }
+
+    /**
+     * Registers a listener that is told about every status change made through this service.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(TaskStatusListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Visits every pair in the store. Reads the whole store, so it is meant for occasional background work.
+     *
+     * @param visitor Receives each pair and its status.
+     * @throws UnsupportedOperationException If the store cannot list its pairs.
+     */
+    public void forEachTaskStatus(TaskStatusVisitor visitor) {
+        taskStatusStore.forEach(visitor);
+    }
+
+    private static TaskStatusMetrics.Outcome outcomeOf(String studentId, String taskId, TaskStatus status) {
+        if (status != null) {
+            return TaskStatusMetrics.Outcome.HIT;
+        }
+        return studentId.isEmpty() || taskId.isEmpty() ? TaskStatusMetrics.Outcome.INVALID : TaskStatusMetrics.Outcome.MISS;
+    }
+
+    // Bulk lookups count their hits and misses, but are timed per request by the endpoint instead of per pair.
+    private void recordOutcomes(TaskStatus[] statuses) {
+        int hits = 0;
+        for (TaskStatus status : statuses) {
+            if (status != null) {
+                hits++;
+            }
+        }
+        metrics.recordLookups(TaskStatusMetrics.Outcome.HIT, hits);
+        metrics.recordLookups(TaskStatusMetrics.Outcome.MISS, statuses.length - hits);
+    }
+
+    private void fireStatusChanged(String studentId, String taskId, TaskStatus previous, TaskStatus current) {
+        versions.touch(studentId, taskId);
+        for (TaskStatusListener listener : listeners) {
+            listener.onStatusChanged(studentId, taskId, previous, current);
         }
     }
-}
\ No newline at end of file
+}
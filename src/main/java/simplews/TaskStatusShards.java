@@ -0,0 +1,319 @@
+package simplews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sharded mode: the students are spread over several nodes (instances of this application) by a
+ * {@link ShardRing}, and each node stores and serves only the students it owns.
+ * {@link ShardRoutingFilter} sends requests for other students to their node, mixed batches
+ * are split here and answered by each owner, and per-task queries are gathered from every node.
+ * <p>
+ * Configured by {@code simplews.shard.*}: {@code nodes} lists the base URLs of all nodes (empty
+ * means not sharded) and {@code self} is this node's own entry. To try it locally, start several
+ * {@link Runner}s with the same node list, e.g.
+ * <pre>
+ *   java -jar simplews.jar --server.port=8081 --simplews.shard.nodes=http://localhost:8081,http://localhost:8082 --simplews.shard.self=http://localhost:8081 --simplews.shard.secret=changeme
+ *   java -jar simplews.jar --server.port=8082 --simplews.shard.nodes=http://localhost:8081,http://localhost:8082 --simplews.shard.self=http://localhost:8082 --simplews.shard.secret=changeme
+ * </pre>
+ * To add a node, start it with the new node list, then call {@code POST /api/shard/rebalance}
+ * with that list, and the secret in {@link ShardClient#SECRET_HEADER}, on every existing node:
+ * each switches to the new ring and hands over the students it no longer owns (see {@link #rebalance(List)}).
+ */
+@Component
+public class TaskStatusShards {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskStatusShards.class);
+
+    // Pairs are handed over to another node in requests of at most this many.
+    static final int TRANSFER_BATCH_SIZE = 1000;
+
+    private final TaskStatusService service;
+    private final ShardClient client;
+    private final String self;
+    private final int virtualNodes;
+    private volatile ShardRing ring;
+
+    /**
+     * Creates the shard configuration of this node.
+     *
+     * @param service      The local service, which holds this node's shard.
+     * @param client       Talks to the other nodes.
+     * @param nodes        The base URLs of all nodes, comma separated; empty if the service is not sharded.
+     * @param self         The base URL of this node, as it appears in {@code nodes}.
+     * @param virtualNodes The number of ring points per node.
+     */
+    @Autowired
+    public TaskStatusShards(TaskStatusService service, ShardClient client,
+                            @Value("${simplews.shard.nodes:}") List<String> nodes,
+                            @Value("${simplews.shard.self:}") String self,
+                            @Value("${simplews.shard.virtual-nodes:160}") int virtualNodes) {
+        this.service = service;
+        this.client = client;
+        this.self = ShardRing.normalize(self);
+        this.virtualNodes = virtualNodes;
+        List<String> configured = withoutBlanks(nodes);
+        if (!configured.isEmpty()) {
+            ShardRing initial = new ShardRing(configured, virtualNodes);
+            if (!initial.getNodes().contains(this.self)) {
+                throw new IllegalStateException("simplews.shard.self (" + self + ") is not one of simplews.shard.nodes " + configured);
+            }
+            this.ring = initial;
+            log.info("Sharded mode: this node is {} of {}", this.self, initial.getNodes());
+        }
+    }
+
+    /**
+     * Checks whether the service runs in sharded mode.
+     *
+     * @return Whether nodes are configured.
+     */
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * Gets the nodes of the current ring.
+     *
+     * @return The nodes, or an empty list if the service is not sharded.
+     */
+    public List<String> getNodes() {
+        ShardRing current = ring;
+        return current != null ? current.getNodes() : Collections.emptyList();
+    }
+
+    /**
+     * Finds the node that owns a student.
+     *
+     * @param studentId The ID of the student.
+     * @return The node, or this node if the service is not sharded.
+     */
+    public String ownerOf(String studentId) {
+        ShardRing current = ring;
+        return current != null ? current.ownerOf(studentId) : self;
+    }
+
+    /**
+     * Finds the statuses of many pairs, asking each owning node for its own pairs.
+     *
+     * @param keys The pairs to look up, for any students.
+     * @return The statuses, in the order of {@code keys}; null where a pair is not found.
+     * @throws IOException If another node cannot be reached.
+     */
+    public TaskStatus[] findTaskStatuses(List<TaskKey> keys) throws IOException {
+        ShardRing current = ring;
+        if (current == null) {
+            return service.findTaskStatuses(keys);
+        }
+        // Group the positions of the pairs by owner, keeping the request order within each group.
+        Map<String, List<Integer>> positionsByNode = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            positionsByNode.computeIfAbsent(current.ownerOf(keys.get(i).getStudentId()), node -> new ArrayList<>()).add(i);
+        }
+        TaskStatus[] statuses = new TaskStatus[keys.size()];
+        for (Map.Entry<String, List<Integer>> group : positionsByNode.entrySet()) {
+            List<Integer> positions = group.getValue();
+            List<TaskKey> groupKeys = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                groupKeys.add(keys.get(position));
+            }
+            TaskStatus[] found = group.getKey().equals(self)
+                    ? service.findTaskStatuses(groupKeys)
+                    : client.findTaskStatuses(group.getKey(), groupKeys);
+            for (int i = 0; i < found.length; i++) {
+                statuses[positions.get(i)] = found[i];
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Visits every student of a task, on every node. The other nodes are asked first, so that a node
+     * that cannot be reached fails the call before anything has been visited. Each node answers only
+     * for the students it owns, so a pair left behind on another node is not visited twice.
+     *
+     * @param taskId  The ID of the task.
+     * @param status  Only pairs with this status, or null for all of them.
+     * @param visitor Receives each pair of the task and its status: this node's first, then the others'.
+     * @throws IOException If another node cannot be reached.
+     */
+    public void forEachTaskStatusOfTask(String taskId, TaskStatus status, TaskStatusVisitor visitor) throws IOException {
+        List<TaskStatusEntry> remote = new ArrayList<>();
+        for (String node : getNodes()) {
+            if (!node.equals(self)) {
+                remote.addAll(client.findTaskStatusesOfTask(node, taskId, status));
+            }
+        }
+        forEachOwnedTaskStatusOfTask(taskId, status, visitor);
+        for (TaskStatusEntry entry : remote) {
+            visitor.visit(entry.getStudentId(), entry.getTaskId(), entry.getStatus());
+        }
+    }
+
+    /**
+     * Counts the students of a task per status, over every node.
+     *
+     * @param taskId The ID of the task.
+     * @return The number of students in each status, summed over the nodes, each counting only the students it owns.
+     * @throws IOException If another node cannot be reached.
+     */
+    public Map<TaskStatus, Long> countTaskStatuses(String taskId) throws IOException {
+        Map<TaskStatus, Long> counts = countOwnedTaskStatuses(taskId);
+        for (String node : getNodes()) {
+            if (!node.equals(self)) {
+                client.countTaskStatuses(node, taskId).forEach((status, count) -> counts.merge(status, count, Long::sum));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Visits the students of a task that this node owns. Pairs of other nodes' students that are
+     * still here (e.g. left behind by a rebalance) are skipped, as their owner answers for them.
+     *
+     * @param taskId  The ID of the task.
+     * @param status  Only pairs with this status, or null for all of them.
+     * @param visitor Receives each owned pair of the task and its status.
+     */
+    public void forEachOwnedTaskStatusOfTask(String taskId, TaskStatus status, TaskStatusVisitor visitor) {
+        ShardRing current = ring;
+        service.forEachTaskStatusOfTask(taskId, (studentId, pairTaskId, pairStatus) -> {
+            if ((status == null || pairStatus == status) && (current == null || current.ownerOf(studentId).equals(self))) {
+                visitor.visit(studentId, pairTaskId, pairStatus);
+            }
+        });
+    }
+
+    /**
+     * Counts the students of a task per status that this node owns (see {@link #forEachOwnedTaskStatusOfTask}).
+     * In sharded mode this visits the task's pairs; otherwise it is the store's own count.
+     *
+     * @param taskId The ID of the task.
+     * @return The number of owned students in each status (0 for statuses nobody is in), in workflow order.
+     */
+    public Map<TaskStatus, Long> countOwnedTaskStatuses(String taskId) {
+        if (ring == null) {
+            return service.countTaskStatuses(taskId);
+        }
+        long[] counts = new long[TaskStatus.values().length];
+        forEachOwnedTaskStatusOfTask(taskId, null, (studentId, pairTaskId, pairStatus) -> counts[pairStatus.ordinal()]++);
+        Map<TaskStatus, Long> result = new EnumMap<>(TaskStatus.class);
+        for (TaskStatus status : TaskStatus.values()) {
+            result.put(status, counts[status.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Switches to a new set of nodes and hands every local pair that now belongs to another node
+     * over to it. Requests are routed by the new ring as soon as this starts. Each pair is added on
+     * its new node only if that node does not have it yet (so a newer write there wins), and is
+     * then removed here unless it changed in the meantime. A write that was already being handled
+     * here when the ring switched can therefore stay behind on this node; it is reported in the log.
+     * <p>
+     * Safe to call again with the same nodes, e.g. after a failure: it simply hands over whatever
+     * is still here and not owned by this node.
+     *
+     * @param nodes The base URLs of all nodes of the new ring.
+     * @return The number of pairs handed over, per receiving node.
+     * @throws IOException                   If a node cannot be reached; pairs not yet handed over stay here.
+     * @throws UnsupportedOperationException If the store cannot list or remove pairs.
+     * @throws IllegalStateException         If the service is not sharded.
+     */
+    public synchronized Map<String, Integer> rebalance(List<String> nodes) throws IOException {
+        if (ring == null) {
+            throw new IllegalStateException("The service is not sharded (simplews.shard.nodes is empty)");
+        }
+        if (!service.supportsRemoval()) {
+            // Checked before switching: pairs handed over but left behind here could later shadow newer ones.
+            throw new UnsupportedOperationException("The task status store cannot remove pairs, so it cannot hand them over");
+        }
+        ShardRing next = new ShardRing(withoutBlanks(nodes), virtualNodes);
+        ring = next;
+        log.info("Rebalancing to {}", next.getNodes());
+
+        Map<String, List<TaskStatusEntry>> outgoing = new LinkedHashMap<>();
+        Map<String, Integer> moved = new LinkedHashMap<>();
+        try {
+            service.forEachTaskStatus((studentId, taskId, status) -> {
+                String owner = next.ownerOf(studentId);
+                if (!owner.equals(self)) {
+                    List<TaskStatusEntry> batch = outgoing.computeIfAbsent(owner, node -> new ArrayList<>());
+                    batch.add(new TaskStatusEntry(studentId, taskId, status));
+                    if (batch.size() >= TRANSFER_BATCH_SIZE) {
+                        handOver(owner, batch, moved);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Map.Entry<String, List<TaskStatusEntry>> batch : outgoing.entrySet()) {
+            handOver(batch.getKey(), batch.getValue(), moved);
+        }
+        log.info("Rebalanced to {}: handed over {}", next.getNodes(), moved);
+        return moved;
+    }
+
+    /**
+     * Takes over pairs handed over by another node. Pairs this node already has are left as they are.
+     *
+     * @param entries The pairs and their statuses.
+     * @return The number of pairs added.
+     */
+    public int addTaskStatuses(List<TaskStatusEntry> entries) {
+        int added = 0;
+        for (TaskStatusEntry entry : entries) {
+            if (entry.getStatus() != null
+                    && service.addTaskStatusIfAbsent(entry.getStudentId(), entry.getTaskId(), entry.getStatus())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Sends one batch, then removes the sent pairs locally; clears the batch for reuse.
+    private void handOver(String node, List<TaskStatusEntry> batch, Map<String, Integer> moved) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            client.addTaskStatuses(node, batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (TaskStatusEntry entry : batch) {
+            if (!service.removeTaskStatus(entry.getStudentId(), entry.getTaskId(), entry.getStatus())) {
+                log.warn("{} changed while it was handed over to {}; the change stays on this node", new TaskKey(entry.getStudentId(), entry.getTaskId()), node);
+            }
+        }
+        moved.merge(node, batch.size(), Integer::sum);
+        batch.clear();
+    }
+
+    private static List<String> withoutBlanks(List<String> nodes) {
+        List<String> result = new ArrayList<>();
+        for (String node : nodes) {
+            if (!node.trim().isEmpty()) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+}
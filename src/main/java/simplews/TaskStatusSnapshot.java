@@ -0,0 +1,370 @@
+package simplews;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Read-only snapshot of task statuses in a memory-mapped file, as written by {@link #write}.
+ * <p>
+ * The file holds fixed-width records and an open-addressing hash index over them, so a pair is
+ * looked up directly in the mapping (usually one index slot and one record) without loading
+ * anything onto the heap first. Opening a snapshot only maps it; pages are read by the OS on
+ * first access. Layout (integers are big-endian):
+ * <pre>
+ *   header  (64 bytes)  magic "TSSNAP01", format version, log generation, record count,
+ *                       index slots, student ID width, task ID width
+ *   index   (4 * slots) 0 for an empty slot, otherwise record number + 1
+ *   records (count * recordSize)
+ *           status ordinal (1), student ID length (1), student ID (UTF-8, padded to the width),
+ *           task ID length (1), task ID (UTF-8, padded to the width)
+ * </pre>
+ * Files larger than 2 GB are mapped in several chunks.
+ */
+final class TaskStatusSnapshot {
+
+    /**
+     * The longest ID, in UTF-8 bytes, that fits in a snapshot record.
+     */
+    static final int MAX_ID_BYTES = 255;
+
+    private static final long MAGIC = 0x5453534E41503031L; // "TSSNAP01"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int DEFAULT_CHUNK_BITS = 30;
+
+    private final Region region;
+    private final long logGeneration;
+    private final int count;
+    private final int mask;
+    private final int studentWidth;
+    private final int taskWidth;
+    private final int recordSize;
+    private final long recordsOffset;
+
+    private TaskStatusSnapshot(Region region) throws IOException {
+        this.region = region;
+        if (region.getLong(0) != MAGIC || region.getInt(8) != VERSION) {
+            throw new IOException("Not a task status snapshot (or an unsupported version)");
+        }
+        logGeneration = region.getLong(12);
+        count = region.getInt(20);
+        mask = region.getInt(24) - 1;
+        studentWidth = region.get(28) & 0xFF;
+        taskWidth = region.get(29) & 0xFF;
+        recordSize = recordSize(studentWidth, taskWidth);
+        recordsOffset = HEADER_SIZE + 4L * (mask + 1);
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file The snapshot file.
+     * @return The snapshot.
+     * @throws IOException If the file cannot be mapped or is not a snapshot.
+     */
+    static TaskStatusSnapshot open(Path file) throws IOException {
+        return open(file, DEFAULT_CHUNK_BITS);
+    }
+
+    // Tests use small chunks so that records spanning two mappings are exercised.
+    static TaskStatusSnapshot open(Path file, int chunkBits) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (raf.length() < HEADER_SIZE) {
+                throw new IOException("Truncated task status snapshot: " + file);
+            }
+            return new TaskStatusSnapshot(new Region(raf.getChannel(), FileChannel.MapMode.READ_ONLY, raf.length(), chunkBits));
+        }
+    }
+
+    /**
+     * Gets the status of a (student, task) pair.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @return The status, or null if the pair is not in the snapshot.
+     */
+    TaskStatus find(String studentId, String taskId) {
+        for (int probes = 0, i = hash(studentId, taskId) & mask; probes <= mask; probes++, i = (i + 1) & mask) {
+            int entry = region.getInt(HEADER_SIZE + 4L * i);
+            if (entry == 0) {
+                return null;
+            }
+            long record = recordsOffset + (long) (entry - 1) * recordSize;
+            if (idEquals(record + 1, studentId) && idEquals(record + 2 + studentWidth, taskId)) {
+                return TaskStatus.fromOrdinal(region.get(record));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits every pair in the snapshot, in file order.
+     *
+     * @param visitor Receives each pair and its status.
+     */
+    void forEach(TaskStatusVisitor visitor) {
+        for (int n = 0; n < count; n++) {
+            long record = recordsOffset + (long) n * recordSize;
+            visitor.visit(readId(record + 1), readId(record + 2 + studentWidth), TaskStatus.fromOrdinal(region.get(record)));
+        }
+    }
+
+    /**
+     * Gets the number of pairs in the snapshot.
+     *
+     * @return The number of pairs.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Gets the generation of the first change log that is not part of this snapshot.
+     *
+     * @return The log generation.
+     */
+    long getLogGeneration() {
+        return logGeneration;
+    }
+
+    /**
+     * Asks the OS to read the whole file into memory, so later lookups do not wait for the disk.
+     * Lookups keep working (from disk) while this runs.
+     */
+    void preload() {
+        region.load();
+    }
+
+    /**
+     * Writes a snapshot holding the pairs of {@code base} overridden and extended by {@code changes}.
+     * The file is built next to {@code file} and then moved over it atomically, so readers of the
+     * old snapshot and a crash half way through never see a partial file.
+     *
+     * @param file          The snapshot file to replace.
+     * @param logGeneration The generation of the first change log not included in the new snapshot.
+     * @param base          The previous snapshot, or null if there is none.
+     * @param changes       Changes made since {@code base}; must not change while the snapshot is written.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(Path file, long logGeneration, TaskStatusSnapshot base, TaskStatusIndex changes) throws IOException {
+        // First pass: size the file. Only pairs missing from the base snapshot add records.
+        long[] count = {base != null ? base.count : 0};
+        int[] widths = {base != null ? base.studentWidth : 0, base != null ? base.taskWidth : 0};
+        changes.forEach((studentId, taskId, status) -> {
+            if (base == null || base.find(studentId, taskId) == null) {
+                count[0]++;
+            }
+            widths[0] = Math.max(widths[0], utf8Length(studentId));
+            widths[1] = Math.max(widths[1], utf8Length(taskId));
+        });
+        if (count[0] > Integer.MAX_VALUE / 4) {
+            throw new IOException("Too many pairs for one snapshot: " + count[0]);
+        }
+        int slots = IdTable.tableSizeFor((int) count[0] * 2);
+        int recordSize = recordSize(widths[0], widths[1]);
+        long recordsOffset = HEADER_SIZE + 4L * slots;
+        long length = recordsOffset + count[0] * recordSize;
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try (RandomAccessFile raf = new RandomAccessFile(tmp.toFile(), "rw")) {
+            raf.setLength(length); // Zero-filled: an empty index and zero padding.
+            Region out = new Region(raf.getChannel(), FileChannel.MapMode.READ_WRITE, length, DEFAULT_CHUNK_BITS);
+            out.putLong(0, MAGIC);
+            out.putInt(8, VERSION);
+            out.putLong(12, logGeneration);
+            out.putInt(20, (int) count[0]);
+            out.putInt(24, slots);
+            out.put(28, (byte) widths[0]);
+            out.put(29, (byte) widths[1]);
+
+            // Second pass: the base pairs with their latest status, then the pairs added since.
+            Writer writer = new Writer(out, slots - 1, recordsOffset, recordSize, widths[0]);
+            if (base != null) {
+                base.forEach((studentId, taskId, status) -> {
+                    TaskStatus changed = changes.get(studentId, taskId);
+                    writer.add(studentId, taskId, changed != null ? changed : status);
+                });
+            }
+            changes.forEach((studentId, taskId, status) -> {
+                if (base == null || base.find(studentId, taskId) == null) {
+                    writer.add(studentId, taskId, status);
+                }
+            });
+            out.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Gets the length of an ID in UTF-8 bytes, rejecting IDs too long for a snapshot record.
+     *
+     * @param id The ID.
+     * @return The length in bytes.
+     * @throws IllegalArgumentException If the ID is longer than {@link #MAX_ID_BYTES}.
+     */
+    static int utf8Length(String id) {
+        int length = id.getBytes(StandardCharsets.UTF_8).length;
+        if (length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("ID longer than " + MAX_ID_BYTES + " bytes: " + id);
+        }
+        return length;
+    }
+
+    private static int recordSize(int studentWidth, int taskWidth) {
+        return 3 + studentWidth + taskWidth;
+    }
+
+    // Must stay the same across releases and JVMs: String.hashCode is specified, and the mix is fixed.
+    private static int hash(String studentId, String taskId) {
+        long h = studentId.hashCode() * 0x9E3779B97F4A7C15L + taskId.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    // Compares a length-prefixed ID in the file with a string, without allocating for ASCII IDs.
+    private boolean idEquals(long pos, String id) {
+        int length = region.get(pos) & 0xFF;
+        int chars = id.length();
+        if (chars > length) {
+            return false; // UTF-8 never needs fewer bytes than chars.
+        }
+        if (chars == length) {
+            int i = 0;
+            while (i < chars && id.charAt(i) < 0x80) {
+                if (region.get(pos + 1 + i) != id.charAt(i)) {
+                    return false;
+                }
+                i++;
+            }
+            if (i == chars) {
+                return true;
+            }
+        }
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (region.get(pos + 1 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readId(long pos) {
+        byte[] bytes = new byte[region.get(pos) & 0xFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = region.get(pos + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends records to a snapshot being built and enters them in its index.
+     */
+    private static final class Writer {
+        private final Region out;
+        private final int mask;
+        private final long recordsOffset;
+        private final int recordSize;
+        private final int studentWidth;
+        private int next;
+
+        Writer(Region out, int mask, long recordsOffset, int recordSize, int studentWidth) {
+            this.out = out;
+            this.mask = mask;
+            this.recordsOffset = recordsOffset;
+            this.recordSize = recordSize;
+            this.studentWidth = studentWidth;
+        }
+
+        void add(String studentId, String taskId, TaskStatus status) {
+            long record = recordsOffset + (long) next * recordSize;
+            out.put(record, (byte) status.ordinal());
+            putId(record + 1, studentId);
+            putId(record + 2 + studentWidth, taskId);
+
+            int i = hash(studentId, taskId) & mask;
+            while (out.getInt(HEADER_SIZE + 4L * i) != 0) {
+                i = (i + 1) & mask;
+            }
+            out.putInt(HEADER_SIZE + 4L * i, ++next);
+        }
+
+        private void putId(long pos, String id) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            out.put(pos, (byte) bytes.length);
+            for (int i = 0; i < bytes.length; i++) {
+                out.put(pos + 1 + i, bytes[i]);
+            }
+        }
+    }
+
+    /**
+     * A file mapped as consecutive chunks of 2^chunkBits bytes, addressed by long offsets.
+     * Ints are only read at 4-byte aligned offsets, so they never straddle two chunks.
+     */
+    private static final class Region {
+        private final MappedByteBuffer[] chunks;
+        private final int chunkBits;
+        private final int chunkMask;
+
+        Region(FileChannel channel, FileChannel.MapMode mode, long length, int chunkBits) throws IOException {
+            this.chunkBits = chunkBits;
+            this.chunkMask = (1 << chunkBits) - 1;
+            long chunkSize = 1L << chunkBits;
+            chunks = new MappedByteBuffer[(int) ((length + chunkSize - 1) >>> chunkBits)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << chunkBits;
+                chunks[i] = channel.map(mode, start, Math.min(chunkSize, length - start));
+            }
+        }
+
+        byte get(long pos) {
+            return chunks[(int) (pos >>> chunkBits)].get((int) pos & chunkMask);
+        }
+
+        int getInt(long pos) {
+            return chunks[(int) (pos >>> chunkBits)].getInt((int) pos & chunkMask);
+        }
+
+        long getLong(long pos) {
+            return (long) getInt(pos) << 32 | getInt(pos + 4) & 0xFFFFFFFFL;
+        }
+
+        void put(long pos, byte b) {
+            chunks[(int) (pos >>> chunkBits)].put((int) pos & chunkMask, b);
+        }
+
+        void putInt(long pos, int value) {
+            chunks[(int) (pos >>> chunkBits)].putInt((int) pos & chunkMask, value);
+        }
+
+        void putLong(long pos, long value) {
+            putInt(pos, (int) (value >>> 32));
+            putInt(pos + 4, (int) value);
+        }
+
+        void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+
+        void load() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.load();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package simplews;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Backing store for task statuses that {@link TaskStatusService} delegates to.
+ * Implementations may hold the data in memory, read it from a database or an external
+ * system, or decorate another store (for example {@link CachingTaskStatusStore}).
+ */
+public interface TaskStatusStore {
+
+    /**
+     * Finds the status of a (student, task) pair.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @return The status, or null if the pair is not known to the store.
+     */
+    TaskStatus find(String studentId, String taskId);
+
+    /**
+     * Finds the statuses of many tasks of one student in one call.
+     * Stores backed by a remote system should override this to fetch all of them in a single round-trip.
+     *
+     * @param studentId The ID of the student.
+     * @param taskIds   The IDs of the tasks.
+     * @param out       Receives the status of {@code taskIds.get(i)} at index i (null if unknown).
+     */
+    default void findAll(String studentId, List<String> taskIds, TaskStatus[] out) {
+        for (int i = 0; i < taskIds.size(); i++) {
+            out[i] = find(studentId, taskIds.get(i));
+        }
+    }
+
+    /**
+     * Finds the statuses of many (student, task) pairs in one call.
+     *
+     * @param keys The pairs to look up.
+     * @param out  Receives the status of {@code keys.get(i)} at index i (null if unknown).
+     */
+    default void findAll(List<TaskKey> keys, TaskStatus[] out) {
+        for (int i = 0; i < keys.size(); i++) {
+            TaskKey key = keys.get(i);
+            out[i] = find(key.getStudentId(), key.getTaskId());
+        }
+    }
+
+    /**
+     * Sets the status of a (student, task) pair unconditionally, adding the pair if it is new.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The new status.
+     * @return The previous status, or null if the pair was new.
+     */
+    TaskStatus put(String studentId, String taskId, TaskStatus status);
+
+    /**
+     * Atomically sets the status of a pair if it currently has the expected status.
+     * Implementations must make this a single atomic step so concurrent writers cannot lose updates.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param expected  The status the pair must have, or null if the pair must not exist yet.
+     * @param update    The new status.
+     * @return The status witnessed by the operation; the update was applied if and only if it is {@code expected}.
+     */
+    TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update);
+
+    /**
+     * Atomically removes a pair if it currently has the expected status, e.g. after it has been
+     * handed over to the shard that now owns it.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param expected  The status the pair must have.
+     * @return The status witnessed by the operation; the pair was removed if and only if it is {@code expected}.
+     * @throws UnsupportedOperationException If the store cannot remove pairs (see {@link #supportsRemoval()}).
+     */
+    default TaskStatus compareAndRemove(String studentId, String taskId, TaskStatus expected) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot remove pairs");
+    }
+
+    /**
+     * Checks whether {@link #compareAndRemove(String, String, TaskStatus)} is supported.
+     *
+     * @return Whether the store can remove pairs.
+     */
+    default boolean supportsRemoval() {
+        return false;
+    }
+
+    /**
+     * Visits every pair in the store, in no particular order. Pairs changed during the walk may be
+     * visited with either their old or their new status. This reads the whole store, so it is meant
+     * for occasional background work, not for request handling.
+     *
+     * @param visitor Receives each pair and its status.
+     * @throws UnsupportedOperationException If the store cannot list its pairs.
+     */
+    default void forEach(TaskStatusVisitor visitor) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot list its pairs");
+    }
+
+    /**
+     * Visits the tasks of one student. Stores with a secondary index by student should override
+     * this; by default the whole store is walked.
+     *
+     * @param studentId The ID of the student.
+     * @param visitor   Receives each pair of the student and its status.
+     * @throws UnsupportedOperationException If the store cannot list its pairs.
+     */
+    default void forEachTaskOf(String studentId, TaskStatusVisitor visitor) {
+        forEach((pairStudentId, taskId, status) -> {
+            if (pairStudentId.equals(studentId)) {
+                visitor.visit(pairStudentId, taskId, status);
+            }
+        });
+    }
+
+    /**
+     * Visits the students of one task. Stores with a secondary index by task should override
+     * this; by default the whole store is walked.
+     *
+     * @param taskId  The ID of the task.
+     * @param visitor Receives each pair of the task and its status.
+     * @throws UnsupportedOperationException If the store cannot list its pairs.
+     */
+    default void forEachStudentOf(String taskId, TaskStatusVisitor visitor) {
+        forEach((studentId, pairTaskId, status) -> {
+            if (pairTaskId.equals(taskId)) {
+                visitor.visit(studentId, pairTaskId, status);
+            }
+        });
+    }
+
+    /**
+     * Counts the pairs of one task per status. Stores that keep per-task counts should override
+     * this; by default the whole store is walked.
+     *
+     * @param taskId The ID of the task.
+     * @param out    Receives the number of pairs with each status, indexed by {@link TaskStatus#ordinal()}.
+     * @throws UnsupportedOperationException If the store cannot list its pairs.
+     */
+    default void countByStatus(String taskId, long[] out) {
+        Arrays.fill(out, 0);
+        forEachStudentOf(taskId, (studentId, pairTaskId, status) -> out[status.ordinal()]++);
+    }
+
+    /**
+     * Replaces every pair in the store with the pairs of a fully built index, e.g. after a bulk
+     * import. Readers see either the old pairs or the new ones, never a partly loaded store;
+     * writes made while the replacement is prepared are overwritten by it.
+     *
+     * @param pairs The new contents; the store may keep using the index, so it must not be changed afterwards.
+     * @throws UnsupportedOperationException If the store cannot be replaced as a whole.
+     */
+    default void replaceAll(TaskStatusIndex pairs) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot replace its pairs");
+    }
+}
@@ -0,0 +1,118 @@
+package simplews;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Assembles the {@link TaskStatusStore} used by {@link TaskStatusService} from application.properties.
+ * In sharded mode (see {@link TaskStatusShards}) a new store is seeded only with the sample pairs
+ * of the students this node owns, so that no pair exists on two nodes.
+ */
+@Configuration
+public class TaskStatusStoreConfig {
+
+    /**
+     * Creates the task status store: the persistent store if enabled (otherwise the in-memory sample
+     * data), optionally slowed down to simulate a remote backend, and optionally behind a read-through cache.
+     *
+     * @param persistentStore     The persistent store, if {@code simplews.store.persistence.enabled} is set.
+     * @param shardNodes          The base URLs of all nodes; empty if the service is not sharded.
+     * @param shardSelf           The base URL of this node.
+     * @param shardVirtualNodes   The number of ring points per node.
+     * @param simulatedLatencyMs  Delay added to every backend call, in milliseconds (0 for none).
+     * @param simulatedCapacity   Backend calls served at once when simulating latency (0 for unlimited).
+     * @param cacheEnabled        Whether to put a {@link CachingTaskStatusStore} in front of the backing store.
+     * @param cacheMaxSize        The maximum number of cached pairs.
+     * @param cacheTtlMillis      How long a found status stays cached.
+     * @param cacheNegativeTtlMs  How long an unknown pair stays cached.
+     * @return The store bean.
+     */
+    @Bean
+    @Primary
+    public TaskStatusStore taskStatusStore(
+            ObjectProvider<PersistentTaskStatusStore> persistentStore,
+            @Value("${simplews.shard.nodes:}") List<String> shardNodes,
+            @Value("${simplews.shard.self:}") String shardSelf,
+            @Value("${simplews.shard.virtual-nodes:160}") int shardVirtualNodes,
+            @Value("${simplews.store.simulated-latency-ms:0}") long simulatedLatencyMs,
+            @Value("${simplews.store.simulated-capacity:0}") int simulatedCapacity,
+            @Value("${simplews.store.cache.enabled:false}") boolean cacheEnabled,
+            @Value("${simplews.store.cache.max-size:100000}") int cacheMaxSize,
+            @Value("${simplews.store.cache.ttl-ms:5000}") long cacheTtlMillis,
+            @Value("${simplews.store.cache.negative-ttl-ms:1000}") long cacheNegativeTtlMs) {
+        TaskStatusStore store = persistentStore.getIfAvailable();
+        if (store == null) {
+            InMemoryTaskStatusStore sampleStore = new InMemoryTaskStatusStore();
+            InMemoryTaskStatusStore.putSampleData(sampleStore, ownedStudents(shardNodes, shardSelf, shardVirtualNodes));
+            store = sampleStore;
+        }
+        if (simulatedLatencyMs > 0) {
+            store = new SimulatedLatencyTaskStatusStore(store, simulatedLatencyMs, simulatedCapacity);
+        }
+        if (cacheEnabled) {
+            store = new CachingTaskStatusStore(store, cacheMaxSize, cacheTtlMillis, cacheNegativeTtlMs);
+        }
+        return store;
+    }
+
+    /**
+     * Opens the persistent store: a memory-mapped snapshot plus a change log, kept in a directory.
+     * A brand-new store starts out with the sample data (of this node's students, in sharded mode).
+     *
+     * @param directory           The directory holding the snapshot and change logs.
+     * @param compactAfterChanges The number of logged changes that triggers a new snapshot.
+     * @param syncWrites          Whether every write waits until it is on disk.
+     * @param preload             Whether to read the snapshot into memory in the background after opening it.
+     * @param shardNodes          The base URLs of all nodes; empty if the service is not sharded.
+     * @param shardSelf           The base URL of this node.
+     * @param shardVirtualNodes   The number of ring points per node.
+     * @return The store; closed with the application context.
+     * @throws IOException If the store cannot be opened.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "simplews.store.persistence.enabled", havingValue = "true")
+    public PersistentTaskStatusStore persistentTaskStatusStore(
+            @Value("${simplews.store.persistence.directory:data}") String directory,
+            @Value("${simplews.store.persistence.compact-after-changes:1000000}") long compactAfterChanges,
+            @Value("${simplews.store.persistence.sync-writes:false}") boolean syncWrites,
+            @Value("${simplews.store.persistence.preload:true}") boolean preload,
+            @Value("${simplews.shard.nodes:}") List<String> shardNodes,
+            @Value("${simplews.shard.self:}") String shardSelf,
+            @Value("${simplews.shard.virtual-nodes:160}") int shardVirtualNodes) throws IOException {
+        PersistentTaskStatusStore store = PersistentTaskStatusStore.open(Paths.get(directory), compactAfterChanges, syncWrites);
+        if (store.isEmpty()) {
+            InMemoryTaskStatusStore.putSampleData(store, ownedStudents(shardNodes, shardSelf, shardVirtualNodes));
+        }
+        if (preload) {
+            store.preloadInBackground();
+        }
+        return store;
+    }
+
+    // The students whose sample pairs this node seeds: all of them unless sharded. The store is built
+    // before TaskStatusShards (which needs the service), so the initial ring is computed here the same way.
+    private static Predicate<String> ownedStudents(List<String> nodes, String self, int virtualNodes) {
+        List<String> configured = new ArrayList<>();
+        for (String node : nodes) {
+            if (!node.trim().isEmpty()) {
+                configured.add(node);
+            }
+        }
+        if (configured.isEmpty()) {
+            return studentId -> true;
+        }
+        ShardRing ring = new ShardRing(configured, virtualNodes);
+        String normalizedSelf = ShardRing.normalize(self);
+        return studentId -> ring.ownerOf(studentId).equals(normalizedSelf);
+    }
+}
@@ -0,0 +1,367 @@
+package simplews;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of clients subscribed to status changes of (student, task) pairs, and the fan-out
+ * that delivers those changes to them.
+ * <p>
+ * Each subscriber has a small bounded queue of pending updates keyed by pair. A newer update for
+ * a pair that is still queued replaces the older one (coalescing), and when the queue is full the
+ * oldest pending pair is dropped, so a slow consumer can never make the server buffer an unbounded
+ * backlog. Queues are drained on a dispatch executor, never on the thread that changed the status,
+ * and a subscriber whose connection fails is removed.
+ * <p>
+ * Writes never wait for a client: an event is only written when the subscriber's {@link EventSink}
+ * is ready to take it without blocking, and otherwise the updates stay queued (and coalesce) until the
+ * sink calls {@link Subscriber#resume()}. A subscriber whose sink has not been ready for longer than
+ * the write timeout is closed, so stalled clients cannot hold on to dispatch threads or memory.
+ * <p>
+ * A new subscriber is first sent the current status of each of its pairs, then only the changes
+ * that {@link TaskStatusService} actually applies.
+ */
+public class TaskStatusSubscriptions implements TaskStatusListener {
+
+    private final TaskStatusService taskStatusService;
+    private final Executor dispatchExecutor;
+    private final int queueCapacity;
+    private final long writeTimeoutNanos;
+    private final LongSupplier ticker;
+
+    private final ConcurrentHashMap<TaskKey, Set<Subscriber>> subscribersByPair = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+
+    /**
+     * Creates a subscription registry and registers it as a listener of the service.
+     *
+     * @param taskStatusService The service whose status changes are pushed.
+     * @param dispatchExecutor Runs the delivery of queued updates to subscribers.
+     * @param queueCapacity    The maximum number of pairs with a pending update per subscriber.
+     * @param writeTimeoutMs   How long a subscriber's sink may stay unable to take an event before the subscriber
+     *                         is closed, in milliseconds.
+     */
+    public TaskStatusSubscriptions(TaskStatusService taskStatusService, Executor dispatchExecutor, int queueCapacity,
+                                   long writeTimeoutMs) {
+        this(taskStatusService, dispatchExecutor, queueCapacity, writeTimeoutMs, System::nanoTime);
+    }
+
+    TaskStatusSubscriptions(TaskStatusService taskStatusService, Executor dispatchExecutor, int queueCapacity,
+                            long writeTimeoutMs, LongSupplier ticker) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.taskStatusService = taskStatusService;
+        this.dispatchExecutor = dispatchExecutor;
+        this.queueCapacity = queueCapacity;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        this.ticker = ticker;
+        taskStatusService.addListener(this);
+    }
+
+    /**
+     * Registers a subscriber for a set of pairs and queues the current status of each pair for it.
+     *
+     * @param pairs The pairs the subscriber is interested in.
+     * @param sink  Where the subscriber's events are written.
+     * @return The subscriber, to be passed to {@link #unsubscribe(Subscriber)} when the connection ends.
+     */
+    public Subscriber subscribe(List<TaskKey> pairs, EventSink sink) {
+        Subscriber subscriber = new Subscriber(pairs, sink);
+        subscribers.add(subscriber);
+        for (TaskKey pair : pairs) {
+            subscribersByPair.computeIfAbsent(pair, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        // Read the current statuses only after registering, so no change can fall between the read and the
+        // registration. A change that arrives while this runs is newer than the read and must win over it.
+        TaskStatus[] current = taskStatusService.findTaskStatuses(subscriber.pairs);
+        subscriber.seed(current);
+        return subscriber;
+    }
+
+    /**
+     * Removes a subscriber from every pair it was registered for. Safe to call more than once.
+     *
+     * @param subscriber The subscriber to remove.
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (TaskKey pair : subscriber.pairs) {
+            subscribersByPair.computeIfPresent(pair, (k, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    @Override
+    public void onStatusChanged(String studentId, String taskId, TaskStatus previous, TaskStatus current) {
+        // The common case is a change nobody is watching; only allocate a key lookup when someone might be.
+        if (subscribersByPair.isEmpty()) {
+            return;
+        }
+        TaskKey pair = new TaskKey(studentId, taskId);
+        Set<Subscriber> interested = subscribersByPair.get(pair);
+        if (interested == null) {
+            return;
+        }
+        for (Subscriber subscriber : interested) {
+            subscriber.offer(pair, current);
+        }
+    }
+
+    /**
+     * Sends every subscriber the status each of its pairs has after a bulk replacement.
+     * Pairs whose status did not change are sent again too; clients treat updates as idempotent.
+     */
+    @Override
+    public void onAllReplaced() {
+        for (Subscriber subscriber : subscribers) {
+            TaskStatus[] current = taskStatusService.findTaskStatuses(subscriber.pairs);
+            for (int i = 0; i < current.length; i++) {
+                subscriber.offer(subscriber.pairs.get(i), current[i]);
+            }
+        }
+    }
+
+    /**
+     * Sends a keep-alive comment to every subscriber, so proxies keep idle connections open
+     * and dead connections are detected and removed. Subscribers whose sink has not been ready
+     * for longer than the write timeout are closed instead.
+     */
+    public void sendHeartbeats() {
+        long now = ticker.getAsLong();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.stalled && now - subscriber.stalledSince > writeTimeoutNanos) {
+                stalled.increment();
+                subscriber.fail();
+            } else {
+                subscriber.heartbeat();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Gets the number of updates replaced by a newer update for the same pair before they were sent.
+     *
+     * @return The number of coalesced updates.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Gets the number of updates discarded because a subscriber's queue was full.
+     *
+     * @return The number of dropped updates.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the number of subscribers closed because their connection stopped taking events.
+     *
+     * @return The number of stalled subscribers closed.
+     */
+    public long getStalledCount() {
+        return stalled.sum();
+    }
+
+    /**
+     * Destination of a subscriber's events, typically an SSE connection. Its methods are called by
+     * one thread at a time and must never wait for the client.
+     */
+    public interface EventSink {
+
+        /**
+         * Tells whether an event can be written now. When it returns false, the sink calls
+         * {@link Subscriber#resume()} once it can take events again.
+         *
+         * @return True if the next event can be written without waiting.
+         * @throws IOException If the connection is broken.
+         */
+        boolean isReady() throws IOException;
+
+        /**
+         * Writes one status event. Only called after {@link #isReady()} returned true.
+         *
+         * @param studentId The ID of the student.
+         * @param taskId    The ID of the task.
+         * @param status    The new status.
+         * @throws IOException If the connection is broken.
+         */
+        void sendStatus(String studentId, String taskId, TaskStatus status) throws IOException;
+
+        /**
+         * Writes a keep-alive that carries no data. Only called after {@link #isReady()} returned true.
+         *
+         * @throws IOException If the connection is broken.
+         */
+        void sendHeartbeat() throws IOException;
+
+        /**
+         * Closes the connection after a failure. May be called more than once.
+         */
+        void close();
+    }
+
+    /**
+     * One connected client and its queue of pending updates.
+     */
+    public final class Subscriber {
+        private final List<TaskKey> pairs;
+        private final EventSink sink;
+        // Pending updates in arrival order; guarded by 'this'.
+        private final LinkedHashMap<TaskKey, TaskStatus> pending = new LinkedHashMap<>();
+        // Pairs that received a live update before the initial statuses were queued; guarded by 'this'.
+        private Set<TaskKey> updatedBeforeSeed = new HashSet<>();
+        // Whether a keep-alive should be written once nothing else is pending; guarded by 'this'.
+        private boolean heartbeatDue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Set while the sink is not ready, with the time it stopped being ready.
+        private volatile boolean stalled;
+        private volatile long stalledSince;
+
+        private Subscriber(List<TaskKey> pairs, EventSink sink) {
+            this.pairs = new ArrayList<>(pairs);
+            this.sink = sink;
+        }
+
+        private void seed(TaskStatus[] current) {
+            synchronized (this) {
+                for (int i = 0; i < pairs.size(); i++) {
+                    TaskKey pair = pairs.get(i);
+                    if (!updatedBeforeSeed.contains(pair)) {
+                        enqueue(pair, current[i]);
+                    }
+                }
+                updatedBeforeSeed = null;
+            }
+            scheduleDrain();
+        }
+
+        private void offer(TaskKey pair, TaskStatus status) {
+            synchronized (this) {
+                if (updatedBeforeSeed != null) {
+                    updatedBeforeSeed.add(pair);
+                }
+                enqueue(pair, status);
+            }
+            scheduleDrain();
+        }
+
+        // Caller holds the lock on 'this'.
+        private void enqueue(TaskKey pair, TaskStatus status) {
+            if (pending.containsKey(pair)) {
+                pending.put(pair, status);
+                coalesced.increment();
+            } else {
+                if (pending.size() >= queueCapacity) {
+                    Iterator<TaskKey> eldest = pending.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    dropped.increment();
+                }
+                pending.put(pair, status);
+            }
+        }
+
+        private void heartbeat() {
+            synchronized (this) {
+                heartbeatDue = true;
+            }
+            scheduleDrain();
+        }
+
+        /**
+         * Continues delivery after the sink reported that it was not ready. Called by the sink.
+         */
+        public void resume() {
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                dispatchExecutor.execute(this::drain);
+            }
+        }
+
+        // Writes pending events, oldest first, for as long as the sink takes them without waiting.
+        private void drain() {
+            try {
+                while (true) {
+                    if (!sink.isReady()) {
+                        if (!stalled) {
+                            stalledSince = ticker.getAsLong();
+                            stalled = true;
+                        }
+                        draining.set(false);
+                        // The sink may have become ready, and called resume(), before the flag was cleared.
+                        if (!sink.isReady() || !draining.compareAndSet(false, true)) {
+                            return;
+                        }
+                    }
+                    stalled = false;
+                    TaskKey pair = null;
+                    TaskStatus status = null;
+                    synchronized (this) {
+                        if (!pending.isEmpty()) {
+                            Iterator<Map.Entry<TaskKey, TaskStatus>> eldest = pending.entrySet().iterator();
+                            Map.Entry<TaskKey, TaskStatus> update = eldest.next();
+                            pair = update.getKey();
+                            status = update.getValue();
+                            eldest.remove();
+                            heartbeatDue = false; // The event keeps the connection alive just as well.
+                        } else if (heartbeatDue) {
+                            heartbeatDue = false;
+                        } else {
+                            draining.set(false);
+                            return;
+                        }
+                    }
+                    if (pair != null) {
+                        sink.sendStatus(pair.getStudentId(), pair.getTaskId(), status);
+                        delivered.increment();
+                    } else {
+                        sink.sendHeartbeat();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                fail();
+            }
+        }
+
+        private void fail() {
+            unsubscribe(this);
+            sink.close();
+        }
+    }
+}
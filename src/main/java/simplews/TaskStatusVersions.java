@@ -0,0 +1,73 @@
+package simplews;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Last-modified stamps for (student, task) pairs, used as HTTP validators ({@code ETag} and
+ * {@code Last-Modified}) so that clients polling an unchanged status get a 304 instead of the page.
+ * <p>
+ * Pairs are hashed into a fixed table of stamps rather than tracked one by one, so the memory used
+ * does not grow with the number of pairs. Pairs that share a slot also share a stamp: a change to
+ * one makes the others look modified too, which only costs a full response, never a stale 304.
+ * Pairs that have not changed since startup (or since the store was last replaced as a whole)
+ * report that time.
+ */
+final class TaskStatusVersions {
+
+    private static final int SLOTS = 1 << 16;
+
+    // Every pair is at least this new: the startup time, or the last time all pairs were replaced.
+    private volatile long allModifiedMillis = System.currentTimeMillis();
+    private final AtomicLongArray stamps = new AtomicLongArray(SLOTS);
+
+    /**
+     * Marks a pair as modified now. Must be called after the change is visible in the store,
+     * so that a reader who sees the new stamp also sees the new status.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     */
+    void touch(String studentId, String taskId) {
+        stamps.accumulateAndGet(slotOf(studentId, taskId), System.currentTimeMillis(), Math::max);
+    }
+
+    /**
+     * Marks every pair as modified now, e.g. after a bulk import. Must be called after the new
+     * pairs are visible in the store.
+     */
+    void touchAll() {
+        allModifiedMillis = Math.max(allModifiedMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets when a pair was last modified. Read it before reading the status, so the status is
+     * at least as new as the stamp.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @return The time of the last change, in epoch milliseconds; the startup time if it has not changed.
+     */
+    long lastModified(String studentId, String taskId) {
+        return Math.max(allModifiedMillis, stamps.get(slotOf(studentId, taskId)));
+    }
+
+    /**
+     * Builds a strong entity tag for a status response. The status is part of the tag, so two
+     * responses with the same tag always show the same status.
+     *
+     * @param status       The status, or null for an unknown pair.
+     * @param lastModified The stamp from {@link #lastModified(String, String)}.
+     * @return The quoted tag, e.g. {@code "18f3a2c9e10-1"}.
+     */
+    static String etag(TaskStatus status, long lastModified) {
+        return "\"" + Long.toHexString(lastModified) + '-' + (status != null ? status.ordinal() : "x") + "\"";
+    }
+
+    private static int slotOf(String studentId, String taskId) {
+        long h = studentId.hashCode() * 0x9E3779B97F4A7C15L + taskId.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & (SLOTS - 1);
+    }
+}
@@ -0,0 +1,253 @@
+package simplews;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled replacement for taskStatusView.jsp, enabled with {@code simplews.view.mode=precompiled}.
+ * Being a {@link View} bean named {@code taskStatusView}, it is found by Spring's bean-name view
+ * resolver before the JSP resolver is asked.
+ * <p>
+ * The page comes from the template simplews/taskStatusView.html: the markup the JSP produces, with
+ * {@code ${studentId}}, {@code ${taskId}}, {@code ${statusClass}} and {@code ${statusText}} where its
+ * EL expressions were. The template is split at those markers once, and its fragments are kept as
+ * UTF-8 bytes. The CSS class and status line of each status label come from a lookup table, also
+ * encoded once, instead of a chain of string comparisons. Rendering copies fragments and writes the
+ * escaped IDs into a per-thread buffer, then sends it in one write with its length.
+ * <p>
+ * For IDs without HTML-special characters the page is byte-for-byte what the JSP renders. Unlike the
+ * JSP, which writes the IDs as they are, this view escapes {@code & < > " '}.
+ */
+@Component("taskStatusView")
+@ConditionalOnProperty(name = "simplews.view.mode", havingValue = "precompiled")
+public class TaskStatusView implements View {
+
+    private static final String TEMPLATE = "taskStatusView.html";
+    private static final Pattern MARKER = Pattern.compile("\\$\\{(studentId|taskId|statusClass|statusText)}");
+    private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] AMP = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LT = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GT = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOT = "&#34;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] APOS = "&#39;".getBytes(StandardCharsets.US_ASCII);
+
+    // The CSS class the JSP picks for each status label, with the line it shows for it.
+    private static final Map<String, StatusBytes> STATUSES = new HashMap<>();
+
+    static {
+        STATUSES.put(TaskStatus.SUBMITTED.getLabel(), new StatusBytes("submitted", TaskStatus.SUBMITTED.getLabel()));
+        STATUSES.put(TaskStatus.UNDER_REVIEW.getLabel(), new StatusBytes("under-review", TaskStatus.UNDER_REVIEW.getLabel()));
+        STATUSES.put(TaskStatus.COMPLETED.getLabel(), new StatusBytes("completed", TaskStatus.COMPLETED.getLabel()));
+        STATUSES.put(TaskStatusService.INVALID_STATUS_MESSAGE, new StatusBytes("invalid", TaskStatusService.INVALID_STATUS_MESSAGE));
+    }
+
+    // fragments[i] is written before slots[i]; the last fragment has no slot after it.
+    private final byte[][] fragments;
+    private final Slot[] slots;
+
+    /**
+     * Loads and splits the template.
+     */
+    public TaskStatusView() {
+        String template = readTemplate();
+        List<byte[]> parts = new ArrayList<>();
+        List<Slot> markers = new ArrayList<>();
+        Matcher matcher = MARKER.matcher(template);
+        int end = 0;
+        while (matcher.find()) {
+            parts.add(template.substring(end, matcher.start()).getBytes(StandardCharsets.UTF_8));
+            markers.add(slotOf(matcher.group(1)));
+            end = matcher.end();
+        }
+        parts.add(template.substring(end).getBytes(StandardCharsets.UTF_8));
+        this.fragments = parts.toArray(new byte[0][]);
+        this.slots = markers.toArray(new Slot[0]);
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    /**
+     * Renders the page from the model attributes the JSP reads: {@code taskStatus} (a status label,
+     * or null for the empty form), {@code queriedStudentId} and {@code queriedTaskId}.
+     *
+     * @param model    The model.
+     * @param request  The request.
+     * @param response The response the page is written to.
+     * @throws IOException If the page cannot be written.
+     */
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        TaskStatusJson.Buffer out = render(model);
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(out.length());
+        response.getOutputStream().write(out.array(), 0, out.length());
+    }
+
+    /**
+     * Renders the empty form, which the JSP renders for /taskStatus.
+     *
+     * @return The page as UTF-8 bytes.
+     */
+    byte[] renderForm() {
+        TaskStatusJson.Buffer out = render(Collections.emptyMap());
+        return Arrays.copyOf(out.array(), out.length());
+    }
+
+    /**
+     * Renders the page into the calling thread's buffer, which stays valid until the thread renders
+     * again.
+     *
+     * @param model The model attributes.
+     * @return The buffer holding the page.
+     */
+    TaskStatusJson.Buffer render(Map<String, ?> model) {
+        Object status = model.get("taskStatus");
+        Object studentId = model.get("queriedStudentId");
+        Object taskId = model.get("queriedTaskId");
+        StatusBytes known = status != null ? STATUSES.get(status.toString()) : null;
+
+        // The pooled buffer of the JSON writer; a page is just another sequence of bytes.
+        TaskStatusJson.Buffer out = TaskStatusJson.buffer();
+        for (int i = 0; i < slots.length; i++) {
+            out.write(fragments[i]);
+            switch (slots[i]) {
+                case STUDENT_ID:
+                    writeEscaped(out, studentId);
+                    break;
+                case TASK_ID:
+                    writeEscaped(out, taskId);
+                    break;
+                case STATUS_CLASS:
+                    out.write(known != null ? known.cssClass : EMPTY);
+                    break;
+                default:
+                    if (known != null) {
+                        out.write(known.text);
+                    } else if (status != null) {
+                        writeEscaped(out, "Status: " + status);
+                    }
+                    break;
+            }
+        }
+        out.write(fragments[slots.length]);
+        return out;
+    }
+
+    // Escapes a value as HTML text or attribute content and encodes it as UTF-8; null is written as nothing.
+    private static void writeEscaped(TaskStatusJson.Buffer out, Object value) {
+        if (value == null) {
+            return;
+        }
+        String s = value.toString();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    out.write(AMP);
+                    break;
+                case '<':
+                    out.write(LT);
+                    break;
+                case '>':
+                    out.write(GT);
+                    break;
+                case '"':
+                    out.write(QUOT);
+                    break;
+                case '\'':
+                    out.write(APOS);
+                    break;
+                default:
+                    if (c < 0x80) {
+                        out.write(c);
+                    } else if (c < 0x800) {
+                        out.write(0xC0 | c >> 6);
+                        out.write(0x80 | c & 0x3F);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                            && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, s.charAt(++i));
+                        out.write(0xF0 | cp >> 18);
+                        out.write(0x80 | cp >> 12 & 0x3F);
+                        out.write(0x80 | cp >> 6 & 0x3F);
+                        out.write(0x80 | cp & 0x3F);
+                    } else if (Character.isSurrogate(c)) {
+                        out.write('?'); // Unpaired surrogate; not representable in UTF-8.
+                    } else {
+                        out.write(0xE0 | c >> 12);
+                        out.write(0x80 | c >> 6 & 0x3F);
+                        out.write(0x80 | c & 0x3F);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static Slot slotOf(String marker) {
+        switch (marker) {
+            case "studentId":
+                return Slot.STUDENT_ID;
+            case "taskId":
+                return Slot.TASK_ID;
+            case "statusClass":
+                return Slot.STATUS_CLASS;
+            default:
+                return Slot.STATUS_TEXT;
+        }
+    }
+
+    private static String readTemplate() {
+        try (InputStream in = TaskStatusView.class.getResourceAsStream(TEMPLATE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing view template " + TEMPLATE);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // What goes where a marker was.
+    private enum Slot {
+        STUDENT_ID, TASK_ID, STATUS_CLASS, STATUS_TEXT
+    }
+
+    /**
+     * The CSS class and the status line of a known status label, encoded once.
+     */
+    private static final class StatusBytes {
+        final byte[] cssClass;
+        final byte[] text;
+
+        StatusBytes(String cssClass, String label) {
+            this.cssClass = cssClass.getBytes(StandardCharsets.UTF_8);
+            this.text = ("Status: " + label).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package simplews;
+
+/**
+ * Callback that receives (student, task) pairs and their statuses when walking through a store.
+ */
+@FunctionalInterface
+public interface TaskStatusVisitor {
+
+    /**
+     * Called once per pair.
+     *
+     * @param studentId The ID of the student.
+     * @param taskId    The ID of the task.
+     * @param status    The status of the pair.
+     */
+    void visit(String studentId, String taskId, TaskStatus status);
+}
@@ -0,0 +1,84 @@
+package simplews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in execution mode that runs request handling on virtual threads instead of Tomcat's
+ * platform-thread pool. Enabled with {@code simplews.threads.mode=virtual} (Java 21+).
+ * <p>
+ * A request blocked on a slow task status store then parks a cheap virtual thread instead of
+ * holding one of a few hundred pool threads, so throughput is no longer capped by the pool size.
+ * The same executor replaces Spring's {@code applicationTaskExecutor}, so async request
+ * processing and any {@code @Async} work run on virtual threads too.
+ */
+@Configuration
+@ConditionalOnProperty(name = "simplews.threads.mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * Creates the executor that starts one virtual thread per task.
+     *
+     * @return The executor; shut down with the application context.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        log.info("Request handling runs on virtual threads");
+        return executor;
+    }
+
+    /**
+     * Hands every Tomcat connector the virtual thread executor in place of its own thread pool.
+     *
+     * @param virtualThreadExecutor The virtual thread executor.
+     * @return The customizer, picked up by Spring Boot's embedded Tomcat factory.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+            ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Replaces Spring's default async task executor with the virtual thread executor.
+     *
+     * @param virtualThreadExecutor The virtual thread executor.
+     * @return The executor used for async request processing and {@code @Async} methods.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    /**
+     * Logs and counts virtual threads that stay pinned to their carrier longer than the threshold,
+     * and publishes the counts in the metrics.
+     *
+     * @param metrics         The metrics that export the counts.
+     * @param thresholdMillis The shortest pinning episode to report, in milliseconds.
+     * @return The monitor; stopped with the application context.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "simplews.threads.pinned-threshold-ms")
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            TaskStatusMetrics metrics,
+            @Value("${simplews.threads.pinned-threshold-ms}") long thresholdMillis) {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMillis));
+        metrics.setPinningMonitor(monitor);
+        return monitor;
+    }
+}
@@ -0,0 +1,94 @@
+package simplews;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread (for example while blocking
+ * inside a synchronized block), which silently turns a virtual thread back into a platform thread.
+ * Listens to the JDK Flight Recorder "jdk.VirtualThreadPinned" event in-process, counts pinning
+ * episodes longer than a threshold and logs where each one happened. The counts are exported on
+ * /metrics by {@link TaskStatusMetrics}.
+ */
+class VirtualThreadPinningMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 5;
+
+    private final RecordingStream stream;
+    private final LongAdder pinnedCount = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+
+    /**
+     * Starts listening for pinning episodes longer than the threshold.
+     *
+     * @param threshold The shortest pinning episode to report.
+     */
+    VirtualThreadPinningMonitor(Duration threshold) {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        record(event.getDuration().toNanos());
+        if (log.isWarnEnabled()) {
+            log.warn("Virtual thread pinned to its carrier for {} ms at {}",
+                    event.getDuration().toMillis(), topFrames(event.getStackTrace()));
+        }
+    }
+
+    // Counts one pinning episode of the given length.
+    void record(long nanos) {
+        pinnedCount.increment();
+        pinnedNanos.add(nanos);
+    }
+
+    /**
+     * Gets the number of pinning episodes seen since startup.
+     *
+     * @return The number of episodes.
+     */
+    long getPinnedCount() {
+        return pinnedCount.sum();
+    }
+
+    /**
+     * Gets the total time virtual threads spent pinned since startup.
+     *
+     * @return The total pinned time, in nanoseconds.
+     */
+    long getPinnedNanos() {
+        return pinnedNanos.sum();
+    }
+
+    private static String topFrames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "(no stack trace)";
+        }
+        StringBuilder frames = new StringBuilder();
+        List<RecordedFrame> all = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(LOGGED_FRAMES, all.size()); i++) {
+            RecordedFrame frame = all.get(i);
+            frames.append("\n\tat ").append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return frames.toString();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -4,7 +4,7 @@
     and a section to display the task status result retrieved from the server.
     Uses JSP Expression Language (EL) to access data passed from the Spring MVC controller (RoutingServlet).
 --%>
-<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" session="false"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -0,0 +1,196 @@
+package simplews;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for admission control: per-client rate limits, the adaptive concurrency limit, and their metrics.
+ */
+public class AdmissionControlFilterTest {
+
+    private final TaskStatusMetrics metrics = new TaskStatusMetrics();
+
+    /**
+     * Test case to verify that a client over its rate gets 429 with Retry-After, while other clients are still served.
+     */
+    @Test
+    public void testClientOverRate_Gets429() throws Exception {
+        // Arrange: one request per 10 seconds on average, two at once.
+        AdmissionControlFilter filter = filter(0.1, 2, "X-Forwarded-For", 0, 1);
+
+        // Act
+        int first = call(filter, "/api/tasks/s1/t1", "10.0.0.1").getStatus();
+        int second = call(filter, "/api/tasks/s1/t1", "10.0.0.1").getStatus();
+        MockHttpServletResponse third = call(filter, "/api/tasks/s1/t1", "10.0.0.1");
+        int otherClient = call(filter, "/api/tasks/s1/t1", "10.0.0.2").getStatus();
+
+        // Assert
+        assertEquals(200, first);
+        assertEquals(200, second);
+        assertEquals(429, third.getStatus());
+        assertEquals("10", third.getHeader("Retry-After"));
+        assertEquals(200, otherClient);
+        assertEquals(1, metrics.getShedCount(TaskStatusMetrics.Endpoint.API_TASK_STATUS, TaskStatusMetrics.Shed.RATE_LIMITED));
+    }
+
+    /**
+     * Test case to verify that the client is the entry the trusted proxy appended, so a client that
+     * writes a new leftmost X-Forwarded-For entry into every request still shares one bucket.
+     */
+    @Test
+    public void testSpoofedForwardedFor_GetsNoNewBucket() throws Exception {
+        // Arrange: one request per 10 seconds on average, two at once; behind one proxy, and behind two.
+        AdmissionControlFilter filter = filter(0.1, 2, "X-Forwarded-For", 0, 1);
+        AdmissionControlFilter twoProxies = filter(0.1, 1, "X-Forwarded-For", 2, 0, 1);
+
+        // Act
+        int first = call(filter, "/api/tasks/s1/t1", "1.1.1.1, 10.0.0.1").getStatus();
+        int second = call(filter, "/api/tasks/s1/t1", "2.2.2.2, 10.0.0.1").getStatus();
+        int third = call(filter, "/api/tasks/s1/t1", "3.3.3.3, 10.0.0.1").getStatus();
+        int firstBehindTwo = call(twoProxies, "/api/tasks/s1/t1", "4.4.4.4, 10.0.0.2, 192.168.0.1").getStatus();
+        int secondBehindTwo = call(twoProxies, "/api/tasks/s1/t1", "5.5.5.5, 10.0.0.2, 192.168.0.2").getStatus();
+
+        // Assert
+        assertEquals(200, first);
+        assertEquals(200, second);
+        assertEquals(429, third);
+        assertEquals(200, firstBehindTwo);
+        assertEquals(429, secondBehindTwo);
+    }
+
+    /**
+     * Test case to verify that paths outside the task status endpoints are never refused.
+     */
+    @Test
+    public void testOtherPaths_NotLimited() throws Exception {
+        // Arrange
+        AdmissionControlFilter filter = filter(0.1, 1, "", 0, 1);
+
+        // Act
+        call(filter, "/metrics", null);
+        int status = call(filter, "/metrics", null).getStatus();
+
+        // Assert
+        assertEquals(200, status);
+    }
+
+    /**
+     * Test case to verify that a request over the concurrency limit gets 503 at once.
+     */
+    @Test
+    public void testOverConcurrencyLimit_Gets503() throws Exception {
+        // Arrange: a limit of one, and a request that is still in progress when the next one arrives.
+        AdmissionControlFilter filter = filter(0, 1, "", 1000, 1);
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+        MockHttpServletRequest outer = request("/checkTaskStatus", null);
+        MockHttpServletResponse outerResponse = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilter(outer, outerResponse,
+                (req, res) -> filter.doFilter(request("/api/tasks/batch", null), nested, new MockFilterChain()));
+        int afterwards = call(filter, "/api/tasks/batch", null).getStatus();
+
+        // Assert
+        assertEquals(200, outerResponse.getStatus());
+        assertEquals(503, nested.getStatus());
+        assertEquals("1", nested.getHeader("Retry-After"));
+        assertEquals(200, afterwards);
+        assertEquals(1, metrics.getShedCount(TaskStatusMetrics.Endpoint.API_BATCH, TaskStatusMetrics.Shed.OVERLOADED));
+        String text = metrics.toPrometheusText(new TaskStatusService());
+        assertTrue(text, text.contains("simplews_requests_shed_total{endpoint=\"/api/tasks/batch\",reason=\"overloaded\"} 1\n"));
+        assertTrue(text, text.contains("simplews_admission_concurrency_limit 1\n"));
+        assertTrue(text, text.contains("simplews_admission_in_flight 0\n"));
+    }
+
+    /**
+     * Test case to verify that the limit grows while requests are fast and busy, and is cut once per slow spell.
+     */
+    @Test
+    public void testAdaptiveLimit_IncreasesAndBacksOff() {
+        // Arrange
+        long target = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 12, target, 0.5);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+
+        // Act: three fast requests while the limit is fully used, growing it up to the maximum of 12.
+        limit.release(0, target);
+        limit.release(0, target);
+        limit.release(0, target);
+        int grown = limit.getLimit();
+        // Two requests that started before the slowdown was noticed cut the limit once only.
+        limit.release(1000, 1000 + target + 1);
+        limit.release(1000, 1000 + target + 2);
+        int cut = limit.getLimit();
+        // One that started after the cut and is slow too cuts it again, but not below the minimum.
+        limit.release(1000 + target + 10, 1000 + 3 * target);
+        limit.release(1000 + 3 * target + 10, 1000 + 5 * target);
+        int floor = limit.getLimit();
+
+        // Assert
+        assertEquals(12, grown);
+        assertEquals(6, cut);
+        assertEquals(2, floor);
+        assertEquals(3, limit.getInFlight());
+    }
+
+    /**
+     * Test case to verify that slow spells are told apart by nanoTime differences, across the wrap-around of its values.
+     */
+    @Test
+    public void testAdaptiveLimit_BacksOffAcrossNanoTimeWrap() {
+        // Arrange
+        long target = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 8, target, 0.5);
+        long start = Long.MAX_VALUE - 3 * target;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+
+        // Act: a cut just before the wrap, then a slow request that started after it, with a negative nanoTime.
+        limit.release(start, start + target + 1);
+        int first = limit.getLimit();
+        limit.release(start + 1, start + 2 * target); // Started before that cut: no second cut.
+        int same = limit.getLimit();
+        long afterWrap = Long.MIN_VALUE + target;
+        limit.release(afterWrap, afterWrap + target + 1);
+        int second = limit.getLimit();
+
+        // Assert
+        assertEquals(4, first);
+        assertEquals(4, same);
+        assertEquals(2, second);
+    }
+
+    private AdmissionControlFilter filter(double clientRate, int clientBurst, String clientHeader, long latencyTargetMs, int limit) {
+        return filter(clientRate, clientBurst, clientHeader, 1, latencyTargetMs, limit);
+    }
+
+    private AdmissionControlFilter filter(double clientRate, int clientBurst, String clientHeader, int trustedProxies,
+                                          long latencyTargetMs, int limit) {
+        return new AdmissionControlFilter(metrics, true, clientRate, clientBurst, clientHeader, trustedProxies, 100,
+                latencyTargetMs, limit, 1, limit, 0.5);
+    }
+
+    private static MockHttpServletRequest request(String path, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+
+    private static MockHttpServletResponse call(AdmissionControlFilter filter, String path, String forwardedFor) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(path, forwardedFor), response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,115 @@
+package simplews;
+
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test for admission control: goodput (successful responses within the latency objective, per
+ * second) at the rate the backend can sustain, and at five times that rate, with admission control
+ * off and on.
+ * <p>
+ * The backend is simulated with a fixed latency and a fixed number of calls it serves at once, so it
+ * saturates like a database with a connection pool. Requests are sent open-loop ({@link OpenLoopLoad}),
+ * so a slow server cannot slow the test down and hide its own queueing.
+ * <p>
+ * Run with {@code mvn -Ploadtest test -Dtest=AdmissionControlLoadTest}. Results are appended to
+ * target/loadtest/admission-control.txt.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING) // Without admission control first, to show what it prevents.
+public class AdmissionControlLoadTest {
+
+    private static final int BACKEND_LATENCY_MS = 50;
+    private static final int BACKEND_CAPACITY = 4;
+    // Just under what the backend can serve: BACKEND_CAPACITY * 1000 / BACKEND_LATENCY_MS = 80 per second.
+    private static final int NOMINAL_RATE = 70;
+    private static final int OVERLOAD_FACTOR = 5;
+    private static final int DURATION_SECONDS = 5;
+    private static final long LATENCY_OBJECTIVE_MS = 500;
+
+    @BeforeClass
+    public static void setUp() {
+        new File("target/loadtest").mkdirs();
+    }
+
+    /**
+     * Test case to measure the server without admission control, whose queue grows without bound under overload.
+     */
+    @Test
+    public void testAdmissionOff() throws Exception {
+        double[] goodput = measure(false);
+        assertTrue(goodput[0] > 0);
+    }
+
+    /**
+     * Test case to verify that with admission control, goodput under five times the sustainable rate
+     * stays within 80% of goodput at that rate.
+     */
+    @Test
+    public void testAdmissionOn() throws Exception {
+        double[] goodput = measure(true);
+        assertTrue(String.format("Goodput fell from %.0f/s to %.0f/s under overload", goodput[0], goodput[1]),
+                goodput[1] >= 0.8 * goodput[0]);
+    }
+
+    // Returns the goodput at the nominal rate and under overload.
+    private static double[] measure(boolean admission) throws Exception {
+        // Command-line arguments, since default properties would lose to application.properties.
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Runner.class).run(
+                "--server.port=0",
+                "--simplews.store.simulated-latency-ms=" + BACKEND_LATENCY_MS,
+                "--simplews.store.simulated-capacity=" + BACKEND_CAPACITY,
+                "--simplews.admission.enabled=" + admission,
+                "--simplews.admission.latency-target-ms=" + (3 * BACKEND_LATENCY_MS),
+                "--simplews.admission.min-limit=" + BACKEND_CAPACITY);
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            URL url = new URL("http://localhost:" + port + "/api/tasks/student123/task001");
+            run(url, NOMINAL_RATE, 1); // Warm-up, which also lets the concurrency limit settle.
+            String mode = admission ? "admission on" : "admission off";
+            double nominal = report(run(url, NOMINAL_RATE, DURATION_SECONDS), mode, 1);
+            double overload = report(run(url, NOMINAL_RATE * OVERLOAD_FACTOR, DURATION_SECONDS), mode, OVERLOAD_FACTOR);
+            return new double[] {nominal, overload};
+        } finally {
+            context.close();
+        }
+    }
+
+    private static OpenLoopLoad.Result run(URL url, int ratePerSecond, int seconds) throws InterruptedException {
+        List<OpenLoopLoad.Request> requests = Collections.nCopies(ratePerSecond * seconds, new OpenLoopLoad.Request("status", url));
+        return OpenLoopLoad.run(requests, ratePerSecond, TimeUnit.MILLISECONDS.toNanos(LATENCY_OBJECTIVE_MS));
+    }
+
+    // Returns the goodput.
+    private static double report(OpenLoopLoad.Result result, String mode, int factor) throws IOException {
+        double goodput = result.getGood() / (double) DURATION_SECONDS;
+        long ok = result.count(200);
+        long refused = result.count(429) + result.count(503);
+        LatencyHistogram okLatency = result.getOkLatency();
+        String line = String.format("%s, %dx load (%d req/s): goodput %.0f/s within %d ms"
+                        + " (%d good, %d late, %d refused, %d failed; ok mean %.0f ms, max %.0f ms)",
+                mode, factor, NOMINAL_RATE * factor, goodput, LATENCY_OBJECTIVE_MS, result.getGood(), ok - result.getGood(),
+                refused, result.getResponses() - ok - refused,
+                okLatency.getTotalNanos() / 1e6 / Math.max(1, okLatency.getCount()), okLatency.getMaxNanos() / 1e6);
+        System.out.println(line);
+        try (PrintWriter out = new PrintWriter(new FileWriter("target/loadtest/admission-control.txt", true))) {
+            out.println(line);
+        }
+        return goodput;
+    }
+}
@@ -0,0 +1,315 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the CachingTaskStatusStore class.
+ * A counting backend and a manual clock are used so that hits, misses, expiry and eviction can be verified exactly.
+ */
+public class CachingTaskStatusStoreTest {
+
+    private CountingStore backend;
+    private AtomicLong clock;
+    private CachingTaskStatusStore cache;
+
+    @Before
+    public void setUp() {
+        backend = new CountingStore(InMemoryTaskStatusStore.withSampleData());
+        clock = new AtomicLong();
+        cache = new CachingTaskStatusStore(backend, 2, 1000, 100, clock::get);
+    }
+
+    /**
+     * Test case to verify that a repeated lookup is served from the cache.
+     */
+    @Test
+    public void testFind_RepeatedLookupIsCacheHit() {
+        // Act
+        TaskStatus first = cache.find("student123", "task001");
+        TaskStatus second = cache.find("student123", "task001");
+
+        // Assert
+        assertEquals(TaskStatus.SUBMITTED, first);
+        assertEquals(TaskStatus.SUBMITTED, second);
+        assertEquals(1, backend.calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Test case to verify that unknown pairs are cached until the negative TTL runs out.
+     */
+    @Test
+    public void testFind_UnknownPairIsNegativelyCached() {
+        // Act
+        assertNull(cache.find("student999", "taskXXX"));
+        assertNull(cache.find("student999", "taskXXX"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(101)); // Past the 100ms negative TTL.
+        assertNull(cache.find("student999", "taskXXX"));
+
+        // Assert
+        assertEquals(2, backend.calls.get());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    /**
+     * Test case to verify that found statuses are reloaded once their TTL has expired.
+     */
+    @Test
+    public void testFind_ExpiredEntryIsReloaded() {
+        // Act
+        cache.find("student456", "task002");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        cache.find("student456", "task002"); // Still fresh.
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+        cache.find("student456", "task002"); // Expired.
+
+        // Assert
+        assertEquals(2, backend.calls.get());
+    }
+
+    /**
+     * Test case to verify that the cache never holds more than its maximum size and evicts the oldest entry.
+     */
+    @Test
+    public void testFind_EvictsOldestWhenFull() {
+        // Act
+        cache.find("student123", "task001");
+        cache.find("student456", "task002");
+        cache.find("student123", "task003"); // Third pair in a cache of size 2.
+        cache.find("student456", "task002"); // Still cached.
+        cache.find("student123", "task001"); // Was evicted, reloaded.
+
+        // Assert
+        assertEquals(2, cache.size());
+        assertEquals(4, backend.calls.get());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    /**
+     * Test case to verify that reloading and rewriting the same pair does not grow the eviction order.
+     */
+    @Test
+    public void testFind_ReloadsKeepEvictionOrderBounded() {
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            cache.find("student123", "task001");
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001)); // Expire it, so the next lookup reloads it.
+            cache.find("student123", "task001");
+            cache.put("student123", "task001", TaskStatus.SUBMITTED); // Drops it again.
+        }
+        cache.find("student123", "task001");
+
+        // Assert
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.insertionOrderSize());
+        assertEquals(2001, backend.calls.get());
+    }
+
+    /**
+     * Test case to verify that concurrent misses for the same pair cause a single backend call.
+     */
+    @Test
+    public void testFind_ConcurrentMissesAreCoalesced() throws Exception {
+        // Arrange: a backend that blocks until every caller has missed.
+        int callers = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingStore slowBackend = new BlockingStore(release);
+        CachingTaskStatusStore slowCache = new CachingTaskStatusStore(slowBackend, 100, 1000, 1000, clock::get);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            // Act
+            Future<?>[] results = new Future<?>[callers];
+            for (int i = 0; i < callers; i++) {
+                results[i] = pool.submit(() -> slowCache.find("student123", "task001"));
+            }
+            slowBackend.entered.await(5, TimeUnit.SECONDS);
+            while (slowCache.getMissCount() < callers) {
+                Thread.yield();
+            }
+            release.countDown();
+
+            // Assert
+            for (Future<?> result : results) {
+                assertEquals(TaskStatus.SUBMITTED, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, slowBackend.calls.get());
+            assertEquals(1, slowCache.getLoadCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test case to verify that a load overlapping a write to the same pair is not cached, as it may have read
+     * the status from before the write.
+     */
+    @Test
+    public void testFind_LoadOverlappingWriteToSamePairIsNotCached() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingStore slowBackend = new BlockingStore(release);
+        CachingTaskStatusStore slowCache = new CachingTaskStatusStore(slowBackend, 100, 1000, 1000, clock::get);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<TaskStatus> load = pool.submit(() -> slowCache.find("student123", "task001"));
+            slowBackend.entered.await(5, TimeUnit.SECONDS);
+
+            // Act
+            slowCache.put("student123", "task001", TaskStatus.COMPLETED);
+            release.countDown();
+            load.get(5, TimeUnit.SECONDS);
+
+            // Assert
+            assertEquals(0, slowCache.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test case to verify that a write to another pair does not stop a concurrent load from being cached.
+     */
+    @Test
+    public void testFind_LoadOverlappingWriteToOtherPairIsCached() throws Exception {
+        // Arrange: a pair in another stripe of write generations than the one being loaded.
+        TaskKey loaded = new TaskKey("student123", "task001");
+        TaskKey written = null;
+        for (int i = 0; written == null; i++) {
+            TaskKey candidate = new TaskKey("student" + i, "task001");
+            if (CachingTaskStatusStore.stripeOf(candidate) != CachingTaskStatusStore.stripeOf(loaded)) {
+                written = candidate;
+            }
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingStore slowBackend = new BlockingStore(release);
+        CachingTaskStatusStore slowCache = new CachingTaskStatusStore(slowBackend, 100, 1000, 1000, clock::get);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<TaskStatus> load = pool.submit(() -> slowCache.find(loaded.getStudentId(), loaded.getTaskId()));
+            slowBackend.entered.await(5, TimeUnit.SECONDS);
+
+            // Act
+            slowCache.put(written.getStudentId(), written.getTaskId(), TaskStatus.COMPLETED);
+            release.countDown();
+            load.get(5, TimeUnit.SECONDS);
+            slowCache.find(loaded.getStudentId(), loaded.getTaskId());
+
+            // Assert
+            assertEquals(1, slowCache.getHitCount());
+            assertEquals(1, slowBackend.calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test case to verify that a write through the cache is visible to the next read.
+     */
+    @Test
+    public void testCompareAndExchange_InvalidatesCachedStatus() {
+        // Arrange
+        cache.find("student123", "task001"); // Cache "Submitted".
+
+        // Act
+        TaskStatus witness = cache.compareAndExchange("student123", "task001", TaskStatus.SUBMITTED, TaskStatus.UNDER_REVIEW);
+
+        // Assert
+        assertEquals(TaskStatus.SUBMITTED, witness);
+        assertEquals(TaskStatus.UNDER_REVIEW, cache.find("student123", "task001"));
+        assertEquals(2, backend.calls.get());
+    }
+
+    /**
+     * Test case to verify that a bulk lookup serves cached pairs from the cache and loads all misses in one backend call.
+     */
+    @Test
+    public void testFindAll_LoadsMissesInOneBackendCall() {
+        // Arrange
+        CachingTaskStatusStore bigCache = new CachingTaskStatusStore(backend, 100, 1000, 1000, clock::get);
+        bigCache.find("student123", "task001"); // One backend call, now cached.
+        List<TaskKey> keys = Arrays.asList(
+                new TaskKey("student123", "task001"),
+                new TaskKey("student456", "task002"),
+                new TaskKey("student999", "taskXXX"));
+        TaskStatus[] statuses = new TaskStatus[keys.size()];
+
+        // Act
+        bigCache.findAll(keys, statuses);
+
+        // Assert
+        assertArrayEquals(new TaskStatus[]{TaskStatus.SUBMITTED, TaskStatus.UNDER_REVIEW, null}, statuses);
+        assertEquals(1, backend.bulkCalls.get());
+        assertEquals(1, bigCache.getHitCount());
+        assertEquals(3, bigCache.getMissCount());
+    }
+
+    private static class CountingStore implements TaskStatusStore {
+        final TaskStatusStore delegate;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger bulkCalls = new AtomicInteger();
+
+        CountingStore(TaskStatusStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TaskStatus find(String studentId, String taskId) {
+            calls.incrementAndGet();
+            return delegate.find(studentId, taskId);
+        }
+
+        @Override
+        public void findAll(List<TaskKey> keys, TaskStatus[] out) {
+            bulkCalls.incrementAndGet();
+            delegate.findAll(keys, out);
+        }
+
+        @Override
+        public TaskStatus put(String studentId, String taskId, TaskStatus status) {
+            return delegate.put(studentId, taskId, status);
+        }
+
+        @Override
+        public TaskStatus compareAndExchange(String studentId, String taskId, TaskStatus expected, TaskStatus update) {
+            return delegate.compareAndExchange(studentId, taskId, expected, update);
+        }
+    }
+
+    private static class BlockingStore extends InMemoryTaskStatusStore {
+        final CountDownLatch release;
+        final CountDownLatch entered = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        BlockingStore(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public TaskStatus find(String studentId, String taskId) {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return TaskStatus.SUBMITTED;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package simplews;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the application works in the fast-start profile: lazy beans, trimmed auto-configuration
+ * and the precompiled view instead of JSP.
+ */
+public class FastStartProfileTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static File report;
+    private static ConfigurableApplicationContext context;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        report = new File(folder.getRoot(), "startup.txt");
+        File statuses = new File(folder.getRoot(), "statuses.csv");
+        Files.write(statuses.toPath(), "student123,task001,SUBMITTED\nzz1,tt1,COMPLETED\n".getBytes(StandardCharsets.UTF_8));
+        context = new SpringApplicationBuilder(Runner.class).run(
+                "--server.port=0",
+                "--spring.profiles.active=fast-start",
+                "--simplews.startup.report-file=" + report,
+                "--simplews.import.file=" + statuses);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Test case to verify that the profile makes beans lazy, leaves out unused auto-configuration and
+     * reports the startup.
+     */
+    @Test
+    public void testProfile_LazyTrimmedAndReported() throws IOException {
+        // Act
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+
+        // Assert
+        assertTrue(context.getBeanFactory().getBeanDefinition("taskStatusApiController").isLazyInit());
+        assertFalse(context.containsBean("multipartResolver"));
+        assertFalse(context.containsBean("restTemplateBuilder"));
+        assertFalse(context.containsBean("taskScheduler"));
+        assertTrue(context.getBean("taskStatusView") instanceof TaskStatusView);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches("profiles \\[fast-start].*: ready in \\d+ ms, RSS .*"));
+    }
+
+    /**
+     * Test case to verify that the pages and JSON endpoints still work without the excluded auto-configuration.
+     */
+    @Test
+    public void testEndpoints_Work() throws IOException {
+        // Act / Assert
+        assertTrue(request("GET", "/taskStatus", null).contains("<form action=\"/checkTaskStatus\" method=\"get\">"));
+        assertTrue(request("GET", "/checkTaskStatus?studentId=student123&taskId=task001", null).contains("Status: Submitted"));
+        assertEquals("[{\"studentId\":\"student123\",\"taskId\":\"task001\",\"status\":\"SUBMITTED\",\"label\":\"Submitted\"}]",
+                request("POST", "/api/tasks/batch", "[{\"studentId\":\"student123\",\"taskId\":\"task001\"}]"));
+        assertTrue(request("GET", "/metrics", null).contains("simplews_requests_total"));
+    }
+
+    /**
+     * Test case to verify that the file named by simplews.import.file is imported at startup even though beans are lazy.
+     */
+    @Test
+    public void testStartupImport_Applied() throws IOException {
+        // Act
+        String json = request("GET", "/api/tasks/zz1/tt1", null);
+
+        // Assert
+        assertTrue(json, json.contains("\"status\":\"COMPLETED\""));
+    }
+
+    private static String request(String method, String path, String json) throws IOException {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestMethod(method);
+        if (json != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(path, 200, connection.getResponseCode());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
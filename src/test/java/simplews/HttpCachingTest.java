@@ -0,0 +1,166 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+/**
+ * Tests for conditional GET (ETag / Last-Modified / 304) on the status pages and for the pre-rendered form,
+ * and for the secret guarding the administrative override.
+ */
+public class HttpCachingTest {
+
+    private static final String FORM_HTML = "<html><body><form>Student ID: Task ID: \u00e9</form></body></html>";
+
+    private TaskStatusService service;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new TaskStatusService();
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new RoutingServlet(service, RequestLog.off(), PrerenderedPage.ofHtml(FORM_HTML, 3600)),
+                        new TaskStatusApiController(service))
+                .build();
+    }
+
+    /**
+     * Test case to verify that a status page revalidated with its ETag gets a 304 and is not rendered.
+     */
+    @Test
+    public void testCheckTaskStatus_UnchangedStatusIsNotModified() throws Exception {
+        // Arrange
+        String etag = mockMvc.perform(get("/checkTaskStatus").param("studentId", "student123").param("taskId", "task001"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("taskStatusView"))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        // Act / Assert
+        mockMvc.perform(get("/checkTaskStatus").param("studentId", "student123").param("taskId", "task001")
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    /**
+     * Test case to verify that a status change invalidates the ETag of the status page and the JSON document.
+     */
+    @Test
+    public void testStatusChange_ChangesEtag() throws Exception {
+        // Arrange
+        String pageEtag = mockMvc.perform(get("/checkTaskStatus").param("studentId", "student123").param("taskId", "task001"))
+                .andReturn().getResponse().getHeader("ETag");
+        String jsonEtag = mockMvc.perform(get("/api/tasks/student123/task001"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act
+        service.transitionTaskStatus("student123", "task001", TaskStatus.UNDER_REVIEW);
+
+        // Assert
+        String newPageEtag = mockMvc.perform(get("/checkTaskStatus").param("studentId", "student123").param("taskId", "task001")
+                .header("If-None-Match", pageEtag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(pageEtag, newPageEtag);
+        mockMvc.perform(get("/api/tasks/student123/task001").header("If-None-Match", jsonEtag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test case to verify that the form is served gzip-compressed with a long cache lifetime, and revalidates to a 304.
+     */
+    @Test
+    public void testShowStatusForm_GzipAndNotModified() throws Exception {
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get("/taskStatus").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Cache-Control", "public, max-age=3600"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andReturn().getResponse();
+
+        // Assert
+        assertEquals(FORM_HTML, gunzip(response.getContentAsByteArray()));
+        mockMvc.perform(get("/taskStatus").header("Accept-Encoding", "gzip").header("If-None-Match", response.getHeader("ETag")))
+                .andExpect(status().isNotModified());
+    }
+
+    /**
+     * Test case to verify that clients without gzip get the plain page under a different ETag.
+     */
+    @Test
+    public void testPrerenderedPage_PlainForClientsWithoutGzip() throws Exception {
+        // Arrange
+        PrerenderedPage page = PrerenderedPage.ofHtml(FORM_HTML, 60);
+        MockHttpServletResponse gzipped = new MockHttpServletResponse();
+        MockHttpServletRequest gzipRequest = new MockHttpServletRequest("GET", "/taskStatus");
+        gzipRequest.addHeader("Accept-Encoding", "gzip");
+        page.write(gzipRequest, gzipped);
+
+        // Act
+        MockHttpServletResponse plain = new MockHttpServletResponse();
+        page.write(new MockHttpServletRequest("GET", "/taskStatus"), plain);
+
+        // Assert
+        assertEquals(FORM_HTML, new String(plain.getContentAsByteArray(), StandardCharsets.UTF_8));
+        assertEquals(null, plain.getHeader("Content-Encoding"));
+        assertNotEquals(gzipped.getHeader("ETag"), plain.getHeader("ETag"));
+    }
+
+    /**
+     * Test case to verify that the administrative override needs the configured secret, and is refused when none is set.
+     */
+    @Test
+    public void testSetTaskStatus_RequiresAdminSecret() throws Exception {
+        // Arrange
+        MockMvc withSecret = MockMvcBuilders
+                .standaloneSetup(new RoutingServlet(service, RequestLog.off(), PrerenderedPage.ofHtml(FORM_HTML, 3600), "s3cret"))
+                .build();
+
+        // Act & Assert
+        mockMvc.perform(put("/setTaskStatus").param("studentId", "student123").param("taskId", "task001").param("status", "COMPLETED")
+                        .header(RoutingServlet.ADMIN_SECRET_HEADER, ""))
+                .andExpect(status().isForbidden());
+        withSecret.perform(put("/setTaskStatus").param("studentId", "student123").param("taskId", "task001").param("status", "COMPLETED"))
+                .andExpect(status().isForbidden());
+        withSecret.perform(put("/setTaskStatus").param("studentId", "student123").param("taskId", "task001").param("status", "COMPLETED")
+                        .header(RoutingServlet.ADMIN_SECRET_HEADER, "guess"))
+                .andExpect(status().isForbidden());
+        assertEquals(TaskStatus.SUBMITTED, service.findTaskStatus("student123", "task001"));
+        withSecret.perform(put("/setTaskStatus").param("studentId", "student123").param("taskId", "task001").param("status", "COMPLETED")
+                        .header(RoutingServlet.ADMIN_SECRET_HEADER, "s3cret"))
+                .andExpect(status().isOk());
+        assertEquals(TaskStatus.COMPLETED, service.findTaskStatus("student123", "task001"));
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[1024];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+package simplews;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the LatencyHistogram class.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Test case to verify that every value falls in a bucket whose bounds contain it, within the promised precision.
+     */
+    @Test
+    public void testIndexOf_BucketBoundsContainValue() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            // Act
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestValueOf(index);
+            long lowest = index == 0 ? 0 : LatencyHistogram.highestValueOf(index - 1) + 1;
+
+            // Assert
+            assertTrue(value + " >= " + lowest, value >= lowest);
+            assertTrue(value + " <= " + highest, value <= highest);
+            assertTrue("bucket of " + value + " too wide", highest - lowest <= Math.max(0, lowest / 32));
+        }
+    }
+
+    /**
+     * Test case to verify quantiles of a known distribution.
+     */
+    @Test
+    public void testValueAtQuantile_UniformDistribution() {
+        // Arrange: 1..10000 microseconds, once each.
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+
+        // Act
+        long median = histogram.valueAtQuantile(0.5);
+        long p99 = histogram.valueAtQuantile(0.99);
+
+        // Assert: within the 1/32 bucket precision.
+        assertEquals(5_000_000, median, 5_000_000 / 32.0);
+        assertEquals(9_900_000, p99, 9_900_000 / 32.0);
+        assertEquals(10_000_000, histogram.valueAtQuantile(1.0));
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMaxNanos());
+    }
+
+    /**
+     * Test case to verify that an empty histogram reports zero.
+     */
+    @Test
+    public void testValueAtQuantile_Empty() {
+        assertEquals(0, new LatencyHistogram().valueAtQuantile(0.99));
+    }
+}
@@ -0,0 +1,199 @@
+package simplews;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open-loop HTTP load for the load tests: requests are sent on a fixed schedule whether or not
+ * earlier ones have been answered, each on its own thread, and each latency is measured from when
+ * the request was due rather than from when it was actually sent.
+ * <p>
+ * A closed loop, where each client waits for its previous response, sends less as the server slows
+ * down and so leaves out exactly the requests that would have waited longest (coordinated omission).
+ * Here a server that stalls for a second is charged for every request due in that second.
+ */
+final class OpenLoopLoad {
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+
+    private OpenLoopLoad() {
+    }
+
+    /**
+     * A request to send, with the kind it is reported under.
+     */
+    static final class Request {
+        final String kind;
+        final URL url;
+
+        Request(String kind, URL url) {
+            this.kind = kind;
+            this.url = url;
+        }
+    }
+
+    /**
+     * Sends requests at a fixed rate, then waits for every response.
+     *
+     * @param requests       The requests, in the order they are sent.
+     * @param ratePerSecond  The number of requests sent per second.
+     * @param objectiveNanos Responses with status 200 within this latency count as good.
+     * @return The results.
+     * @throws InterruptedException If interrupted while sending or waiting.
+     */
+    static Result run(List<Request> requests, int ratePerSecond, long objectiveNanos) throws InterruptedException {
+        Result result = new Result(requests, objectiveNanos);
+        ExecutorService senders = Executors.newCachedThreadPool();
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        for (int i = 0; i < requests.size(); i++) {
+            Request request = requests.get(i);
+            long due = start + i * interval;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            senders.execute(() -> result.record(request.kind, send(request.url), due));
+        }
+        senders.shutdown();
+        senders.awaitTermination(READ_TIMEOUT_MS * 3L, TimeUnit.MILLISECONDS);
+        result.elapsedNanos = result.lastResponse.get() - start;
+        return result;
+    }
+
+    /**
+     * Prints a line with the throughput and latency percentiles of a run, and appends it to a report
+     * in target/loadtest/.
+     *
+     * @param fileName The report file name.
+     * @param label    What was measured, at the start of the line.
+     * @param result   The results of the run.
+     * @throws IOException If the report cannot be written.
+     */
+    static void report(String fileName, String label, Result result) throws IOException {
+        LatencyHistogram latency = result.getLatency();
+        String line = String.format("%s: %.0f req/s (%d ok, %d failed; p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms)",
+                label, result.getResponses() / result.getElapsedSeconds(), result.count(200),
+                result.getResponses() - result.count(200), latency.valueAtQuantile(0.5) / 1e6,
+                latency.valueAtQuantile(0.99) / 1e6, latency.valueAtQuantile(0.999) / 1e6, latency.getMaxNanos() / 1e6);
+        System.out.println(line);
+        new File("target/loadtest").mkdirs();
+        try (PrintWriter out = new PrintWriter(new FileWriter(new File("target/loadtest", fileName), true))) {
+            out.println(line);
+        }
+    }
+
+    // Returns the status code, or -1 if the request failed or timed out.
+    private static int send(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            int code = connection.getResponseCode();
+            try (InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                byte[] buffer = new byte[4096];
+                while (in != null && in.read(buffer) > 0) {
+                    // Drain the body so the keep-alive connection can be reused.
+                }
+            }
+            return code;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Response counts by status and latency histograms, overall and per request kind.
+     */
+    static final class Result {
+        private final long objectiveNanos;
+        // Filled before the run, so concurrent recording only reads the map.
+        private final Map<String, LatencyHistogram> latencyByKind = new LinkedHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram okLatency = new LatencyHistogram();
+        private final Map<Integer, LongAdder> byStatus = new ConcurrentHashMap<>();
+        private final LongAdder good = new LongAdder();
+        private final AtomicLong lastResponse = new AtomicLong();
+        private long elapsedNanos;
+
+        Result(List<Request> requests, long objectiveNanos) {
+            this.objectiveNanos = objectiveNanos;
+            for (Request request : requests) {
+                latencyByKind.computeIfAbsent(request.kind, kind -> new LatencyHistogram());
+            }
+        }
+
+        void record(String kind, int status, long dueNanos) {
+            long now = System.nanoTime();
+            long nanos = now - dueNanos;
+            lastResponse.accumulateAndGet(now, Math::max);
+            byStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+            latency.record(nanos);
+            latencyByKind.get(kind).record(nanos);
+            if (status == 200) {
+                okLatency.record(nanos);
+                if (nanos <= objectiveNanos) {
+                    good.increment();
+                }
+            }
+        }
+
+        /**
+         * @param status An HTTP status, or -1 for requests that failed without one.
+         * @return The number of responses with that status.
+         */
+        long count(int status) {
+            LongAdder count = byStatus.get(status);
+            return count != null ? count.sum() : 0;
+        }
+
+        long getResponses() {
+            return latency.getCount();
+        }
+
+        /**
+         * @return The number of responses with status 200 within the latency objective.
+         */
+        long getGood() {
+            return good.sum();
+        }
+
+        LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @param kind A request kind.
+         * @return The latencies of the responses to requests of that kind.
+         */
+        LatencyHistogram getLatency(String kind) {
+            return latencyByKind.get(kind);
+        }
+
+        LatencyHistogram getOkLatency() {
+            return okLatency;
+        }
+
+        /**
+         * @return The time from the first request being due to the last response, in seconds.
+         */
+        double getElapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+    }
+}
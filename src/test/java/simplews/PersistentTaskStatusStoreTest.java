@@ -0,0 +1,166 @@
+package simplews;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the PersistentTaskStatusStore class and its snapshot and change log files.
+ * Every test works in its own temporary directory and reopens the store to simulate a restart.
+ */
+public class PersistentTaskStatusStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private PersistentTaskStatusStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath();
+        store = PersistentTaskStatusStore.open(directory, 1000, false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    /**
+     * Test case to verify that logged changes survive a restart.
+     */
+    @Test
+    public void testReopen_ReplaysChangeLog() throws IOException {
+        // Arrange
+        InMemoryTaskStatusStore.putSampleData(store);
+        store.compareAndExchange("student123", "task001", TaskStatus.SUBMITTED, TaskStatus.UNDER_REVIEW);
+
+        // Act
+        reopen();
+
+        // Assert
+        assertEquals(TaskStatus.UNDER_REVIEW, store.find("student123", "task001"));
+        assertEquals(TaskStatus.COMPLETED, store.find("student123", "task003"));
+        assertNull(store.find("student999", "taskXXX"));
+    }
+
+    /**
+     * Test case to verify that a compaction moves the logged changes into the snapshot and removes the old log,
+     * and that changes made afterwards take precedence over the snapshot.
+     */
+    @Test
+    public void testCompact_ServesFromSnapshotAfterRestart() throws IOException {
+        // Arrange
+        InMemoryTaskStatusStore.putSampleData(store);
+
+        // Act
+        assertTrue(store.compact());
+        store.put("student456", "task002", TaskStatus.COMPLETED);
+        store.put("student000", "task000", TaskStatus.SUBMITTED);
+        reopen();
+
+        // Assert
+        assertEquals(2, countLogFiles(directory)); // The log written since the compaction, and the one just opened.
+        assertFalse(store.isEmpty());
+        assertEquals(TaskStatus.SUBMITTED, store.find("student123", "task001"));
+        assertEquals(TaskStatus.COMPLETED, store.find("student456", "task002"));
+        assertEquals(TaskStatus.SUBMITTED, store.find("student000", "task000"));
+        assertEquals(TaskStatus.SUBMITTED,
+                store.compareAndExchange("student789", "task004", TaskStatus.UNDER_REVIEW, TaskStatus.COMPLETED));
+    }
+
+    /**
+     * Test case to verify that a record cut short by a crash is dropped without losing the records before it.
+     */
+    @Test
+    public void testReopen_IgnoresTornLogRecord() throws IOException {
+        // Arrange
+        store.put("student123", "task001", TaskStatus.SUBMITTED);
+        store.close();
+        Path logFile = directory.resolve("changes-0.log");
+        Files.write(logFile, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // Act
+        store = PersistentTaskStatusStore.open(directory, 1000, false);
+        store.put("student123", "task002", TaskStatus.COMPLETED);
+        reopen();
+
+        // Assert
+        assertEquals(TaskStatus.SUBMITTED, store.find("student123", "task001"));
+        assertEquals(TaskStatus.COMPLETED, store.find("student123", "task002"));
+    }
+
+    /**
+     * Test case to verify snapshot lookups when records and IDs span several memory mappings.
+     */
+    @Test
+    public void testSnapshot_FindsPairsAcrossMappedChunks() throws IOException {
+        // Arrange: 64-byte mappings, much smaller than one record plus the index.
+        TaskStatusIndex changes = new TaskStatusIndex();
+        for (int i = 0; i < 500; i++) {
+            changes.put("student" + i, "task-\u00e9" + (i % 7), TaskStatus.values()[i % 3]);
+        }
+        Path file = directory.resolve("test.snapshot");
+        TaskStatusSnapshot.write(file, 3, null, changes);
+
+        // Act
+        TaskStatusSnapshot snapshot = TaskStatusSnapshot.open(file, 6);
+
+        // Assert
+        assertEquals(500, snapshot.size());
+        assertEquals(3, snapshot.getLogGeneration());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(TaskStatus.values()[i % 3], snapshot.find("student" + i, "task-\u00e9" + (i % 7)));
+        }
+        assertNull(snapshot.find("student1", "task-\u00e92"));
+        assertNull(snapshot.find("student1", "task-e1"));
+    }
+
+    /**
+     * Test case to verify that replacing all pairs drops the old ones, takes effect at once and survives a restart.
+     */
+    @Test
+    public void testReplaceAll_SurvivesRestart() throws IOException {
+        // Arrange
+        InMemoryTaskStatusStore.putSampleData(store);
+        TaskStatusIndex imported = new TaskStatusIndex();
+        imported.put("student900", "task900", TaskStatus.COMPLETED);
+
+        // Act
+        store.replaceAll(imported);
+        store.put("student901", "task901", TaskStatus.SUBMITTED);
+
+        // Assert
+        assertNull(store.find("student123", "task001"));
+        assertEquals(TaskStatus.COMPLETED, store.find("student900", "task900"));
+        reopen();
+        assertNull(store.find("student123", "task001"));
+        assertEquals(TaskStatus.COMPLETED, store.find("student900", "task900"));
+        assertEquals(TaskStatus.SUBMITTED, store.find("student901", "task901"));
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        store = PersistentTaskStatusStore.open(directory, 1000, false);
+    }
+
+    private static long countLogFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package simplews;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the RequestLog class.
+ */
+public class RequestLogTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(bytes, true);
+
+    private String output() {
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test case to verify that events at or above the level are written as quoted key=value lines, and others are skipped.
+     */
+    @Test
+    public void testLog_WritesEnabledLevelsOnly() {
+        // Arrange
+        RequestLog log = new RequestLog(out, RequestLog.Level.INFO, 1, 16, 20, false);
+
+        // Act
+        log.log(RequestLog.Level.DEBUG, "show_task_status_form", null, null, null);
+        log.log(RequestLog.Level.INFO, "check_task_status", "student123", "task \"1\"", "Submitted");
+        int written = log.drain();
+
+        // Assert
+        assertEquals(1, written);
+        String line = output();
+        assertTrue(line, line.endsWith(" INFO event=check_task_status studentId=\"student123\" taskId=\"task \\\"1\\\"\" status=\"Submitted\"\n"));
+        assertFalse(log.isEnabled(RequestLog.Level.DEBUG));
+    }
+
+    /**
+     * Test case to verify that events arriving while the buffer is full are dropped instead of blocking.
+     */
+    @Test
+    public void testLog_FullBufferDropsEvents() {
+        // Arrange
+        RequestLog log = new RequestLog(out, RequestLog.Level.INFO, 1, 4, 20, false);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            log.log(RequestLog.Level.INFO, "check_task_status", "student" + i, "task001", "Submitted");
+        }
+        int written = log.drain();
+        log.log(RequestLog.Level.INFO, "check_task_status", "student10", "task001", "Submitted");
+
+        // Assert: the first four are kept, and the buffer has room again after draining.
+        assertEquals(4, written);
+        assertEquals(6, log.getDroppedCount());
+        assertTrue(output().contains("studentId=\"student3\""));
+        assertFalse(output().contains("studentId=\"student4\""));
+        assertEquals(1, log.drain());
+    }
+
+    /**
+     * Test case to verify that the writer thread writes everything logged before the log is closed.
+     */
+    @Test
+    public void testClose_WriterFlushesPendingEvents() {
+        // Arrange
+        RequestLog log = new RequestLog(out, RequestLog.Level.DEBUG, 1, 1024, 1000);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            log.log(RequestLog.Level.DEBUG, "show_task_status_form", null, null, null);
+        }
+        log.close();
+
+        // Assert
+        assertEquals(100, output().split("\n").length);
+        assertEquals(0, log.getDroppedCount());
+    }
+}
@@ -0,0 +1,198 @@
+package simplews;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test driving a mix of page requests at a fixed arrival rate: the form (/taskStatus), and
+ * /checkTaskStatus for pairs that exist (hit), pairs that do not (miss) and empty IDs (invalid).
+ * The application runs in-process on a random port with {@value #STUDENTS} x {@value #TASKS} pairs,
+ * once on the in-memory store and once behind a simulated slow backend.
+ * <p>
+ * Requests are sent open-loop ({@link OpenLoopLoad}), in an order drawn from a seeded random generator,
+ * so two runs send the same requests at the same times. Each scenario overwrites its report in
+ * target/loadtest/ (request-mix-in-memory.txt, request-mix-slow-backend.txt) with throughput and
+ * p50/p99/p99.9 latency per request kind, in a fixed layout that can be diffed between builds.
+ * <p>
+ * Run with {@code mvn -Ploadtest test -Dtest=RequestMixLoadTest}, optionally with
+ * {@code -Dloadtest.rate=200} (requests per second), {@code -Dloadtest.seconds=10},
+ * {@code -Dloadtest.warm-up-seconds=3}, {@code -Dloadtest.mix=form:1,hit:6,miss:2,invalid:1},
+ * {@code -Dloadtest.seed=42} and {@code -Dloadtest.backend-latency-ms=20}.
+ */
+public class RequestMixLoadTest {
+
+    private static final int STUDENTS = 1000;
+    private static final int TASKS = 10;
+    private static final String[] KINDS = {"form", "hit", "miss", "invalid"};
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 200);
+    private static final int SECONDS = Integer.getInteger("loadtest.seconds", 10);
+    private static final int WARM_UP_SECONDS = Integer.getInteger("loadtest.warm-up-seconds", 3);
+    private static final String MIX = System.getProperty("loadtest.mix", "form:1,hit:6,miss:2,invalid:1");
+    private static final long SEED = Long.getLong("loadtest.seed", 42);
+    private static final int BACKEND_LATENCY_MS = Integer.getInteger("loadtest.backend-latency-ms", 20);
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path pairs;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        new File("target/loadtest").mkdirs();
+        pairs = folder.getRoot().toPath().resolve("pairs.csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(pairs, StandardCharsets.UTF_8))) {
+            out.println("studentId,taskId,status");
+            for (int student = 0; student < STUDENTS; student++) {
+                for (int task = 0; task < TASKS; task++) {
+                    out.println("student" + student + ",task" + task + "," + TaskStatus.fromOrdinal((student + task) % 3).name());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test case to measure the mix on the in-memory store.
+     */
+    @Test
+    public void testInMemoryBackend() throws Exception {
+        measure("in-memory", 0);
+    }
+
+    /**
+     * Test case to measure the mix with every store call delayed, as by a remote database.
+     */
+    @Test
+    public void testSlowBackend() throws Exception {
+        measure("slow-backend", BACKEND_LATENCY_MS);
+    }
+
+    private static void measure(String scenario, int backendLatencyMs) throws Exception {
+        // Command-line arguments, since default properties would lose to application.properties.
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Runner.class).run(
+                "--server.port=0",
+                "--simplews.import.file=" + pairs,
+                "--simplews.store.simulated-latency-ms=" + backendLatencyMs,
+                "--simplews.request-log.level=OFF");
+        try {
+            String base = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            Random random = new Random(SEED);
+            OpenLoopLoad.run(requests(base, random, RATE * WARM_UP_SECONDS), RATE, Long.MAX_VALUE);
+            OpenLoopLoad.Result result = OpenLoopLoad.run(requests(base, random, RATE * SECONDS), RATE, Long.MAX_VALUE);
+
+            report(scenario, backendLatencyMs, result);
+            assertEquals("Every request should get a page", result.getResponses(), result.count(200));
+            assertTrue("The server should keep up with " + RATE + " requests per second",
+                    result.getResponses() / result.getElapsedSeconds() > 0.9 * RATE);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static List<OpenLoopLoad.Request> requests(String base, Random random, int count) throws IOException {
+        Map<String, Integer> weights = parseMix(MIX);
+        int total = 0;
+        for (int weight : weights.values()) {
+            total += weight;
+        }
+        List<OpenLoopLoad.Request> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int pick = random.nextInt(total);
+            String kind = null;
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    kind = entry.getKey();
+                    break;
+                }
+            }
+            requests.add(new OpenLoopLoad.Request(kind, new URL(base + pathOf(kind, random))));
+        }
+        return requests;
+    }
+
+    private static String pathOf(String kind, Random random) {
+        switch (kind) {
+            case "form":
+                return "/taskStatus";
+            case "hit":
+                return "/checkTaskStatus?studentId=student" + random.nextInt(STUDENTS) + "&taskId=task" + random.nextInt(TASKS);
+            case "miss":
+                return "/checkTaskStatus?studentId=student" + (STUDENTS + random.nextInt(STUDENTS)) + "&taskId=task" + random.nextInt(TASKS);
+            default:
+                return "/checkTaskStatus?studentId=&taskId=task" + random.nextInt(TASKS);
+        }
+    }
+
+    // "form:1,hit:6" to {form=1, hit=6}, in the fixed order of KINDS.
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> given = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kindAndWeight = part.trim().split(":");
+            given.put(kindAndWeight[0].trim(), Integer.parseInt(kindAndWeight[1].trim()));
+        }
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String kind : KINDS) {
+            Integer weight = given.remove(kind);
+            if (weight != null && weight > 0) {
+                weights.put(kind, weight);
+            }
+        }
+        if (!given.isEmpty() || weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix takes weights for " + String.join(", ", KINDS) + ": " + mix);
+        }
+        return weights;
+    }
+
+    private static void report(String scenario, int backendLatencyMs, OpenLoopLoad.Result result) throws IOException {
+        File file = new File("target/loadtest/request-mix-" + scenario + ".txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.printf("# scenario=%s rate=%d/s seconds=%d warm-up-seconds=%d mix=%s seed=%d backend-latency-ms=%d%n",
+                    scenario, RATE, SECONDS, WARM_UP_SECONDS, MIX, SEED, backendLatencyMs);
+            out.printf("throughput_per_second %.1f%n", result.getResponses() / result.getElapsedSeconds());
+            out.printf("%-8s %9s %7s %9s %9s %9s %9s%n", "kind", "responses", "errors", "p50_ms", "p99_ms", "p999_ms", "max_ms");
+            for (String kind : KINDS) {
+                if (result.getLatency(kind) != null) {
+                    line(out, kind, result.getLatency(kind), -1);
+                }
+            }
+            line(out, "all", result.getLatency(), result.getResponses() - result.count(200));
+        }
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            System.out.println(line);
+        }
+    }
+
+    // Errors are only known overall, so the per-kind rows leave them out (-1 prints as "-").
+    private static void line(PrintWriter out, String kind, LatencyHistogram latency, long errors) {
+        out.printf("%-8s %9d %7s %9.2f %9.2f %9.2f %9.2f%n", kind, latency.getCount(), errors >= 0 ? Long.toString(errors) : "-",
+                millis(latency.valueAtQuantile(0.5)), millis(latency.valueAtQuantile(0.99)),
+                millis(latency.valueAtQuantile(0.999)), millis(latency.getMaxNanos()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,62 @@
+package simplews;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the ShardRing class.
+ * Verifies that students are spread evenly and that adding a node moves only the students it takes over.
+ */
+public class ShardRingTest {
+
+    private static final int STUDENTS = 30000;
+
+    /**
+     * Test case to verify that every node gets roughly its share of the students.
+     */
+    @Test
+    public void testOwnerOf_SpreadsStudentsEvenly() {
+        // Arrange
+        ShardRing ring = new ShardRing(Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080"), 160);
+        Map<String, Integer> counts = new HashMap<>();
+
+        // Act
+        for (int i = 0; i < STUDENTS; i++) {
+            counts.merge(ring.ownerOf("student" + i), 1, Integer::sum);
+        }
+
+        // Assert: within 20% of an even third each.
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue("Uneven share: " + counts, Math.abs(count - STUDENTS / 3) < STUDENTS / 3 / 5);
+        }
+    }
+
+    /**
+     * Test case to verify that a new node only takes students over, and existing nodes keep the rest.
+     */
+    @Test
+    public void testOwnerOf_AddingNodeMovesOnlyItsShare() {
+        // Arrange
+        ShardRing before = new ShardRing(Arrays.asList("http://a:8080", "http://b:8080/"), 160);
+        ShardRing after = new ShardRing(Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080"), 160);
+        int moved = 0;
+
+        // Act & Assert
+        for (int i = 0; i < STUDENTS; i++) {
+            String oldOwner = before.ownerOf("student" + i);
+            String newOwner = after.ownerOf("student" + i);
+            if (!oldOwner.equals(newOwner)) {
+                assertEquals("http://c:8080", newOwner); // Nothing moves between a and b.
+                moved++;
+            }
+        }
+        assertTrue("Moved " + moved, Math.abs(moved - STUDENTS / 3) < STUDENTS / 3 / 5);
+    }
+}
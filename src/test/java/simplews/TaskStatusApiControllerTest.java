@@ -0,0 +1,150 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for the TaskStatusApiController JSON endpoints, using Spring's MockMvc so no server has to be running.
+ */
+public class TaskStatusApiControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new TaskStatusApiController(new TaskStatusService())).build();
+    }
+
+    /**
+     * Test case to verify the JSON document returned for a known pair.
+     */
+    @Test
+    public void testGetTaskStatus_KnownPair() throws Exception {
+        mockMvc.perform(get("/api/tasks/student456/task002"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(content().string(
+                        "{\"studentId\":\"student456\",\"taskId\":\"task002\",\"status\":\"UNDER_REVIEW\",\"label\":\"Under Review\"}"));
+    }
+
+    /**
+     * Test case to verify that an unknown pair returns 404 with a null status.
+     */
+    @Test
+    public void testGetTaskStatus_UnknownPair() throws Exception {
+        mockMvc.perform(get("/api/tasks/student999/taskXXX"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(
+                        "{\"studentId\":\"student999\",\"taskId\":\"taskXXX\",\"status\":null,\"label\":\"Invalid Task ID or Student ID\"}"));
+    }
+
+    /**
+     * Test case to verify that quotes and backslashes in IDs are escaped.
+     */
+    @Test
+    public void testGetTaskStatus_EscapesIds() throws Exception {
+        mockMvc.perform(get("/api/tasks/{studentId}/{taskId}", "a\"b\\c", "task001"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(
+                        "{\"studentId\":\"a\\\"b\\\\c\",\"taskId\":\"task001\",\"status\":null,"
+                                + "\"label\":\"Invalid Task ID or Student ID\"}"));
+    }
+
+    /**
+     * Test case to verify the listing of every task of a student, and of the students of a task with a given status.
+     */
+    @Test
+    public void testFindTaskStatuses_ByStudentAndByTask() throws Exception {
+        mockMvc.perform(get("/api/tasks").param("studentId", "student123"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("["
+                        + "{\"studentId\":\"student123\",\"taskId\":\"task001\",\"status\":\"SUBMITTED\",\"label\":\"Submitted\"},"
+                        + "{\"studentId\":\"student123\",\"taskId\":\"task003\",\"status\":\"COMPLETED\",\"label\":\"Completed - Feedback Available\"}"
+                        + "]"));
+        mockMvc.perform(get("/api/tasks").param("taskId", "task001").param("status", "UNDER_REVIEW"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+        mockMvc.perform(get("/api/tasks").param("studentId", "student123").param("taskId", "task001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test case to verify the per-status counts of a task.
+     */
+    @Test
+    public void testCountTaskStatuses() throws Exception {
+        mockMvc.perform(get("/api/tasks/counts").param("taskId", "task002"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"taskId\":\"task002\",\"counts\":{\"SUBMITTED\":0,\"UNDER_REVIEW\":1,\"COMPLETED\":0},\"total\":1}"));
+    }
+
+    /**
+     * Test case to verify that a batch of pairs is answered with one document per pair, in request order.
+     */
+    @Test
+    public void testGetTaskStatuses_PairBatch() throws Exception {
+        mockMvc.perform(post("/api/tasks/batch")
+                        .contentType("application/json")
+                        .content("[{\"studentId\":\"student123\",\"taskId\":\"task003\"},"
+                                + "{\"studentId\":\"student999\",\"taskId\":\"taskXXX\"},"
+                                + "{\"studentId\":\"student123\",\"taskId\":\"task001\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("["
+                        + "{\"studentId\":\"student123\",\"taskId\":\"task003\",\"status\":\"COMPLETED\",\"label\":\"Completed - Feedback Available\"},"
+                        + "{\"studentId\":\"student999\",\"taskId\":\"taskXXX\",\"status\":null,\"label\":\"Invalid Task ID or Student ID\"},"
+                        + "{\"studentId\":\"student123\",\"taskId\":\"task001\",\"status\":\"SUBMITTED\",\"label\":\"Submitted\"}"
+                        + "]"));
+    }
+
+    /**
+     * Test case to verify the one-student, many-tasks form of the batch lookup.
+     */
+    @Test
+    public void testGetTaskStatuses_StudentBatch() throws Exception {
+        mockMvc.perform(get("/api/tasks/batch").param("studentId", "student123").param("taskIds", "task001,task002"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("["
+                        + "{\"studentId\":\"student123\",\"taskId\":\"task001\",\"status\":\"SUBMITTED\",\"label\":\"Submitted\"},"
+                        + "{\"studentId\":\"student123\",\"taskId\":\"task002\",\"status\":null,\"label\":\"Invalid Task ID or Student ID\"}"
+                        + "]"));
+    }
+
+    /**
+     * Test case to verify that batches above the configured limit are rejected.
+     */
+    @Test
+    public void testGetTaskStatuses_RejectsOversizedBatch() throws Exception {
+        MockMvc limited = MockMvcBuilders.standaloneSetup(new TaskStatusApiController(new TaskStatusService(), null, 1)).build();
+        limited.perform(get("/api/tasks/batch").param("studentId", "student123").param("taskIds", "task001,task002"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test case to verify that control characters are escaped and non-ASCII characters are encoded as UTF-8.
+     */
+    @Test
+    public void testWriteStatus_EncodesNonAsciiAsUtf8() throws Exception {
+        // Arrange: a tab, an accented letter and a character outside the Basic Multilingual Plane.
+        String studentId = "s\t\u00e9\ud83d\ude00";
+
+        // Act
+        TaskStatusJson.Buffer json = TaskStatusJson.buffer();
+        TaskStatusJson.writeStatus(json, studentId, "task001", TaskStatus.COMPLETED);
+
+        // Assert
+        byte[] expected = ("{\"studentId\":\"s\\u0009\u00e9\ud83d\ude00\",\"taskId\":\"task001\","
+                + "\"status\":\"COMPLETED\",\"label\":\"Completed - Feedback Available\"}").getBytes("UTF-8");
+        assertArrayEquals(expected, Arrays.copyOf(json.array(), json.length()));
+    }
+}
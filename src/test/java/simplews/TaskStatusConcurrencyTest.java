@@ -0,0 +1,213 @@
+package simplews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Multi-threaded stress tests for concurrent status updates.
+ * Many writer threads race on the same tasks while reader threads poll them, and the tests
+ * verify that no update is lost, no transition is applied twice, and readers always see a valid status.
+ */
+public class TaskStatusConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int STUDENTS = 200;
+    private static final int TASKS = 10;
+
+    /**
+     * Test case to verify that when every thread tries to apply every transition to every task,
+     * each transition is applied exactly once and all tasks end up Completed.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentTransitions_EachTransitionAppliedExactlyOnce() throws Exception {
+        // Arrange
+        TaskStatusService service = new TaskStatusService(new InMemoryTaskStatusStore());
+        AtomicInteger applied = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writersDone = new AtomicBoolean();
+        AtomicInteger invalidReads = new AtomicInteger();
+
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            writers.add(() -> {
+                start.await();
+                for (TaskStatus target : TaskStatus.values()) {
+                    for (int s = 0; s < STUDENTS; s++) {
+                        for (int t = 0; t < TASKS; t++) {
+                            if (service.transitionTaskStatus("student" + s, "task" + t, target)) {
+                                applied.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        Runnable reader = () -> {
+            while (!writersDone.get()) {
+                for (int s = 0; s < STUDENTS; s += 7) {
+                    String status = service.getTaskStatus("student" + s, "task" + (s % TASKS));
+                    if (!status.equals(TaskStatusService.INVALID_STATUS_MESSAGE) && TaskStatus.fromLabel(status) == null) {
+                        invalidReads.incrementAndGet();
+                    }
+                }
+            }
+        };
+
+        // Act
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 2);
+        try {
+            Future<?> reader1 = pool.submit(reader);
+            Future<?> reader2 = pool.submit(reader);
+            List<Future<Void>> results = new ArrayList<>();
+            for (Callable<Void> writer : writers) {
+                results.add(pool.submit(writer));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get(50, TimeUnit.SECONDS);
+            }
+            writersDone.set(true);
+            reader1.get(5, TimeUnit.SECONDS);
+            reader2.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Assert: three transitions (new -> Submitted -> Under Review -> Completed) per pair, never more.
+        assertEquals(STUDENTS * TASKS * 3, applied.get());
+        assertEquals(0, invalidReads.get());
+        for (int s = 0; s < STUDENTS; s++) {
+            for (int t = 0; t < TASKS; t++) {
+                assertEquals(TaskStatus.COMPLETED.getLabel(), service.getTaskStatus("student" + s, "task" + t));
+            }
+        }
+    }
+
+    /**
+     * Test case to verify that pairs inserted by many threads at once, while the index keeps growing,
+     * are all present afterwards and that pre-existing pairs stay readable throughout.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentInsertsDuringResize_NoLostUpdates() throws Exception {
+        // Arrange
+        TaskStatusIndex index = new TaskStatusIndex();
+        index.put("student123", "task001", TaskStatus.UNDER_REVIEW);
+        int perThread = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writersDone = new AtomicBoolean();
+        AtomicInteger missedReads = new AtomicInteger();
+
+        // Act
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            Future<?> reader = pool.submit(() -> {
+                while (!writersDone.get()) {
+                    if (index.get("student123", "task001") != TaskStatus.UNDER_REVIEW) {
+                        missedReads.incrementAndGet();
+                    }
+                }
+            });
+            List<Future<?>> results = new ArrayList<>();
+            for (int w = 0; w < THREADS; w++) {
+                final int writer = w;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        index.put("student" + writer, "task" + i, TaskStatus.fromOrdinal(i % 3));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(50, TimeUnit.SECONDS);
+            }
+            writersDone.set(true);
+            reader.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(THREADS * perThread + 1, index.size());
+        assertEquals(0, missedReads.get());
+        for (int w = 0; w < THREADS; w++) {
+            for (int i = 0; i < perThread; i++) {
+                TaskStatus status = index.get("student" + w, "task" + i);
+                assertNotNull(status);
+                assertEquals(TaskStatus.fromOrdinal(i % 3), status);
+            }
+        }
+    }
+
+    /**
+     * Test case to verify that the secondary indexes and per-task counts agree with the pairs
+     * themselves after many threads created and advanced pairs at once.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentTransitions_SecondaryIndexesAgree() throws Exception {
+        // Arrange
+        InMemoryTaskStatusStore store = new InMemoryTaskStatusStore();
+        TaskStatusService service = new TaskStatusService(store);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act: every thread walks every pair through the workflow, so they race on each step.
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int w = 0; w < THREADS; w++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int s = 0; s < STUDENTS; s++) {
+                        for (int t = 0; t < TASKS; t++) {
+                            for (TaskStatus status : TaskStatus.values()) {
+                                if ((s + t) % 3 >= status.ordinal()) {
+                                    service.transitionTaskStatus("student" + s, "task" + t, status);
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(50, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Assert
+        for (int t = 0; t < TASKS; t++) {
+            long[] expected = new long[TaskStatus.values().length];
+            for (int s = 0; s < STUDENTS; s++) {
+                expected[(s + t) % 3]++;
+            }
+            long[] counts = new long[expected.length];
+            store.countByStatus("task" + t, counts);
+            assertArrayEquals(expected, counts);
+            AtomicInteger students = new AtomicInteger();
+            service.forEachTaskStatusOfTask("task" + t, (studentId, taskId, status) -> students.incrementAndGet());
+            assertEquals(STUDENTS, students.get());
+        }
+        for (int s = 0; s < STUDENTS; s++) {
+            assertEquals(TASKS, service.findTaskStatusesOfStudent("student" + s).size());
+        }
+    }
+}
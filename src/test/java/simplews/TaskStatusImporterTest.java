@@ -0,0 +1,223 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for the bulk import: parsing CSV and NDJSON exports, validation, deduplication, and the swap into the service.
+ */
+public class TaskStatusImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TaskStatusService service;
+    private TaskStatusImporter importer;
+
+    @Before
+    public void setUp() {
+        service = new TaskStatusService();
+        // Tiny chunks, so that even small files are split across many parallel tasks.
+        importer = new TaskStatusImporter(service, null, 4, 10, "", 64);
+    }
+
+    /**
+     * Test case to verify a CSV export with a header, a byte order mark, CRLF line ends, quoted fields,
+     * duplicates and invalid rows.
+     */
+    @Test
+    public void testImportCsv_HeaderQuotesDuplicatesAndInvalidRows() throws IOException {
+        // Arrange: columns in another order, plus one the import does not use.
+        Path file = write("statuses.csv", "\uFEFFtask_id,Student ID,course,status\r\n"
+                + "task001,s1,CS101,SUBMITTED\r\n"
+                + "\"task,2\",\"s\"\"1\",CS101,Under Review\r\n"
+                + "task001,s1,CS101,COMPLETED\r\n"   // Duplicate: the most advanced status wins.
+                + "task001,s1,CS101,SUBMITTED\r\n"   // Duplicate: does not move the pair back.
+                + "task003,s2,CS101,Done\r\n"        // Invalid status.
+                + ",s2,CS101,SUBMITTED\r\n"          // Empty task ID.
+                + "\r\n");
+
+        // Act
+        TaskStatusImporter.Report report = importer.importFile(file, null);
+
+        // Assert
+        assertTrue(report.isApplied());
+        assertEquals(TaskStatusImporter.Format.CSV, report.getFormat());
+        assertEquals(4, report.getRows());
+        assertEquals(2, report.getPairs());
+        assertEquals(2, report.getDuplicates());
+        assertEquals(2, report.getInvalidRows());
+        assertEquals(2, report.getProblems().size());
+        assertEquals(TaskStatus.COMPLETED, service.findTaskStatus("s1", "task001"));
+        assertEquals(TaskStatus.UNDER_REVIEW, service.findTaskStatus("s\"1", "task,2"));
+        assertNull(service.findTaskStatus("student123", "task001")); // The sample data was replaced.
+    }
+
+    /**
+     * Test case to verify an NDJSON export, with extra and nested fields, escapes and non-ASCII IDs.
+     */
+    @Test
+    public void testImportNdjson_FastAndSlowPaths() throws IOException {
+        // Arrange
+        Path file = write("statuses.ndjson", ""
+                + "{\"studentId\":\"s1\",\"taskId\":\"t1\",\"status\":\"SUBMITTED\",\"label\":\"Submitted\"}\n"
+                + "{ \"score\": 7, \"taskId\" : \"t2\", \"studentId\": \"s1\", \"status\": \"Completed - Feedback Available\" }\n"
+                + "{\"studentId\":\"s\\\"2\",\"taskId\":\"t1\",\"status\":\"UNDER_REVIEW\",\"meta\":{\"a\":[1,2]}}\n"
+                + "{\"studentId\":\"\u00e9l\u00e8ve\",\"taskId\":\"t1\",\"status\":\"SUBMITTED\"}\n"
+                + "{\"studentId\":\"s3\",\"taskId\":\"t1\",\"status\":null}\n"
+                + "not json\n");
+
+        // Act
+        TaskStatusImporter.Report report = importer.importFile(file, null);
+
+        // Assert
+        assertTrue(report.isApplied());
+        assertEquals(TaskStatusImporter.Format.NDJSON, report.getFormat());
+        assertEquals(4, report.getPairs());
+        assertEquals(2, report.getInvalidRows());
+        assertEquals(TaskStatus.SUBMITTED, service.findTaskStatus("s1", "t1"));
+        assertEquals(TaskStatus.COMPLETED, service.findTaskStatus("s1", "t2"));
+        assertEquals(TaskStatus.UNDER_REVIEW, service.findTaskStatus("s\"2", "t1"));
+        assertEquals(TaskStatus.SUBMITTED, service.findTaskStatus("\u00e9l\u00e8ve", "t1"));
+    }
+
+    /**
+     * Test case to verify that every row of a file split into many chunks is imported exactly once.
+     */
+    @Test
+    public void testImportCsv_ManyChunks() throws IOException {
+        // Arrange
+        StringBuilder csv = new StringBuilder();
+        for (int student = 0; student < 500; student++) {
+            for (int task = 0; task < 20; task++) {
+                csv.append("student").append(student).append(",task").append(task).append(',')
+                        .append(TaskStatus.fromOrdinal((student + task) % 3).name()).append('\n');
+            }
+        }
+        Path file = write("statuses.csv", csv.toString());
+
+        // Act
+        TaskStatusImporter.Report report = importer.importFile(file, TaskStatusImporter.Format.CSV);
+
+        // Assert
+        assertEquals(10000, report.getRows());
+        assertEquals(10000, report.getPairs());
+        assertEquals(0, report.getDuplicates());
+        assertEquals(0, report.getInvalidRows());
+        for (int student = 0; student < 500; student++) {
+            for (int task = 0; task < 20; task++) {
+                assertEquals(TaskStatus.fromOrdinal((student + task) % 3), service.findTaskStatus("student" + student, "task" + task));
+            }
+        }
+    }
+
+    /**
+     * Test case to verify that a file with too many invalid rows is refused and the current pairs are kept.
+     */
+    @Test
+    public void testImport_RefusedKeepsCurrentPairs() throws IOException {
+        // Arrange: a file in the wrong format (more than the 10 invalid rows allowed).
+        StringBuilder rows = new StringBuilder("s1;t1;SUBMITTED\n");
+        for (int i = 0; i < 20; i++) {
+            rows.append("s").append(i).append(";t1;SUBMITTED\n");
+        }
+        Path file = write("statuses.csv", rows.toString());
+
+        // Act
+        TaskStatusImporter.Report report = importer.importFile(file, null);
+
+        // Assert
+        assertFalse(report.isApplied());
+        assertEquals(21, report.getInvalidRows());
+        assertEquals(TaskStatusImportParser.MAX_REPORTED_PROBLEMS, report.getProblems().size());
+        assertEquals(TaskStatus.SUBMITTED, service.findTaskStatus("student123", "task001"));
+    }
+
+    /**
+     * Test case to verify that a swap makes every pair look modified and updates the per-status metrics.
+     */
+    @Test
+    public void testImport_InvalidatesValidatorsAndMetrics() throws Exception {
+        // Arrange
+        TaskStatusMetrics metrics = new TaskStatusMetrics();
+        service = new TaskStatusService(InMemoryTaskStatusStore.withSampleData(), metrics);
+        importer = new TaskStatusImporter(service, null, 1, 0, "", 1 << 20);
+        metrics.toPrometheusText(service); // Counts the sample data.
+        long lastModified = service.getLastModified("s1", "t1");
+        Thread.sleep(5);
+
+        // Act
+        importer.importFile(write("statuses.csv", "s1,t1,COMPLETED\ns2,t1,COMPLETED\n"), null);
+
+        // Assert
+        assertTrue(service.getLastModified("s1", "t1") > lastModified);
+        String text = metrics.toPrometheusText(service);
+        assertTrue(text, text.contains("simplews_task_statuses{status=\"COMPLETED\"} 2\n"));
+        assertTrue(text, text.contains("simplews_task_statuses{status=\"SUBMITTED\"} 0\n"));
+    }
+
+    /**
+     * Test case to verify that the upload endpoint applies a small body and refuses one over its size limit.
+     */
+    @Test
+    public void testUpload_LimitsBodySize() throws Exception {
+        // Arrange
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new TaskStatusImportController(importer, 20)).build();
+
+        // Act & Assert
+        mockMvc.perform(post("/api/import").contentType("text/csv").content("s1,t1,COMPLETED\ns2,t1,COMPLETED\n"))
+                .andExpect(status().isPayloadTooLarge());
+        assertEquals(TaskStatus.SUBMITTED, service.findTaskStatus("student123", "task001"));
+        mockMvc.perform(post("/api/import").contentType("text/csv").content("s1,t1,COMPLETED\n"))
+                .andExpect(status().isOk());
+        assertEquals(TaskStatus.COMPLETED, service.findTaskStatus("s1", "t1"));
+    }
+
+    /**
+     * Test case to verify that a body without a Content-Length, as in a chunked upload, is cut off at the size limit.
+     */
+    @Test
+    public void testUpload_LimitsChunkedBody() throws Exception {
+        // Arrange
+        TaskStatusImportController controller = new TaskStatusImportController(importer, 20);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/import") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContentType("text/csv");
+        request.setContent("s1,t1,COMPLETED\ns2,t1,COMPLETED\n".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        ResponseEntity<Object> response = controller.importTaskStatuses(null, request);
+
+        // Assert
+        assertEquals(413, response.getStatusCodeValue());
+        assertEquals(TaskStatus.SUBMITTED, service.findTaskStatus("student123", "task001"));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,160 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the TaskStatusIndex class.
+ * Verifies lookups, overwrites, growth, the secondary indexes and that IDs containing "-" cannot collide.
+ */
+public class TaskStatusIndexTest {
+
+    private TaskStatusIndex index;
+
+    @Before
+    public void setUp() {
+        index = new TaskStatusIndex();
+    }
+
+    /**
+     * Test case to verify a stored pair can be read back and an unknown pair returns null.
+     */
+    @Test
+    public void testGet_KnownAndUnknownPairs() {
+        // Arrange
+        index.put("student123", "task001", TaskStatus.SUBMITTED);
+
+        // Act & Assert
+        assertEquals(TaskStatus.SUBMITTED, index.get("student123", "task001"));
+        assertNull(index.get("student123", "task002")); // Known student, unknown task.
+        assertNull(index.get("student999", "task001")); // Unknown student, known task.
+    }
+
+    /**
+     * Test case to verify that putting an existing pair overwrites its status instead of adding a new entry.
+     */
+    @Test
+    public void testPut_OverwritesExistingPair() {
+        // Arrange
+        index.put("student456", "task002", TaskStatus.SUBMITTED);
+
+        // Act
+        index.put("student456", "task002", TaskStatus.UNDER_REVIEW);
+
+        // Assert
+        assertEquals(TaskStatus.UNDER_REVIEW, index.get("student456", "task002"));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Test case to verify that pairs which would produce the same "studentId-taskId" string stay distinct.
+     */
+    @Test
+    public void testGet_DashInIdsDoesNotCollide() {
+        // Arrange: both pairs concatenate to "a-b-c".
+        index.put("a-b", "c", TaskStatus.SUBMITTED);
+        index.put("a", "b-c", TaskStatus.COMPLETED);
+
+        // Act & Assert
+        assertEquals(TaskStatus.SUBMITTED, index.get("a-b", "c"));
+        assertEquals(TaskStatus.COMPLETED, index.get("a", "b-c"));
+    }
+
+    /**
+     * Test case to verify that the index keeps every pair when it grows well beyond its initial capacity.
+     */
+    @Test
+    public void testPut_GrowsBeyondInitialCapacity() {
+        // Arrange
+        int students = 300;
+        int tasks = 20;
+        for (int s = 0; s < students; s++) {
+            for (int t = 0; t < tasks; t++) {
+                index.put("student" + s, "task" + t, TaskStatus.fromOrdinal((s + t) % 3));
+            }
+        }
+
+        // Assert
+        assertEquals(students * tasks, index.size());
+        for (int s = 0; s < students; s++) {
+            for (int t = 0; t < tasks; t++) {
+                assertEquals(TaskStatus.fromOrdinal((s + t) % 3), index.get("student" + s, "task" + t));
+            }
+        }
+    }
+
+    /**
+     * Test case to verify that a pair is removed only while it has the expected status, and can be added again afterwards.
+     */
+    @Test
+    public void testCompareAndRemove_OnlyExpectedStatus() {
+        // Arrange
+        index.put("student123", "task001", TaskStatus.SUBMITTED);
+
+        // Act
+        TaskStatus refused = index.compareAndRemove("student123", "task001", TaskStatus.COMPLETED);
+        TaskStatus removed = index.compareAndRemove("student123", "task001", TaskStatus.SUBMITTED);
+
+        // Assert
+        assertEquals(TaskStatus.SUBMITTED, refused);
+        assertEquals(TaskStatus.SUBMITTED, removed);
+        assertNull(index.get("student123", "task001"));
+        assertEquals(0, index.size());
+        assertNull(index.compareAndExchange("student123", "task001", null, TaskStatus.UNDER_REVIEW));
+        assertEquals(TaskStatus.UNDER_REVIEW, index.get("student123", "task001"));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Test case to verify that the per-student and per-task views and the per-task counts follow
+     * status changes and removals, and list no pair twice after a removed pair is re-added across a resize.
+     */
+    @Test
+    public void testSecondaryIndexes_FollowChangesRemovalsAndGrowth() {
+        // Arrange
+        index.put("s1", "t1", TaskStatus.SUBMITTED);
+        index.put("s1", "t2", TaskStatus.SUBMITTED);
+        index.put("s2", "t1", TaskStatus.SUBMITTED);
+        index.put("s1", "t1", TaskStatus.UNDER_REVIEW);
+        index.compareAndRemove("s2", "t1", TaskStatus.SUBMITTED);
+        index.compareAndRemove("s1", "t2", TaskStatus.SUBMITTED);
+        for (int i = 0; i < 1000; i++) { // Grows the table, leaving the removed slots behind.
+            index.put("other" + i, "t3", TaskStatus.COMPLETED);
+        }
+
+        // Act
+        index.put("s1", "t2", TaskStatus.COMPLETED);
+
+        // Assert
+        assertEquals(Arrays.asList("t1=UNDER_REVIEW", "t2=COMPLETED"), tasksOf("s1"));
+        assertEquals(Collections.emptyList(), tasksOf("s2"));
+        List<String> studentsOfT1 = new ArrayList<>();
+        index.forEachStudentOf("t1", (studentId, taskId, status) -> studentsOfT1.add(studentId + "=" + status));
+        assertEquals(Collections.singletonList("s1=UNDER_REVIEW"), studentsOfT1);
+        assertArrayEquals(new long[]{0, 1, 0}, countsOf("t1"));
+        assertArrayEquals(new long[]{0, 0, 1}, countsOf("t2"));
+        assertArrayEquals(new long[]{0, 0, 1000}, countsOf("t3"));
+        assertArrayEquals(new long[]{0, 0, 0}, countsOf("unknown"));
+    }
+
+    private List<String> tasksOf(String studentId) {
+        List<String> tasks = new ArrayList<>();
+        index.forEachTaskOf(studentId, (pairStudentId, taskId, status) -> tasks.add(taskId + "=" + status));
+        return tasks;
+    }
+
+    private long[] countsOf(String taskId) {
+        long[] counts = new long[TaskStatus.values().length];
+        index.countByStatus(taskId, counts);
+        return counts;
+    }
+}
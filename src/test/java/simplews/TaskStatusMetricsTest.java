@@ -0,0 +1,113 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for TaskStatusMetrics: lookup outcomes recorded by the service, request timing by the filter,
+ * and the Prometheus text served by MetricsController.
+ */
+public class TaskStatusMetricsTest {
+
+    private TaskStatusMetrics metrics;
+    private TaskStatusService service;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        metrics = new TaskStatusMetrics();
+        service = new TaskStatusService(InMemoryTaskStatusStore.withSampleData(), metrics);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new TaskStatusApiController(service), new MetricsController(metrics, service))
+                .addFilters(new RequestMetricsFilter(metrics))
+                .build();
+    }
+
+    /**
+     * Test case to verify that lookups are counted as hit, miss or invalid.
+     */
+    @Test
+    public void testGetTaskStatus_CountsOutcomes() {
+        // Act
+        service.getTaskStatus("student123", "task001");
+        service.getTaskStatus("student123", "task003");
+        service.getTaskStatus("student999", "taskXXX");
+        service.getTaskStatus("", "task001");
+
+        // Assert
+        assertEquals(2, metrics.getLookupCount(TaskStatusMetrics.Outcome.HIT));
+        assertEquals(1, metrics.getLookupCount(TaskStatusMetrics.Outcome.MISS));
+        assertEquals(1, metrics.getLookupCount(TaskStatusMetrics.Outcome.INVALID));
+    }
+
+    /**
+     * Test case to verify that requests are counted per endpoint and the scrape shows them with the status gauges.
+     */
+    @Test
+    public void testMetrics_ExposesRequestsAndStatusGauges() throws Exception {
+        // Arrange
+        mockMvc.perform(get("/api/tasks/student123/task001")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/tasks/student999/taskXXX")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/metrics")); // The first scrape counts the sample data.
+        service.transitionTaskStatus("student123", "task001", TaskStatus.UNDER_REVIEW);
+
+        // Act & Assert
+        mockMvc.perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("simplews_requests_total{endpoint=\"/api/tasks/{studentId}/{taskId}\"} 2\n")))
+                .andExpect(content().string(containsString("simplews_lookups_total{outcome=\"hit\"} 1\n")))
+                .andExpect(content().string(containsString("simplews_lookups_total{outcome=\"miss\"} 1\n")))
+                .andExpect(content().string(containsString("simplews_request_latency_seconds_count{endpoint=\"/api/tasks/{studentId}/{taskId}\"} 2\n")))
+                .andExpect(content().string(containsString("simplews_task_statuses{status=\"SUBMITTED\"} 1\n")))
+                .andExpect(content().string(containsString("simplews_task_statuses{status=\"UNDER_REVIEW\"} 2\n")))
+                .andExpect(content().string(containsString("simplews_task_statuses{status=\"COMPLETED\"} 1\n")));
+        assertEquals(0, metrics.getRequestCount(TaskStatusMetrics.Endpoint.API_BATCH));
+    }
+
+    /**
+     * Test case to verify that virtual thread pinning episodes are exported once a monitor is set.
+     */
+    @Test
+    public void testMetrics_ExposesVirtualThreadPinning() {
+        // Arrange
+        assertFalse(metrics.toPrometheusText(service).contains("simplews_virtual_thread_pinned"));
+        try (VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(20))) {
+            metrics.setPinningMonitor(monitor);
+
+            // Act
+            monitor.record(Duration.ofMillis(30).toNanos());
+            monitor.record(Duration.ofMillis(20).toNanos());
+            String text = metrics.toPrometheusText(service);
+
+            // Assert
+            assertTrue(text, text.contains("simplews_virtual_thread_pinned_total 2\n"));
+            assertTrue(text, text.contains("simplews_virtual_thread_pinned_seconds_total 0.05\n"));
+        }
+    }
+
+    /**
+     * Test case to verify how request paths map to measured endpoints.
+     */
+    @Test
+    public void testEndpointForPath() {
+        assertEquals(TaskStatusMetrics.Endpoint.CHECK_TASK_STATUS, TaskStatusMetrics.Endpoint.forPath("/checkTaskStatus"));
+        assertEquals(TaskStatusMetrics.Endpoint.API_TASK_STATUS, TaskStatusMetrics.Endpoint.forPath("/api/tasks/s1/t1"));
+        assertEquals(TaskStatusMetrics.Endpoint.API_BATCH, TaskStatusMetrics.Endpoint.forPath("/api/tasks/batch"));
+        assertEquals(TaskStatusMetrics.Endpoint.API_TASK_QUERY, TaskStatusMetrics.Endpoint.forPath("/api/tasks"));
+        assertEquals(TaskStatusMetrics.Endpoint.API_TASK_COUNTS, TaskStatusMetrics.Endpoint.forPath("/api/tasks/counts"));
+        assertEquals(null, TaskStatusMetrics.Endpoint.forPath("/api/tasks/subscribe"));
+        assertEquals(null, TaskStatusMetrics.Endpoint.forPath("/metrics"));
+    }
+}
@@ -0,0 +1,86 @@
+package simplews;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the server-sent events stream end to end, on a real server, since it is written in
+ * non-blocking mode, which the mock servlet environment does not support.
+ */
+public class TaskStatusPushControllerTest {
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeClass
+    public static void setUp() {
+        context = new SpringApplicationBuilder(Runner.class).run(
+                "--server.port=0",
+                "--simplews.push.heartbeat-ms=200");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Test case to verify that a subscriber receives the current status, heartbeats, and then each change.
+     */
+    @Test
+    public void testSubscribe_StreamsCurrentStatusAndChanges() throws IOException {
+        // Arrange
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + port + "/api/tasks/subscribe?studentId=student789&taskIds=task004").openConnection();
+        connection.setReadTimeout(5000);
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            // Act
+            String first = nextStatus(in);
+            String heartbeat = nextEvent(in);
+            context.getBean(TaskStatusService.class).transitionTaskStatus("student789", "task004", TaskStatus.UNDER_REVIEW);
+            String change = nextStatus(in);
+
+            // Assert
+            assertTrue(connection.getContentType(), connection.getContentType().startsWith("text/event-stream"));
+            assertEquals("event:status|data:{\"studentId\":\"student789\",\"taskId\":\"task004\",\"status\":\"SUBMITTED\",\"label\":\"Submitted\"}", first);
+            assertEquals(":", heartbeat);
+            assertEquals("event:status|data:{\"studentId\":\"student789\",\"taskId\":\"task004\",\"status\":\"UNDER_REVIEW\",\"label\":\"Under Review\"}", change);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // The next event other than a heartbeat.
+    private static String nextStatus(BufferedReader in) throws IOException {
+        String event;
+        do {
+            event = nextEvent(in);
+        } while (event.equals(":"));
+        return event;
+    }
+
+    // The lines of the next event, joined by '|'.
+    private static String nextEvent(BufferedReader in) throws IOException {
+        StringBuilder event = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            event.append(event.length() > 0 ? "|" : "").append(line);
+        }
+        return event.toString();
+    }
+}
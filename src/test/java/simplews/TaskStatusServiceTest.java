@@ -7,7 +7,9 @@ import org.junit.Test;
 
 // Import static assertion methods for easier use (e.g., assertEquals, assertNotNull).
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for the TaskStatusService class.
@@ -106,5 +108,53 @@ public class TaskStatusServiceTest {
         assertEquals(expectedStatus, actualStatus); // Compare expected and actual status.
     }
 
+    /**
+     * Test case to verify that a task can move to the next status in the workflow.
+     */
+    @Test
+    public void testTransitionTaskStatus_SubmittedToUnderReview() {
+        // Act
+        boolean applied = taskStatusService.transitionTaskStatus("student123", "task001", TaskStatus.UNDER_REVIEW);
+
+        // Assert
+        assertTrue(applied);
+        assertEquals("Under Review", taskStatusService.getTaskStatus("student123", "task001"));
+    }
 
+    /**
+     * Test case to verify that a transition that skips a step is rejected and leaves the status unchanged.
+     */
+    @Test
+    public void testTransitionTaskStatus_SkippingReviewIsRejected() {
+        // Act
+        boolean applied = taskStatusService.transitionTaskStatus("student123", "task001", TaskStatus.COMPLETED);
+
+        // Assert
+        assertFalse(applied);
+        assertEquals("Submitted", taskStatusService.getTaskStatus("student123", "task001"));
+    }
+
+    /**
+     * Test case to verify that a new task can only be created in the Submitted status.
+     */
+    @Test
+    public void testTransitionTaskStatus_NewTaskStartsAsSubmitted() {
+        // Act & Assert
+        assertFalse(taskStatusService.transitionTaskStatus("student999", "task005", TaskStatus.UNDER_REVIEW));
+        assertTrue(taskStatusService.transitionTaskStatus("student999", "task005", TaskStatus.SUBMITTED));
+        assertEquals("Submitted", taskStatusService.getTaskStatus("student999", "task005"));
+    }
+
+    /**
+     * Test case to verify that setting a status bypasses the transition rules and returns the previous status.
+     */
+    @Test
+    public void testSetTaskStatus_OverridesCurrentStatus() {
+        // Act
+        TaskStatus previous = taskStatusService.setTaskStatus("student123", "task003", TaskStatus.SUBMITTED);
+
+        // Assert
+        assertEquals(TaskStatus.COMPLETED, previous);
+        assertEquals("Submitted", taskStatusService.getTaskStatus("student123", "task003"));
+    }
 }
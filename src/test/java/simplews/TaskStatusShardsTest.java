@@ -0,0 +1,392 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for sharded mode: a cluster of two nodes in one JVM, connected by an in-process ShardClient.
+ */
+public class TaskStatusShardsTest {
+
+    private static final String NODE_A = "http://a:8080";
+    private static final String NODE_B = "http://b:8080";
+
+    private final Map<String, TaskStatusService> services = new HashMap<>();
+    private final Map<String, TaskStatusShards> shards = new HashMap<>();
+    private final ShardClient client = new InProcessClient();
+
+    @Before
+    public void setUp() {
+        for (String node : Arrays.asList(NODE_A, NODE_B)) {
+            services.put(node, new TaskStatusService(new InMemoryTaskStatusStore()));
+        }
+        // Both nodes start alone; B joins A in the tests that rebalance.
+        shards.put(NODE_A, new TaskStatusShards(services.get(NODE_A), client, Arrays.asList(NODE_A), NODE_A, 160));
+        shards.put(NODE_B, new TaskStatusShards(services.get(NODE_B), client, Arrays.asList(NODE_A, NODE_B), NODE_B, 160));
+    }
+
+    /**
+     * Test case to verify that a rebalance hands every pair that now belongs to the new node over to it,
+     * and keeps the others.
+     */
+    @Test
+    public void testRebalance_HandsOverStudentsOfNewNode() throws Exception {
+        // Arrange: more pairs than one transfer batch.
+        TaskStatusService a = services.get(NODE_A);
+        for (int i = 0; i < 3000; i++) {
+            a.setTaskStatus("student" + i, "task001", TaskStatus.SUBMITTED);
+        }
+
+        // Act
+        Map<String, Integer> moved = shards.get(NODE_A).rebalance(Arrays.asList(NODE_A, NODE_B));
+
+        // Assert
+        ShardRing ring = new ShardRing(Arrays.asList(NODE_A, NODE_B), 160);
+        int expectedMoved = 0;
+        for (int i = 0; i < 3000; i++) {
+            String studentId = "student" + i;
+            String owner = ring.ownerOf(studentId);
+            TaskStatusService other = services.get(owner.equals(NODE_A) ? NODE_B : NODE_A);
+            assertEquals(TaskStatus.SUBMITTED, services.get(owner).findTaskStatus(studentId, "task001"));
+            assertNull(other.findTaskStatus(studentId, "task001"));
+            if (owner.equals(NODE_B)) {
+                expectedMoved++;
+            }
+        }
+        assertEquals(Integer.valueOf(expectedMoved), moved.get(NODE_B));
+    }
+
+    /**
+     * Test case to verify that the students and counts of a task are gathered from every node, and that
+     * the pairs handed over in a rebalance are counted only on their new node.
+     */
+    @Test
+    public void testTaskQueries_GatheredFromEveryNode() throws Exception {
+        // Arrange
+        TaskStatusService a = services.get(NODE_A);
+        for (int i = 0; i < 500; i++) {
+            a.setTaskStatus("student" + i, "task001", i % 5 == 0 ? TaskStatus.COMPLETED : TaskStatus.SUBMITTED);
+        }
+        shards.get(NODE_A).rebalance(Arrays.asList(NODE_A, NODE_B));
+
+        // Act
+        Map<TaskStatus, Long> counts = shards.get(NODE_A).countTaskStatuses("task001");
+        Set<String> completed = new HashSet<>();
+        shards.get(NODE_B).forEachTaskStatusOfTask("task001", TaskStatus.COMPLETED,
+                (studentId, taskId, status) -> assertTrue(completed.add(studentId)));
+
+        // Assert
+        assertEquals(Long.valueOf(400), counts.get(TaskStatus.SUBMITTED));
+        assertEquals(Long.valueOf(100), counts.get(TaskStatus.COMPLETED));
+        assertEquals(Long.valueOf(0), counts.get(TaskStatus.UNDER_REVIEW));
+        assertEquals(100, completed.size());
+    }
+
+    /**
+     * Test case to verify that pairs stored on a node that does not own their student are neither
+     * counted nor listed, so a two-node cluster reports every pair exactly once.
+     */
+    @Test
+    public void testTaskQueries_CountOnlyOwnedStudents() throws Exception {
+        // Arrange: both nodes on the same ring, with the same pairs stored on each.
+        shards.put(NODE_A, new TaskStatusShards(services.get(NODE_A), client, Arrays.asList(NODE_A, NODE_B), NODE_A, 160));
+        String onA = studentOwnedBy(NODE_A);
+        String onB = studentOwnedBy(NODE_B);
+        for (TaskStatusService service : services.values()) {
+            service.setTaskStatus(onA, "task001", TaskStatus.SUBMITTED);
+            service.setTaskStatus(onB, "task001", TaskStatus.COMPLETED);
+        }
+        TaskStatusApiController controller = new TaskStatusApiController(services.get(NODE_A), shards.get(NODE_A), 10000);
+        MockMvc nodeA = MockMvcBuilders.standaloneSetup(controller).build();
+
+        // Act
+        Map<TaskStatus, Long> countsOnA = shards.get(NODE_A).countTaskStatuses("task001");
+        Map<TaskStatus, Long> countsOnB = shards.get(NODE_B).countTaskStatuses("task001");
+        List<String> students = new ArrayList<>();
+        shards.get(NODE_B).forEachTaskStatusOfTask("task001", null, (studentId, taskId, status) -> students.add(studentId));
+
+        // Assert
+        for (Map<TaskStatus, Long> counts : Arrays.asList(countsOnA, countsOnB)) {
+            assertEquals(Long.valueOf(1), counts.get(TaskStatus.SUBMITTED));
+            assertEquals(Long.valueOf(0), counts.get(TaskStatus.UNDER_REVIEW));
+            assertEquals(Long.valueOf(1), counts.get(TaskStatus.COMPLETED));
+        }
+        assertEquals(2, students.size());
+        assertEquals(new HashSet<>(Arrays.asList(onA, onB)), new HashSet<>(students));
+        nodeA.perform(get("/api/tasks/counts").param("taskId", "task001").header(ShardClient.FORWARDED_HEADER, "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"total\":1}"))); // Only onA; onB is B's to count.
+    }
+
+    /**
+     * Test case to verify that a newer status on the receiving node is not overwritten by a handed-over one.
+     */
+    @Test
+    public void testRebalance_KeepsNewerStatusOnReceiver() throws Exception {
+        // Arrange
+        String studentId = studentOwnedBy(NODE_B);
+        services.get(NODE_A).setTaskStatus(studentId, "task001", TaskStatus.SUBMITTED);
+        services.get(NODE_B).setTaskStatus(studentId, "task001", TaskStatus.COMPLETED);
+
+        // Act
+        shards.get(NODE_A).rebalance(Arrays.asList(NODE_A, NODE_B));
+
+        // Assert
+        assertEquals(TaskStatus.COMPLETED, services.get(NODE_B).findTaskStatus(studentId, "task001"));
+        assertNull(services.get(NODE_A).findTaskStatus(studentId, "task001"));
+    }
+
+    /**
+     * Test case to verify that in sharded mode each node seeds only the sample pairs of its own students.
+     */
+    @Test
+    public void testStoreConfig_SeedsOnlyOwnedSamplePairs() {
+        // Arrange
+        ShardRing ring = new ShardRing(Arrays.asList(NODE_A, NODE_B), 160);
+        StaticListableBeanFactory noPersistence = new StaticListableBeanFactory();
+
+        // Act
+        Map<String, TaskStatusStore> stores = new HashMap<>();
+        for (String node : Arrays.asList(NODE_A, NODE_B)) {
+            stores.put(node, new TaskStatusStoreConfig().taskStatusStore(noPersistence.getBeanProvider(PersistentTaskStatusStore.class),
+                    Arrays.asList(NODE_A, NODE_B), node, 160, 0, 0, false, 100, 5000, 1000));
+        }
+
+        // Assert
+        TaskStatusStore all = InMemoryTaskStatusStore.withSampleData();
+        for (TaskKey key : Arrays.asList(new TaskKey("student123", "task001"), new TaskKey("student456", "task002"),
+                new TaskKey("student123", "task003"), new TaskKey("student789", "task004"))) {
+            String owner = ring.ownerOf(key.getStudentId());
+            String other = owner.equals(NODE_A) ? NODE_B : NODE_A;
+            assertEquals(all.find(key.getStudentId(), key.getTaskId()), stores.get(owner).find(key.getStudentId(), key.getTaskId()));
+            assertNull(stores.get(other).find(key.getStudentId(), key.getTaskId()));
+        }
+    }
+
+    /**
+     * Test case to verify that a store that cannot remove pairs refuses to rebalance before switching rings.
+     */
+    @Test
+    public void testRebalance_RefusedWithoutRemoval() throws Exception {
+        // Arrange
+        TaskStatusStore store = new SimulatedLatencyTaskStatusStore(new InMemoryTaskStatusStore(), 0) {
+            @Override
+            public boolean supportsRemoval() {
+                return false;
+            }
+        };
+        TaskStatusShards node = new TaskStatusShards(new TaskStatusService(store), client, Arrays.asList(NODE_A), NODE_A, 160);
+
+        // Act
+        try {
+            node.rebalance(Arrays.asList(NODE_A, NODE_B));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+            // Assert
+            assertEquals(Arrays.asList(NODE_A), node.getNodes());
+        }
+    }
+
+    /**
+     * Test case to verify that a batch spanning both nodes is answered in request order.
+     */
+    @Test
+    public void testFindTaskStatuses_GathersFromAllNodes() throws Exception {
+        // Arrange
+        String onA = studentOwnedBy(NODE_A);
+        String onB = studentOwnedBy(NODE_B);
+        services.get(NODE_A).setTaskStatus(onA, "task001", TaskStatus.SUBMITTED);
+        services.get(NODE_B).setTaskStatus(onB, "task002", TaskStatus.COMPLETED);
+        List<TaskKey> keys = Arrays.asList(new TaskKey(onB, "task002"), new TaskKey(onA, "task001"), new TaskKey(onB, "task009"));
+
+        // Act
+        TaskStatus[] statuses = shards.get(NODE_B).findTaskStatuses(keys);
+
+        // Assert
+        assertArrayEquals(new TaskStatus[]{TaskStatus.COMPLETED, TaskStatus.SUBMITTED, null}, statuses);
+    }
+
+    /**
+     * Test case to verify that requests for another node's student are redirected there, and others served locally,
+     * and that only requests marked as forwarded together with the shared secret skip routing.
+     */
+    @Test
+    public void testRoutingFilter_RedirectsToOwner() throws Exception {
+        // Arrange
+        String onA = studentOwnedBy(NODE_A);
+        String onB = studentOwnedBy(NODE_B);
+        services.get(NODE_B).setTaskStatus(onB, "task001", TaskStatus.SUBMITTED);
+        TaskStatusApiController controller = new TaskStatusApiController(services.get(NODE_B), shards.get(NODE_B), 10000);
+        MockMvc nodeB = MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(new ShardRoutingFilter(shards.get(NODE_B), client, "redirect", "s3cret"))
+                .build();
+
+        // Act & Assert
+        nodeB.perform(get("/api/tasks/{studentId}/task001", onA))
+                .andExpect(status().isTemporaryRedirect())
+                .andExpect(header().string("Location", NODE_A + "/api/tasks/" + onA + "/task001"));
+        nodeB.perform(get("/api/tasks/{studentId}/task001", onB))
+                .andExpect(status().isOk());
+        nodeB.perform(get("/api/tasks/{studentId}/task001", onA).header(ShardClient.FORWARDED_HEADER, "1")
+                        .header(ShardClient.SECRET_HEADER, "s3cret"))
+                .andExpect(status().isNotFound()); // Sent on by another node: always answered here.
+        nodeB.perform(get("/api/tasks/{studentId}/task001", onA).header(ShardClient.FORWARDED_HEADER, "1"))
+                .andExpect(status().isTemporaryRedirect()); // Marked by a client, without the secret: routed as usual.
+        nodeB.perform(get("/api/tasks/{studentId}/task001", onA).header(ShardClient.FORWARDED_HEADER, "1")
+                        .header(ShardClient.SECRET_HEADER, "guess"))
+                .andExpect(status().isTemporaryRedirect());
+        nodeB.perform(get("/api/tasks/batch").param("studentId", onA).param("taskIds", "task001"))
+                .andExpect(status().isTemporaryRedirect());
+        nodeB.perform(get("/api/tasks/subscribe").param("studentId", onA, onB).param("taskIds", "task001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test case to verify that in forward mode a subscription for another node's students is still
+     * redirected, as an event stream cannot be relayed.
+     */
+    @Test
+    public void testRoutingFilter_RedirectsSubscriptionsWhenForwarding() throws Exception {
+        // Arrange
+        String onA = studentOwnedBy(NODE_A);
+        TaskStatusApiController controller = new TaskStatusApiController(services.get(NODE_B), shards.get(NODE_B), 10000);
+        MockMvc nodeB = MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(new ShardRoutingFilter(shards.get(NODE_B), client, "forward", "s3cret"))
+                .build();
+
+        // Act & Assert
+        nodeB.perform(get("/api/tasks/subscribe?studentId={studentId}&taskIds=task001", onA))
+                .andExpect(status().isTemporaryRedirect())
+                .andExpect(header().string("Location", NODE_A + "/api/tasks/subscribe?studentId=" + onA + "&taskIds=task001"));
+    }
+
+    /**
+     * Test case to verify that a comma in the studentId of a single-student endpoint is part of the ID,
+     * and only splits the students of a subscription.
+     */
+    @Test
+    public void testRoutingFilter_SplitsOnlyListParameters() throws Exception {
+        // Arrange: an ID "x,y" owned by node B whose parts are owned by different nodes.
+        ShardRing ring = new ShardRing(Arrays.asList(NODE_A, NODE_B), 160);
+        String onA = studentOwnedBy(NODE_A);
+        String combined = null;
+        for (int i = 0; combined == null; i++) {
+            String candidate = onA + ",student" + i;
+            if (ring.ownerOf("student" + i).equals(NODE_B) && ring.ownerOf(candidate).equals(NODE_B)) {
+                combined = candidate;
+            }
+        }
+        TaskStatusApiController controller = new TaskStatusApiController(services.get(NODE_B), shards.get(NODE_B), 10000);
+        MockMvc nodeB = MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(new ShardRoutingFilter(shards.get(NODE_B), client, "redirect", "s3cret"))
+                .build();
+
+        // Act & Assert
+        nodeB.perform(get("/api/tasks/batch").param("studentId", combined).param("taskIds", "task001"))
+                .andExpect(status().isOk());
+        nodeB.perform(get("/api/tasks/subscribe").param("studentId", combined).param("taskIds", "task001,task002"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test case to verify that the node-to-node endpoints need the shared secret, and do not exist when not sharded.
+     */
+    @Test
+    public void testShardController_RequiresSecret() throws Exception {
+        // Arrange
+        MockMvc nodeB = MockMvcBuilders.standaloneSetup(new ShardController(shards.get(NODE_B), "s3cret")).build();
+        MockMvc noSecret = MockMvcBuilders.standaloneSetup(new ShardController(shards.get(NODE_B), "")).build();
+        TaskStatusShards alone = new TaskStatusShards(services.get(NODE_A), client, Collections.emptyList(), "", 160);
+        MockMvc notSharded = MockMvcBuilders.standaloneSetup(new ShardController(alone, "s3cret")).build();
+        String pairs = "[{\"studentId\":\"s1\",\"taskId\":\"t1\",\"status\":\"SUBMITTED\"}]";
+
+        // Act & Assert
+        nodeB.perform(post("/api/shard/pairs").contentType("application/json").content(pairs))
+                .andExpect(status().isForbidden());
+        nodeB.perform(post("/api/shard/pairs").contentType("application/json").content(pairs)
+                        .header(ShardClient.SECRET_HEADER, "guess"))
+                .andExpect(status().isForbidden());
+        nodeB.perform(post("/api/shard/rebalance").param("nodes", NODE_B))
+                .andExpect(status().isForbidden());
+        noSecret.perform(post("/api/shard/pairs").contentType("application/json").content(pairs)
+                        .header(ShardClient.SECRET_HEADER, ""))
+                .andExpect(status().isForbidden());
+        notSharded.perform(post("/api/shard/pairs").contentType("application/json").content(pairs)
+                        .header(ShardClient.SECRET_HEADER, "s3cret"))
+                .andExpect(status().isNotFound());
+        assertNull(services.get(NODE_B).findTaskStatus("s1", "t1"));
+        nodeB.perform(post("/api/shard/pairs").contentType("application/json").content(pairs)
+                        .header(ShardClient.SECRET_HEADER, "s3cret"))
+                .andExpect(status().isOk());
+        assertEquals(TaskStatus.SUBMITTED, services.get(NODE_B).findTaskStatus("s1", "t1"));
+    }
+
+    private static String studentOwnedBy(String node) {
+        ShardRing ring = new ShardRing(Arrays.asList(NODE_A, NODE_B), 160);
+        for (int i = 0; ; i++) {
+            if (ring.ownerOf("student" + i).equals(node)) {
+                return "student" + i;
+            }
+        }
+    }
+
+    /**
+     * Calls the other node's shard methods directly, as HttpShardClient does over HTTP.
+     */
+    private class InProcessClient implements ShardClient {
+        @Override
+        public TaskStatus[] findTaskStatuses(String node, List<TaskKey> keys) {
+            return services.get(node).findTaskStatuses(keys);
+        }
+
+        @Override
+        public List<TaskStatusEntry> findTaskStatusesOfTask(String node, String taskId, TaskStatus status) {
+            List<TaskStatusEntry> entries = new ArrayList<>();
+            shards.get(node).forEachOwnedTaskStatusOfTask(taskId, status,
+                    (studentId, pairTaskId, pairStatus) -> entries.add(new TaskStatusEntry(studentId, pairTaskId, pairStatus)));
+            return entries;
+        }
+
+        @Override
+        public Map<TaskStatus, Long> countTaskStatuses(String node, String taskId) {
+            return shards.get(node).countOwnedTaskStatuses(taskId);
+        }
+
+        @Override
+        public int addTaskStatuses(String node, List<TaskStatusEntry> entries) {
+            return shards.get(node).addTaskStatuses(entries);
+        }
+
+        @Override
+        public void forward(String node, HttpServletRequest request, HttpServletResponse response) throws IOException {
+            throw new IOException("Not used by these tests");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package simplews;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the TaskStatusSubscriptions class.
+ * Delivery runs on a manually drained executor so the test controls when queued updates are written.
+ */
+public class TaskStatusSubscriptionsTest {
+
+    private TaskStatusService service;
+    private Queue<Runnable> dispatchQueue;
+    private AtomicLong clock;
+    private TaskStatusSubscriptions subscriptions;
+
+    @Before
+    public void setUp() {
+        service = new TaskStatusService();
+        dispatchQueue = new ArrayDeque<>();
+        clock = new AtomicLong();
+        subscriptions = new TaskStatusSubscriptions(service, dispatchQueue::add, 2, 1000, clock::get);
+    }
+
+    /**
+     * Test case to verify that a new subscriber first receives the current status of its pairs.
+     */
+    @Test
+    public void testSubscribe_SendsCurrentStatuses() {
+        // Arrange
+        RecordingSink sink = new RecordingSink();
+
+        // Act
+        subscriptions.subscribe(Arrays.asList(
+                new TaskKey("student123", "task001"), new TaskKey("student999", "taskXXX")), sink);
+        runDispatch();
+
+        // Assert
+        assertEquals(Arrays.asList("student123/task001=SUBMITTED", "student999/taskXXX=null"), sink.events);
+    }
+
+    /**
+     * Test case to verify that only applied transitions are pushed, not rejected ones or changes to other pairs.
+     */
+    @Test
+    public void testOnStatusChanged_PushesOnlyRealTransitions() {
+        // Arrange
+        RecordingSink sink = new RecordingSink();
+        subscriptions.subscribe(Collections.singletonList(new TaskKey("student123", "task001")), sink);
+        runDispatch();
+        sink.events.clear();
+
+        // Act
+        service.transitionTaskStatus("student123", "task001", TaskStatus.COMPLETED);    // Invalid, skips review.
+        service.setTaskStatus("student123", "task001", TaskStatus.SUBMITTED);          // No change.
+        service.transitionTaskStatus("student456", "task002", TaskStatus.COMPLETED);    // Another pair.
+        service.transitionTaskStatus("student123", "task001", TaskStatus.UNDER_REVIEW);
+        runDispatch();
+
+        // Assert
+        assertEquals(Collections.singletonList("student123/task001=UNDER_REVIEW"), sink.events);
+    }
+
+    /**
+     * Test case to verify that queued updates of one pair are merged, and that a full queue drops the oldest pair.
+     */
+    @Test
+    public void testOnStatusChanged_CoalescesAndDropsForSlowSubscriber() {
+        // Arrange: a subscriber that has not read anything yet.
+        RecordingSink sink = new RecordingSink();
+        subscriptions.subscribe(Arrays.asList(
+                new TaskKey("student123", "task001"),
+                new TaskKey("student456", "task002"),
+                new TaskKey("student789", "task004")), sink);
+
+        // Act
+        service.transitionTaskStatus("student123", "task001", TaskStatus.UNDER_REVIEW);
+        service.transitionTaskStatus("student123", "task001", TaskStatus.COMPLETED);
+        service.transitionTaskStatus("student789", "task004", TaskStatus.UNDER_REVIEW);
+        runDispatch();
+
+        // Assert: with room for two pairs, the oldest pending pairs were dropped and the updates of a pair merged.
+        assertEquals(Arrays.asList("student789/task004=UNDER_REVIEW", "student123/task001=COMPLETED"), sink.events);
+        assertEquals(2, subscriptions.getDroppedCount());
+        assertEquals(2, subscriptions.getCoalescedCount());
+    }
+
+    /**
+     * Test case to verify that a subscriber whose connection fails is closed and removed.
+     */
+    @Test
+    public void testSend_FailureRemovesSubscriber() {
+        // Arrange
+        RecordingSink sink = new RecordingSink();
+        sink.broken = true;
+        subscriptions.subscribe(Collections.singletonList(new TaskKey("student123", "task001")), sink);
+
+        // Act
+        runDispatch();
+
+        // Assert
+        assertTrue(sink.closed);
+        assertEquals(0, subscriptions.getSubscriberCount());
+    }
+
+    /**
+     * Test case to verify that nothing is written while the connection cannot take it, and that the
+     * updates queued meanwhile are delivered, merged, once it resumes.
+     */
+    @Test
+    public void testDrain_WaitsForSinkToBeReady() {
+        // Arrange
+        RecordingSink sink = new RecordingSink();
+        TaskStatusSubscriptions.Subscriber subscriber =
+                subscriptions.subscribe(Collections.singletonList(new TaskKey("student123", "task001")), sink);
+        runDispatch();
+        sink.events.clear();
+        sink.ready = false;
+
+        // Act
+        service.transitionTaskStatus("student123", "task001", TaskStatus.UNDER_REVIEW);
+        service.transitionTaskStatus("student123", "task001", TaskStatus.COMPLETED);
+        runDispatch();
+        List<String> whileStalled = new ArrayList<>(sink.events);
+        sink.ready = true;
+        subscriber.resume();
+        runDispatch();
+
+        // Assert
+        assertEquals(Collections.emptyList(), whileStalled);
+        assertEquals(Collections.singletonList("student123/task001=COMPLETED"), sink.events);
+        assertEquals(1, subscriptions.getSubscriberCount());
+    }
+
+    /**
+     * Test case to verify that a subscriber whose connection stays unable to take events past the write timeout is closed.
+     */
+    @Test
+    public void testSendHeartbeats_ClosesStalledSubscriber() {
+        // Arrange
+        RecordingSink stalled = new RecordingSink();
+        stalled.ready = false;
+        RecordingSink healthy = new RecordingSink();
+        subscriptions.subscribe(Collections.singletonList(new TaskKey("student123", "task001")), stalled);
+        subscriptions.subscribe(Collections.singletonList(new TaskKey("student456", "task002")), healthy);
+        runDispatch();
+
+        // Act
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        subscriptions.sendHeartbeats(); // Within the timeout.
+        runDispatch();
+        boolean closedEarly = stalled.closed;
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+        subscriptions.sendHeartbeats();
+        runDispatch();
+
+        // Assert
+        assertFalse(closedEarly);
+        assertTrue(stalled.closed);
+        assertFalse(healthy.closed);
+        assertEquals(2, healthy.heartbeats);
+        assertEquals(1, subscriptions.getSubscriberCount());
+        assertEquals(1, subscriptions.getStalledCount());
+    }
+
+    private void runDispatch() {
+        Runnable task;
+        while ((task = dispatchQueue.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static class RecordingSink implements TaskStatusSubscriptions.EventSink {
+        final List<String> events = new ArrayList<>();
+        boolean broken;
+        boolean ready = true;
+        boolean closed;
+        int heartbeats;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void sendStatus(String studentId, String taskId, TaskStatus status) throws IOException {
+            if (broken) {
+                throw new IOException("Connection reset");
+            }
+            events.add(studentId + "/" + taskId + "=" + status);
+        }
+
+        @Override
+        public void sendHeartbeat() throws IOException {
+            if (broken) {
+                throw new IOException("Connection reset");
+            }
+            heartbeats++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package simplews;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the precompiled status page is the page the JSP renders, for the form and for every
+ * status the functional tests check, and that it escapes what the JSP does not.
+ * Starts the application twice, once per view mode.
+ */
+public class TaskStatusViewTest {
+
+    private static final Pattern STATUS_DISPLAY = Pattern.compile("<div class=\"(status-display[^\"]*)\">(.*?)</div>", Pattern.DOTALL);
+
+    private static ConfigurableApplicationContext jsp;
+    private static ConfigurableApplicationContext precompiled;
+
+    @BeforeClass
+    public static void setUp() {
+        jsp = start("jsp");
+        precompiled = start("precompiled");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        jsp.close();
+        precompiled.close();
+    }
+
+    /**
+     * Test case to verify that the empty form is the same in both modes.
+     */
+    @Test
+    public void testForm_SameAsJsp() throws IOException {
+        // Act
+        String expected = get(jsp, "/taskStatus");
+        String actual = get(precompiled, "/taskStatus");
+
+        // Assert
+        assertFalse(jsp.containsBean("taskStatusView"));
+        assertTrue(precompiled.getBean("taskStatusView") instanceof TaskStatusView);
+        assertEquals(expected, actual);
+        assertEquals("status-display ", statusClass(actual));
+        assertEquals("", statusText(actual));
+    }
+
+    /**
+     * Test case to verify the status pages of the functional test scenarios: the same bytes as the JSP,
+     * the same inputs and button, and the text the functional tests expect in the status display.
+     */
+    @Test
+    public void testStatusPages_SameAsJsp() throws IOException {
+        // Arrange: the scenarios of TaskStatusFunctionalTest.
+        String[][] scenarios = {
+                {"student123", "task001", "Status: Submitted", "submitted"},
+                {"student456", "task002", "Status: Under Review", "under-review"},
+                {"student123", "task003", "Status: Completed - Feedback Available", "completed"},
+                {"student999", "taskXXX", "Status: Invalid Task ID or Student ID", "invalid"},
+        };
+
+        for (String[] scenario : scenarios) {
+            String path = "/checkTaskStatus?studentId=" + scenario[0] + "&taskId=" + scenario[1];
+
+            // Act
+            String expected = get(jsp, path);
+            String actual = get(precompiled, path);
+
+            // Assert
+            assertEquals(path, expected, actual);
+            assertEquals(scenario[2], statusText(actual));
+            assertEquals("status-display " + scenario[3], statusClass(actual));
+            assertTrue(actual.contains("<input type=\"text\" id=\"studentId\" name=\"studentId\" value=\"" + scenario[0] + "\" required>"));
+            assertTrue(actual.contains("<input type=\"text\" id=\"taskId\" name=\"taskId\" value=\"" + scenario[1] + "\" required>"));
+            assertTrue(actual.contains("<input type=\"submit\" value=\"Check Status\">"));
+        }
+    }
+
+    /**
+     * Test case to verify that IDs are escaped and encoded as UTF-8, and that a label outside the
+     * vocabulary gets no CSS class, as in the JSP.
+     */
+    @Test
+    public void testRender_EscapesValuesAndUnknownLabels() {
+        // Arrange
+        Map<String, Object> model = new HashMap<>();
+        model.put("taskStatus", "<Archived>");
+        model.put("queriedStudentId", "a\"<b>&'");
+        model.put("queriedTaskId", "\u00e9\u4e2d\ud83d\ude00");
+
+        // Act
+        TaskStatusJson.Buffer out = new TaskStatusView().render(model);
+        String page = new String(out.array(), 0, out.length(), StandardCharsets.UTF_8);
+
+        // Assert
+        assertTrue(page.contains("value=\"a&#34;&lt;b&gt;&amp;&#39;\""));
+        assertTrue(page.contains("value=\"\u00e9\u4e2d\ud83d\ude00\""));
+        assertEquals("status-display ", statusClass(page));
+        assertEquals("Status: &lt;Archived&gt;", statusText(page));
+    }
+
+    private static ConfigurableApplicationContext start(String mode) {
+        return new SpringApplicationBuilder(Runner.class).run("--server.port=0", "--simplews.view.mode=" + mode);
+    }
+
+    private static String get(ConfigurableApplicationContext context, String path) throws IOException {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/html;charset=UTF-8", connection.getContentType());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String statusClass(String page) {
+        Matcher matcher = STATUS_DISPLAY.matcher(page);
+        assertTrue(page, matcher.find());
+        return matcher.group(1);
+    }
+
+    // The text of the status display as a browser shows it: whitespace collapsed, as Selenium's getText() does.
+    private static String statusText(String page) {
+        Matcher matcher = STATUS_DISPLAY.matcher(page);
+        assertTrue(page, matcher.find());
+        return matcher.group(2).replaceAll("\\s+", " ").trim();
+    }
+}
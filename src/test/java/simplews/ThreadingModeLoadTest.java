@@ -0,0 +1,69 @@
+package simplews;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URL;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test comparing Tomcat's platform-thread pool with the virtual-thread mode while every task status
+ * lookup waits on a simulated slow backend. Requests are sent open-loop ({@link OpenLoopLoad}) at half as
+ * much again as the pool can serve, so the pool falls further behind every second while virtual threads,
+ * which are not capped by a pool size, keep up.
+ * <p>
+ * Run with {@code mvn -Ploadtest test -Dtest=ThreadingModeLoadTest}. The virtual-thread run is skipped
+ * on runtimes older than Java 21. Results are appended to target/loadtest/threading-mode.txt.
+ */
+public class ThreadingModeLoadTest {
+
+    private static final int BACKEND_LATENCY_MS = 50;
+    private static final int PLATFORM_POOL_THREADS = 50;
+    // The most the pool can serve is PLATFORM_POOL_THREADS * 1000 / BACKEND_LATENCY_MS = 1000 per second.
+    private static final int RATE = 1500;
+    private static final int DURATION_SECONDS = 5;
+
+    /**
+     * Test case to verify that virtual threads keep up with a rate the platform-thread pool cannot,
+     * with a lower p99 latency.
+     */
+    @Test
+    public void testVirtualThreadsKeepUpWherePlatformThreadsFallBehind() throws Exception {
+        OpenLoopLoad.Result platform = measure("platform");
+        Assume.assumeTrue("Virtual threads need Java 21+", VirtualThreads.isSupported());
+        OpenLoopLoad.Result virtual = measure("virtual");
+
+        assertTrue("Virtual threads should keep up with " + RATE + " requests per second",
+                virtual.getResponses() / virtual.getElapsedSeconds() > 0.9 * RATE);
+        assertTrue("Virtual threads should beat a " + PLATFORM_POOL_THREADS + "-thread pool",
+                virtual.getLatency().valueAtQuantile(0.99) < platform.getLatency().valueAtQuantile(0.99));
+    }
+
+    private static OpenLoopLoad.Result measure(String mode) throws Exception {
+        // Command-line arguments, since default properties would lose to application.properties.
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Runner.class).run(
+                "--server.port=0",
+                "--simplews.threads.mode=" + mode,
+                "--server.tomcat.threads.max=" + PLATFORM_POOL_THREADS,
+                "--simplews.store.simulated-latency-ms=" + BACKEND_LATENCY_MS);
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            URL url = new URL("http://localhost:" + port + "/api/tasks/student123/task001");
+            OpenLoopLoad.Result result = OpenLoopLoad.run(
+                    Collections.nCopies(RATE * DURATION_SECONDS, new OpenLoopLoad.Request("status", url)), RATE, Long.MAX_VALUE);
+
+            OpenLoopLoad.report("threading-mode.txt", String.format("%s threads at %d req/s, %d ms backend latency",
+                    mode, RATE, BACKEND_LATENCY_MS), result);
+            assertEquals("Every request should be answered", result.getResponses(), result.count(200));
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+}
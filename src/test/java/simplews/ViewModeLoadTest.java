@@ -0,0 +1,81 @@
+package simplews;
+
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test comparing the /checkTaskStatus page rendered by taskStatusView.jsp with the precompiled
+ * {@link TaskStatusView}, cycling through the statuses of the functional tests. Requests are sent
+ * open-loop ({@link OpenLoopLoad}) at the same fixed rate to both, so their latencies can be compared.
+ * <p>
+ * Run with {@code mvn -Ploadtest test -Dtest=ViewModeLoadTest}. Results are appended to
+ * target/loadtest/view-mode.txt.
+ */
+public class ViewModeLoadTest {
+
+    private static final String[] QUERIES = {
+            "studentId=student123&taskId=task001",
+            "studentId=student456&taskId=task002",
+            "studentId=student123&taskId=task003",
+            "studentId=student999&taskId=taskXXX",
+    };
+    private static final int RATE = 200;
+    private static final int WARM_UP_SECONDS = 3;
+    private static final int DURATION_SECONDS = 5;
+
+    /**
+     * Test case to verify that the precompiled view keeps up with the rate the JSP is measured at,
+     * with a p99 latency no worse than the JSP's, give or take noise.
+     */
+    @Test
+    public void testPrecompiledKeepsUpWithJsp() throws Exception {
+        OpenLoopLoad.Result jsp = measure("jsp");
+        OpenLoopLoad.Result precompiled = measure("precompiled");
+
+        long jspP99 = jsp.getLatency().valueAtQuantile(0.99);
+        long precompiledP99 = precompiled.getLatency().valueAtQuantile(0.99);
+        assertTrue(String.format("The precompiled view p99 (%.1f ms) should keep up with the JSP (%.1f ms)",
+                        precompiledP99 / 1e6, jspP99 / 1e6),
+                precompiledP99 <= 2 * jspP99 + 5_000_000L);
+    }
+
+    private static OpenLoopLoad.Result measure(String mode) throws Exception {
+        // Command-line arguments, since default properties would lose to application.properties.
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Runner.class).run(
+                "--server.port=0",
+                "--simplews.view.mode=" + mode,
+                "--simplews.request-log.level=OFF");
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            OpenLoopLoad.run(requests(port, RATE * WARM_UP_SECONDS), RATE, Long.MAX_VALUE); // Lets the JIT compile both paths.
+            OpenLoopLoad.Result result = OpenLoopLoad.run(requests(port, RATE * DURATION_SECONDS), RATE, Long.MAX_VALUE);
+
+            OpenLoopLoad.report("view-mode.txt", String.format("%s view at %d req/s", mode, RATE), result);
+            assertEquals("Every request should get a page", result.getResponses(), result.count(200));
+            assertTrue("The " + mode + " view should keep up with " + RATE + " requests per second",
+                    result.getResponses() / result.getElapsedSeconds() > 0.9 * RATE);
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static List<OpenLoopLoad.Request> requests(int port, int count) throws IOException {
+        List<OpenLoopLoad.Request> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(new OpenLoopLoad.Request("page",
+                    new URL("http://localhost:" + port + "/checkTaskStatus?" + QUERIES[i % QUERIES.length])));
+        }
+        return requests;
+    }
+}